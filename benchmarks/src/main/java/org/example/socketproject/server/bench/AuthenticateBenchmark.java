@@ -0,0 +1,64 @@
+package org.example.socketproject.server.bench;
+
+import org.example.socketproject.server.ServerConfig;
+import org.example.socketproject.server.UserManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserManager.authenticate avec et sans CredentialCache (durées de vie à 0 : chaque appel
+ * interroge la base H2). Le paramètre est appliqué avant la création du singleton, dans la
+ * JVM dédiée à chaque combinaison de paramètres.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthenticateBenchmark {
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    private UserManager users;
+    private String username;
+
+    @Setup
+    public void setup() {
+        ChatFixture.useH2();
+        if (!cache) {
+            System.setProperty(ServerConfig.AUTH_CACHE_TTL_MS, "0");
+            System.setProperty(ServerConfig.AUTH_CACHE_NEGATIVE_TTL_MS, "0");
+        }
+        users = UserManager.getInstance();
+        ChatFixture.ensureUsers(1);
+        username = ChatFixture.username(0);
+    }
+
+    @Benchmark
+    public boolean knownUser() {
+        return users.authenticate(username, ChatFixture.PASSWORD);
+    }
+
+    @Benchmark
+    public boolean wrongPassword() {
+        return users.authenticate(username, "mauvais");
+    }
+
+    @Benchmark
+    public boolean unknownUser() {
+        return users.authenticate("inconnu", ChatFixture.PASSWORD);
+    }
+}
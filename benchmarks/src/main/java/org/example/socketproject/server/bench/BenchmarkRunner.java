@@ -0,0 +1,44 @@
+package org.example.socketproject.server.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Lance les benchmarks JMH avec la configuration de référence du projet :
+ * profileur GC (taux d'allocation, nombre de collections) et résultats au format JSON,
+ * un fichier horodaté par exécution dans results/, pour comparer les exécutions entre elles
+ * (par ex. avec https://jmh.morethan.net).
+ *
+ * Usage : java -cp target/benchmarks.jar org.example.socketproject.server.bench.BenchmarkRunner [options JMH]
+ * Les options JMH habituelles restent disponibles (filtre, -p clients=1000, -f, -rff fichier.json...).
+ */
+public class BenchmarkRunner {
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class);
+
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            File directory = new File("results");
+            directory.mkdirs();
+            String file = new File(directory, "jmh-" + LocalDateTime.now().format(FILE_DATE) + ".json").getPath();
+            options.result(file);
+            System.out.println("Résultats : " + file);
+        }
+        new Runner(options.build()).run();
+    }
+}
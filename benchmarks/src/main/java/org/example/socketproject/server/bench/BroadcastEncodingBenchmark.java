@@ -0,0 +1,75 @@
+package org.example.socketproject.server.bench;
+
+import org.example.socketproject.server.Frame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût d'une diffusion : ancien chemin (un PrintWriter.println par destinataire, donc un encodage
+ * UTF-8 par destinataire) contre une trame encodée une fois et partagée (Frame).
+ *
+ * Les sockets sont remplacés par des puits qui consomment les octets, pour ne mesurer que
+ * l'encodage et les copies. Lancer avec le profileur GC pour comparer le taux d'allocation :
+ *   java -jar target/benchmarks.jar BroadcastEncodingBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastEncodingBenchmark {
+
+    @Param({"10", "1000", "5000"})
+    public int recipients;
+
+    @Param({"alice: Bonjour à tous, la réunion commence dans 5 minutes"})
+    public String message;
+
+    private PrintWriter[] writers;
+    private long[] consumed;
+
+    @Setup
+    public void setup() {
+        writers = new PrintWriter[recipients];
+        for (int i = 0; i < recipients; i++) {
+            writers[i] = new PrintWriter(OutputStream.nullOutputStream(), true);
+        }
+        consumed = new long[recipients];
+    }
+
+    // Ancien chemin : ClientHandler.sendMessage() -> PrintWriter.println avec auto-flush
+    @Benchmark
+    public PrintWriter[] printlnPerRecipient() {
+        for (PrintWriter writer : writers) {
+            writer.println(message);
+        }
+        return writers;
+    }
+
+    // Nouveau chemin : Frame.shared() encode une fois, chaque destinataire écrit une vue du même tampon
+    @Benchmark
+    public long[] sharedFrame() {
+        Frame frame = Frame.shared(message);
+        for (int i = 0; i < recipients; i++) {
+            ByteBuffer buffer = frame.buffer();
+            consumed[i] += buffer.remaining();
+            buffer.position(buffer.limit());
+        }
+        return consumed;
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.socketproject.server.bench;
+
+import org.example.socketproject.server.ChatServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diffusion vers N clients authentifiés : parcours des destinataires, dépôt de la trame
+ * partagée dans chaque file sortante et vidage par le writer.
+ *   systemBroadcast : message du serveur (ChatServer.broadcast), sans journalisation ;
+ *   userMessage     : ligne tapée par un client dans le salon général (tous les clients),
+ *                     avec journalisation asynchrone en base et ajout à l'historique.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastFanOutBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int clients;
+
+    private ChatServer server;
+    private InMemoryClient[] connected;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        ChatFixture.useH2();
+        ChatFixture.headless();
+        ChatFixture.silenceConsole();
+        server = ChatFixture.newServer();
+        connected = ChatFixture.connect(server, clients, false);
+        // Laisser passer la dernière diffusion de la présence
+        Thread.sleep(200);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ChatFixture.disconnect(connected);
+        server.stop();
+        ChatFixture.restoreConsole();
+    }
+
+    @Benchmark
+    public long systemBroadcast() {
+        server.broadcast(" annonce du serveur", null);
+        return connected[0].getFramesReceived();
+    }
+
+    @Benchmark
+    public boolean userMessage() {
+        return connected[0].receive("Bonjour à tous, la réunion commence dans 5 minutes");
+    }
+}
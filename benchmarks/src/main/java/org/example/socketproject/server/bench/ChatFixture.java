@@ -0,0 +1,115 @@
+package org.example.socketproject.server.bench;
+
+import org.example.socketproject.server.ChatServer;
+import org.example.socketproject.server.ServerConfig;
+import org.example.socketproject.server.UserManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+/**
+ * Préparation commune des benchmarks JMH : base H2 en mémoire, comptes de test et serveur
+ * peuplé de clients en mémoire (InMemoryClient), sans socket ni thread d'acceptation.
+ *
+ * Les propriétés chat.* doivent être posées avant le premier appel à UserManager / ChatLogger :
+ * chaque benchmark tourne dans sa propre JVM (@Fork), les singletons y sont initialisés une fois.
+ */
+final class ChatFixture {
+    static final String USER_PREFIX = "user";
+    static final String PASSWORD = "bench";
+
+    private static PrintStream savedOut;
+    private static PrintStream savedErr;
+
+    private ChatFixture() {
+    }
+
+    static void useH2() {
+        System.setProperty(ServerConfig.HIBERNATE_CONFIG, "hibernate-h2.cfg.xml");
+        // Index de recherche jetable, comme la base en mémoire
+        try {
+            System.setProperty(ServerConfig.SEARCH_DIR, Files.createTempDirectory("chat-search").toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Mode production : pas d'écho du chat, logs console asynchrones
+    static void headless() {
+        System.setProperty(ServerConfig.HEADLESS, "true");
+    }
+
+    /**
+     * Le serveur écrit chaque connexion, message et erreur sur la console : pendant la mesure,
+     * ces lignes sont formatées puis jetées, pour ne pas noyer la sortie de JMH.
+     */
+    static void silenceConsole() {
+        if (savedOut == null) {
+            savedOut = System.out;
+            savedErr = System.err;
+            PrintStream nowhere = new PrintStream(OutputStream.nullOutputStream());
+            System.setOut(nowhere);
+            System.setErr(nowhere);
+        }
+    }
+
+    static void restoreConsole() {
+        if (savedOut != null) {
+            System.setOut(savedOut);
+            System.setErr(savedErr);
+            savedOut = null;
+            savedErr = null;
+        }
+    }
+
+    static String username(int index) {
+        return USER_PREFIX + index;
+    }
+
+    // Comptes user0..user(count-1), créés s'ils n'existent pas encore
+    static void ensureUsers(int count) {
+        UserManager users = UserManager.getInstance();
+        for (int i = 0; i < count; i++) {
+            users.createUser(username(i), PASSWORD);
+        }
+    }
+
+    // Serveur non démarré : les clients en mémoire passent directement par le protocole
+    static ChatServer newServer() {
+        UserManager.getInstance();
+        return new ChatServer(0);
+    }
+
+    // Authentifie count clients (user0..) ; la négociation presence-delta est optionnelle
+    static InMemoryClient[] connect(ChatServer server, int count, boolean presenceDeltas) {
+        return connect(server, count, presenceDeltas ? "CAPS:presence-delta" : null);
+    }
+
+    // Authentifie count clients après la ligne de négociation capabilities (null : aucune)
+    static InMemoryClient[] connect(ChatServer server, int count, String capabilities) {
+        ensureUsers(count);
+        InMemoryClient[] clients = new InMemoryClient[count];
+        for (int i = 0; i < count; i++) {
+            InMemoryClient client = new InMemoryClient(server);
+            if (capabilities != null) {
+                client.negotiate(capabilities);
+            }
+            if (!client.login(username(i) + ":" + PASSWORD)) {
+                throw new IllegalStateException("Authentification impossible pour " + username(i));
+            }
+            clients[i] = client;
+        }
+        return clients;
+    }
+
+    static void disconnect(InMemoryClient[] clients) {
+        if (clients != null) {
+            for (InMemoryClient client : clients) {
+                client.disconnect();
+            }
+        }
+    }
+}
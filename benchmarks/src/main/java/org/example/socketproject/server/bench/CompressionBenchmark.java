@@ -0,0 +1,131 @@
+package org.example.socketproject.server.bench;
+
+import org.example.socketproject.server.BinaryProtocol;
+import org.example.socketproject.server.ChatServer;
+import org.example.socketproject.server.ServerConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût CPU de la compression des trames sortantes, et octets économisés, selon l'encodage
+ * négocié par tous les clients : text, binary, ou deflate (CAPS:binary,deflate).
+ *   pasteMessage  : long texte collé (extrait de log), diffusé au salon général : compressé une fois ;
+ *   shortMessage  : message court, sous chat.compression.minBytes : envoyé tel quel ;
+ *   historyReplay : /join d'un salon dont les 50 derniers messages sont rejoués, en un seul lot
+ *                   d'écriture (petites trames compressées ensemble, pour ce client).
+ * À la fin de chaque essai, les octets à écrire par opération (tous destinataires) sont affichés :
+ * les comparer entre text, binary et deflate, avec le débit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+    private static final String SHORT = "Point d'équipe à 14h dans la salle habituelle";
+    private static final int REPLAYED = 50;
+
+    @Param({"text", "binary", "deflate"})
+    public String codec;
+
+    @Param({"1000"})
+    public int clients;
+
+    private ChatServer server;
+    private InMemoryClient[] connected;
+    private InMemoryClient replayer;
+    private byte[] paste;
+    private long operations;
+    private long bytesBefore;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        ChatFixture.useH2();
+        ChatFixture.headless();
+        System.setProperty(ServerConfig.HISTORY_SIZE, String.valueOf(REPLAYED));
+        ChatFixture.silenceConsole();
+        server = ChatFixture.newServer();
+        String capabilities = switch (codec) {
+            case "binary" -> "CAPS:binary";
+            case "deflate" -> "CAPS:binary,deflate";
+            default -> null;
+        };
+        connected = ChatFixture.connect(server, clients, capabilities);
+
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            log.append("2026-10-18 09:14:").append(10 + i)
+                    .append(" INFO  [pool-2-thread-").append(i % 4)
+                    .append("] o.e.s.server.ChatServer - client ").append(i).append(" connecté\n");
+        }
+        paste = log.toString().getBytes(StandardCharsets.UTF_8);
+
+        // Salon "replay" : 50 messages à rejouer, puis un client qui y entre et en sort à chaque opération
+        InMemoryClient author = connected[1];
+        author.receive("/join replay");
+        for (int i = 0; i < REPLAYED; i++) {
+            author.receive("Message " + i + " : " + SHORT);
+        }
+        replayer = connected[2];
+        replayer.setHoldWrites(true);
+        replayer.flush();
+        // Laisser passer la dernière diffusion de la présence
+        Thread.sleep(200);
+        bytesBefore = bytesReceived();
+    }
+
+    @TearDown
+    public void tearDown() {
+        long bytes = bytesReceived() - bytesBefore;
+        ChatFixture.disconnect(connected);
+        server.stop();
+        ChatFixture.restoreConsole();
+        System.out.println();
+        System.out.println("codec=" + codec + " : " + (operations == 0 ? 0 : bytes / operations) + " octets écrits par opération");
+    }
+
+    @Benchmark
+    public boolean pasteMessage() {
+        operations++;
+        return connected[0].isBinary()
+                ? connected[0].receiveFrame(BinaryProtocol.MESSAGE, paste)
+                : connected[0].receive(new String(paste, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public boolean shortMessage() {
+        operations++;
+        return connected[0].receive(SHORT);
+    }
+
+    @Benchmark
+    public boolean historyReplay() {
+        operations++;
+        replayer.receive("/join replay");
+        replayer.flush();
+        return replayer.receive("/leave replay");
+    }
+
+    private long bytesReceived() {
+        long total = 0;
+        for (InMemoryClient client : connected) {
+            client.flush();
+            total += client.getBytesReceived();
+        }
+        return total;
+    }
+}
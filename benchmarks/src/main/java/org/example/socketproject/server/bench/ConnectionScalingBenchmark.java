@@ -0,0 +1,139 @@
+package org.example.socketproject.server.bench;
+
+import org.example.socketproject.server.ChatServer;
+import org.example.socketproject.server.ServerConfig;
+import org.example.socketproject.server.UserManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Mesure la montée en charge du nombre de connexions simultanées pour chaque mode d'exécution
+ * de ClientHandler (pool de threads système ou threads virtuels).
+ *
+ * Chaque connexion s'authentifie puis reste inactive : sa session est bloquée dans readLine(),
+ * c'est exactement le coût « un thread par client » que l'on veut mesurer. La poignée de main
+ * passe par le pool borné d'authentification, la limite de débit par IP est désactivée.
+ *
+ * Usage : mvn exec:java -Dexec.args="--connections=20000 --modes=platform,virtual"
+ * (augmenter ulimit -n au-delà de 2 x connexions)
+ */
+public class ConnectionScalingBenchmark {
+    private static final String USER_PREFIX = "bench";
+    private static final String PASSWORD = "bench";
+
+    public static void main(String[] args) throws Exception {
+        int connections = 10_000;
+        String[] modes = {"platform", "virtual"};
+        int port = 56100;
+        for (String arg : args) {
+            if (arg.startsWith("--connections=")) {
+                connections = Integer.parseInt(arg.substring("--connections=".length()));
+            } else if (arg.startsWith("--modes=")) {
+                modes = arg.substring("--modes=".length()).split(",");
+            } else if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            }
+        }
+
+        System.setProperty(ServerConfig.HIBERNATE_CONFIG, "hibernate-h2.cfg.xml");
+        // Toutes les connexions viennent de 127.0.0.1
+        System.setProperty(ServerConfig.AUTH_RATE_PER_SECOND, "0");
+        createUsers(connections);
+
+        List<String> results = new ArrayList<>();
+        for (String mode : modes) {
+            results.add(run(mode.trim(), connections, port++));
+        }
+
+        System.out.println();
+        System.out.println(String.format("%-10s %12s %12s %14s %12s %14s",
+                "mode", "connexions", "durée (ms)", "connexions/s", "threads", "heap (Mo)"));
+        for (String result : results) {
+            System.out.println(result);
+        }
+    }
+
+    private static void createUsers(int count) {
+        UserManager users = UserManager.getInstance();
+        for (int i = 0; i < count; i++) {
+            if (!users.userExists(USER_PREFIX + i)) {
+                users.createUser(USER_PREFIX + i, PASSWORD);
+            }
+        }
+    }
+
+    private static String run(String mode, int connections, int port) throws Exception {
+        System.setProperty(ServerConfig.THREADS, mode);
+        ChatServer server = new ChatServer(port);
+        Thread serverThread = new Thread(server::start, "bench-server-" + mode);
+        serverThread.start();
+        waitUntil(server::isRunning, 30_000);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        threads.resetPeakThreadCount();
+
+        List<Socket> sockets = new ArrayList<>(connections);
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < connections; i++) {
+                Socket socket = new Socket();
+                socket.connect(new InetSocketAddress("127.0.0.1", port), 10_000);
+                socket.getOutputStream().write((USER_PREFIX + i + ":" + PASSWORD + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                sockets.add(socket);
+            }
+            // Attendre la réponse de chaque poignée de main
+            for (Socket socket : sockets) {
+                socket.setSoTimeout(120_000);
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), 64);
+                String reply = reader.readLine();
+                if (reply == null || !reply.startsWith("AUTH_SUCCESS")) {
+                    throw new IOException("poignée de main refusée : " + reply);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Arrêt à " + sockets.size() + " connexions (" + mode + ") : " + e.getMessage());
+        }
+        int opened = sockets.size();
+        waitUntil(() -> server.getClientCount() >= opened, 120_000);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        System.gc();
+        long heapMb = memory.getHeapMemoryUsage().getUsed() / (1024 * 1024);
+        int peakThreads = threads.getPeakThreadCount();
+
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignorer
+            }
+        }
+        server.stop();
+        serverThread.join(10_000);
+
+        return String.format("%-10s %12d %12d %14.0f %12d %14d",
+                mode, opened, elapsedMs,
+                opened * 1000.0 / Math.max(1, elapsedMs), peakThreads, heapMb);
+    }
+
+    private static void waitUntil(BooleanSupplier condition, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
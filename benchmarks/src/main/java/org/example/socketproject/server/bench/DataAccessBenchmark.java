@@ -0,0 +1,108 @@
+package org.example.socketproject.server.bench;
+
+import org.example.socketproject.server.HibernateLogStore;
+import org.example.socketproject.server.HibernateUtil;
+import org.example.socketproject.server.Message;
+import org.example.socketproject.server.ServerLog;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latence d'une opération d'accès aux données, sur H2 en mémoire :
+ * - "session" : ancienne forme, une Session avec contexte de persistance et requête HQL en texte ;
+ * - "stateless" : couche actuelle, StatelessSession et requête nommée (HibernateUtil.read /
+ *   inTransaction, HibernateLogStore).
+ * Les opérations sont celles du serveur : mot de passe d'un compte (connexion sans cache),
+ * insertion d'un log seul, page de 50 messages d'un salon (rejeu, /history).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataAccessBenchmark {
+    private static final int PAGE = 50;
+
+    @Param({"session", "stateless"})
+    public String access;
+
+    private HibernateLogStore logs;
+    private String username;
+
+    @Setup
+    public void setup() {
+        ChatFixture.useH2();
+        ChatFixture.ensureUsers(100);
+        username = ChatFixture.username(42);
+        logs = new HibernateLogStore();
+        List<Object> messages = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            messages.add(new Message(username, username + ": message " + i, "PUBLIC", null, "general"));
+        }
+        logs.append(messages);
+    }
+
+    @Benchmark
+    public String passwordLookup() {
+        if (access.equals("stateless")) {
+            // Requête directe : HibernateUserStore passe par le cache de second niveau (UserCacheBenchmark)
+            return HibernateUtil.read(session -> session.createSelectionQuery(
+                            "select u.passwordHash from User u where u.username = :username", String.class)
+                    .setParameter("username", username)
+                    .uniqueResult());
+        }
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            return session.createQuery("select passwordHash from User where username = :username", String.class)
+                    .setParameter("username", username)
+                    .uniqueResult();
+        }
+    }
+
+    @Benchmark
+    public Object logInsert() {
+        ServerLog log = new ServerLog("EVENT", "benchmark");
+        if (access.equals("stateless")) {
+            logs.append(List.of(log));
+            return log;
+        }
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.persist(log);
+            transaction.commit();
+        }
+        return log;
+    }
+
+    @Benchmark
+    public List<Message> roomPage() {
+        if (access.equals("stateless")) {
+            return HibernateUtil.read(session -> session.createNamedSelectionQuery(Message.ROOM_PAGE, Message.class)
+                    .setParameter("room", "general")
+                    .setMaxResults(PAGE)
+                    .list());
+        }
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            return session.createQuery("from Message m where m.messageType = 'PUBLIC' and (m.room = :room)"
+                            + " order by m.timestamp desc, m.id desc", Message.class)
+                    .setParameter("room", "general")
+                    .setMaxResults(PAGE)
+                    .list();
+        }
+    }
+}
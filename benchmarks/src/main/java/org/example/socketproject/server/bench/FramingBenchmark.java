@@ -0,0 +1,73 @@
+package org.example.socketproject.server.bench;
+
+import org.example.socketproject.server.BinaryProtocol;
+import org.example.socketproject.server.ChatServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message d'un client relayé à tout le salon général, selon le protocole négocié par tous les clients :
+ *   text   : ligne reçue, encodée une fois en ligne texte pour la diffusion ;
+ *   binary : trame MESSAGE reçue, ses octets recopiés dans la trame diffusée sans passer par String
+ *            (le décodage restant est celui de la journalisation).
+ * Le writer en mémoire demande l'encodage du client, comme le ferait un transport.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FramingBenchmark {
+    private static final String MESSAGE = "Bonjour à tous, la réunion commence dans 5 minutes";
+
+    @Param({"text", "binary"})
+    public String protocol;
+
+    @Param({"1000", "10000"})
+    public int clients;
+
+    private ChatServer server;
+    private InMemoryClient[] connected;
+    private byte[] payload;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        ChatFixture.useH2();
+        ChatFixture.headless();
+        ChatFixture.silenceConsole();
+        server = ChatFixture.newServer();
+        connected = ChatFixture.connect(server, clients, protocol.equals("binary") ? "CAPS:binary" : null);
+        payload = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        // Laisser passer la dernière diffusion de la présence
+        Thread.sleep(200);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ChatFixture.disconnect(connected);
+        server.stop();
+        ChatFixture.restoreConsole();
+    }
+
+    @Benchmark
+    public boolean roomMessage() {
+        if (protocol.equals("binary")) {
+            return connected[0].receiveFrame(BinaryProtocol.MESSAGE, payload);
+        }
+        return connected[0].receive(MESSAGE);
+    }
+}
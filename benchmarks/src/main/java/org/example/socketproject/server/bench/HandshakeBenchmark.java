@@ -0,0 +1,75 @@
+package org.example.socketproject.server.bench;
+
+import org.example.socketproject.server.ChatServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Poignée de main sur un serveur vide, identifiants en cache (CredentialCache) :
+ *   loginLogout      : négociation, authentification, enregistrement, annonce, puis déconnexion ;
+ *   wrongPassword    : refus après comparaison de l'empreinte ;
+ *   malformed        : refus dès le découpage de la ligne.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandshakeBenchmark {
+
+    private ChatServer server;
+    private String credentials;
+
+    @Setup
+    public void setup() {
+        ChatFixture.useH2();
+        ChatFixture.headless();
+        ChatFixture.silenceConsole();
+        server = ChatFixture.newServer();
+        ChatFixture.ensureUsers(1);
+        credentials = ChatFixture.username(0) + ":" + ChatFixture.PASSWORD;
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop();
+        ChatFixture.restoreConsole();
+    }
+
+    @Benchmark
+    public boolean loginLogout() {
+        InMemoryClient client = new InMemoryClient(server);
+        client.negotiate("CAPS:presence-delta");
+        boolean authenticated = client.login(credentials);
+        client.disconnect();
+        return authenticated;
+    }
+
+    @Benchmark
+    public boolean wrongPassword() {
+        InMemoryClient client = new InMemoryClient(server);
+        boolean authenticated = client.login(ChatFixture.username(0) + ":mauvais");
+        client.disconnect();
+        return authenticated;
+    }
+
+    @Benchmark
+    public boolean malformed() {
+        InMemoryClient client = new InMemoryClient(server);
+        boolean authenticated = client.login("sans-separateur");
+        client.disconnect();
+        return authenticated;
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.socketproject.server.bench;
+
+import org.example.socketproject.server.ChatServer;
+import org.example.socketproject.server.ClientConnection;
+import org.example.socketproject.server.Frame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client sans socket pour les benchmarks : passe par le même protocole que les transports
+ * (poignée de main, commandes, diffusion), mais sa file sortante est vidée immédiatement,
+ * comme par un writer infiniment rapide. On ne mesure que le travail du serveur.
+ * Avec holdWrites, les trames s'accumulent jusqu'à flush(), comme un lot de writer.
+ */
+public class InMemoryClient extends ClientConnection {
+    private long framesReceived;
+    private long bytesReceived;
+    private boolean holdWrites;
+    private final List<Frame> batch = new ArrayList<>();
+
+    public InMemoryClient(ChatServer server) {
+        super(server);
+    }
+
+    // Première ligne du protocole (username:password)
+    public boolean login(String authData) {
+        return handleHandshake(authData);
+    }
+
+    // Ligne de négociation optionnelle (CAPS:...)
+    public boolean negotiate(String capabilities) {
+        return handleCapabilities(capabilities);
+    }
+
+    // Ligne reçue d'un client authentifié ; false pour /quit
+    public boolean receive(String line) {
+        return handleLine(line);
+    }
+
+    // Trame binaire reçue d'un client authentifié (après CAPS:binary)
+    public boolean receiveFrame(byte type, byte[] body) {
+        return handleFrame(type, ByteBuffer.wrap(body));
+    }
+
+    // Garder les trames en file jusqu'à flush() (écriture groupée)
+    public void setHoldWrites(boolean holdWrites) {
+        this.holdWrites = holdWrites;
+    }
+
+    @Override
+    protected void onOutboundReady() {
+        if (!holdWrites) {
+            flush();
+        }
+    }
+
+    // Vide la file en un lot, encodé comme par un vrai writer (texte, binaire ou compressé) ;
+    // un seul writer à la fois, même si la présence est diffusée depuis un autre thread
+    public synchronized void flush() {
+        Frame frame;
+        while ((frame = outbound.poll()) != null) {
+            batch.add(frame);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        framesReceived += batch.size();
+        for (ByteBuffer buffer : encode(batch)) {
+            bytesReceived += buffer.remaining();
+        }
+        batch.clear();
+    }
+
+    @Override
+    protected void abort() {
+        outbound.clear();
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return "127.0.0.1";
+    }
+
+    @Override
+    protected void closeTransport() {
+        outbound.clear();
+    }
+
+    public long getFramesReceived() {
+        return framesReceived;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+}
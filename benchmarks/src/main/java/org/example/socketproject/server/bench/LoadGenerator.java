@@ -0,0 +1,544 @@
+package org.example.socketproject.server.bench;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.example.socketproject.server.ChatServer;
+import org.example.socketproject.server.ServerConfig;
+import org.example.socketproject.server.UserManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Générateur de charge de bout en bout : des milliers de vrais clients TCP qui s'authentifient
+ * par la poignée de main "username:password", puis envoient un mélange de messages publics,
+ * de /msg et de départs/retours (churn).
+ *
+ * Chaque message porte l'instant d'envoi prévu (#lt=nanoTime) : le destinataire enregistre la
+ * latence de livraison dans un histogramme HdrHistogram. L'instant prévu, et non l'instant réel
+ * d'écriture, sert de référence : un serveur qui ralentit l'émetteur ne masque pas son propre
+ * retard (omission coordonnée).
+ *
+ * Par défaut, un ChatServer est démarré dans la même JVM sur une base H2 en mémoire
+ * (hibernate-h2.cfg.xml), et les comptes load0..loadN sont créés. Avec --host, la cible est un
+ * serveur existant dont les comptes doivent déjà exister (et la limite par IP être relevée).
+ *
+ * Usage : java -cp target/benchmarks.jar org.example.socketproject.server.bench.LoadGenerator
+ *           --connections=2000 --duration=30 --rate=500 --private=0.2 --churn=5
+ *           [--warmup=5] [--parallelism=64] [--host=... --port=...] [--json=resultat.json]
+ *           [--max-p99-ms=50] [--min-users=2000]      (seuils : code de sortie 2 si non atteints)
+ *           [--transport=nio --threads=virtual ...]   (options chat.* du serveur embarqué,
+ *                                                      headless sauf --headless=false)
+ */
+public class LoadGenerator {
+    private static final String USER_PREFIX = "load";
+    private static final String PASSWORD = "load";
+    private static final String MARKER = "#lt=";
+    private static final int RECONNECT_ATTEMPTS = 5;
+
+    // Paramètres de la charge
+    private String host = "127.0.0.1";
+    private int port = 0;
+    private boolean embedded = true;
+    private int connections = 1000;
+    private int durationSeconds = 30;
+    private int warmupSeconds = 5;
+    private double messagesPerSecond = 200;
+    private double privateRatio = 0.2;
+    private double churnPerSecond = 0;
+    private int parallelism = 64;
+    private double maxP99Ms = -1;
+    private int minUsers = -1;
+    private String jsonPath;
+
+    // Mesures
+    private final Recorder publicLatency = new Recorder(3);
+    private final Recorder privateLatency = new Recorder(3);
+    private final Recorder handshakeLatency = new Recorder(3);
+    private final AtomicLong sentPublic = new AtomicLong();
+    private final AtomicLong sentPrivate = new AtomicLong();
+    private final AtomicLong deliveredPublic = new AtomicLong();
+    private final AtomicLong deliveredPrivate = new AtomicLong();
+    private final AtomicLong failedConnects = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong failedReconnects = new AtomicLong();
+    private volatile boolean stopping = false;
+    private final AtomicInteger activeUsers = new AtomicInteger();
+    private final AtomicInteger peakUsers = new AtomicInteger();
+
+    private AtomicReferenceArray<LoadClient> clients;
+    private final ExecutorService virtualThreads = Executors.newVirtualThreadPerTaskExecutor();
+    private final PrintStream out = System.out;
+
+    // Un client simulé : un socket, un thread virtuel de lecture
+    private final class LoadClient {
+        final String username;
+        private final Object writeLock = new Object();
+        private volatile Socket socket;
+        private volatile OutputStream output;
+        volatile boolean active;
+
+        LoadClient(String username) {
+            this.username = username;
+        }
+
+        boolean connect() {
+            long start = System.nanoTime();
+            Socket connection = new Socket();
+            socket = connection;
+            try {
+                connection.setTcpNoDelay(true);
+                connection.connect(new InetSocketAddress(host, port), 10_000);
+                output = connection.getOutputStream();
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+                send(username + ":" + PASSWORD);
+                String reply = reader.readLine();
+                if (reply == null || !reply.startsWith("AUTH_SUCCESS")) {
+                    throw new IOException("poignée de main refusée : " + reply);
+                }
+                handshakeLatency.recordValue(micros(System.nanoTime() - start));
+                markActive();
+                peakUsers.accumulateAndGet(activeUsers.incrementAndGet(), Math::max);
+                virtualThreads.execute(() -> readLoop(connection, reader));
+                return true;
+            } catch (IOException e) {
+                close();
+                return false;
+            }
+        }
+
+        private void readLoop(Socket connection, BufferedReader reader) {
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int marker = line.lastIndexOf(MARKER);
+                    if (marker < 0) {
+                        continue;
+                    }
+                    long latency = micros(System.nanoTime() - Long.parseLong(line.substring(marker + MARKER.length())));
+                    if (line.startsWith("PRIVATE:")) {
+                        privateLatency.recordValue(Math.max(0, latency));
+                        deliveredPrivate.incrementAndGet();
+                    } else {
+                        publicLatency.recordValue(Math.max(0, latency));
+                        deliveredPublic.incrementAndGet();
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                // Connexion fermée (départ, fin du test)
+            } finally {
+                deactivate(connection);
+            }
+        }
+
+        void send(String line) throws IOException {
+            synchronized (writeLock) {
+                output.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                output.flush();
+            }
+        }
+
+        // Départ volontaire puis retour, comme un client qui se reconnecte
+        void churn() {
+            if (!active) {
+                return;
+            }
+            try {
+                send("/quit");
+            } catch (IOException e) {
+                // Le serveur a déjà fermé la connexion
+            }
+            close();
+            // Le serveur peut ne pas avoir encore libéré le pseudo : réessayer un peu plus tard
+            for (int attempt = 0; attempt < RECONNECT_ATTEMPTS && !stopping; attempt++) {
+                if (connect()) {
+                    reconnects.incrementAndGet();
+                    return;
+                }
+                try {
+                    Thread.sleep(20L << attempt);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            if (!stopping) {
+                failedReconnects.incrementAndGet();
+            }
+        }
+
+        private synchronized void markActive() {
+            active = true;
+        }
+
+        // Sans effet si la connexion a déjà été remplacée (le lecteur d'un ancien socket se termine)
+        private synchronized void deactivate(Socket connection) {
+            if (active && connection == socket) {
+                active = false;
+                activeUsers.decrementAndGet();
+            }
+        }
+
+        // Sans verrou d'écriture : fermer le socket débloque un send() en cours
+        void close() {
+            Socket connection = socket;
+            deactivate(connection);
+            try {
+                if (connection != null) connection.close();
+            } catch (IOException e) {
+                // Ignorer les erreurs de fermeture
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        String[] serverArgs = generator.parse(args);
+        System.exit(generator.run(serverArgs));
+    }
+
+    private String[] parse(String[] args) {
+        List<String> remaining = new ArrayList<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String name = eq > 0 ? arg.substring(0, eq) : arg;
+            String value = eq > 0 ? arg.substring(eq + 1) : "";
+            switch (name) {
+                case "--host" -> { host = value; embedded = false; }
+                case "--port" -> port = Integer.parseInt(value);
+                case "--connections" -> connections = Integer.parseInt(value);
+                case "--duration" -> durationSeconds = Integer.parseInt(value);
+                case "--warmup" -> warmupSeconds = Integer.parseInt(value);
+                case "--rate" -> messagesPerSecond = Double.parseDouble(value);
+                case "--private" -> privateRatio = Double.parseDouble(value);
+                case "--churn" -> churnPerSecond = Double.parseDouble(value);
+                case "--parallelism" -> parallelism = Integer.parseInt(value);
+                case "--max-p99-ms" -> maxP99Ms = Double.parseDouble(value);
+                case "--min-users" -> minUsers = Integer.parseInt(value);
+                case "--json" -> jsonPath = value;
+                default -> remaining.add(arg);
+            }
+        }
+        return remaining.toArray(new String[0]);
+    }
+
+    private int run(String[] serverArgs) throws Exception {
+        ChatServer server = null;
+        if (embedded) {
+            server = startEmbeddedServer(serverArgs);
+        }
+        clients = new AtomicReferenceArray<>(connections);
+
+        // Phase 1 : ouverture des connexions, parallelism poignées de main à la fois
+        out.printf("Connexion de %d clients à %s:%d...%n", connections, host, port);
+        long connectStart = System.nanoTime();
+        Semaphore permits = new Semaphore(parallelism);
+        for (int i = 0; i < connections; i++) {
+            LoadClient client = new LoadClient(USER_PREFIX + i);
+            clients.set(i, client);
+            permits.acquire();
+            virtualThreads.execute(() -> {
+                try {
+                    if (!client.connect()) {
+                        failedConnects.incrementAndGet();
+                    }
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+        permits.acquire(parallelism);
+        double connectSeconds = (System.nanoTime() - connectStart) / 1e9;
+        int established = activeUsers.get();
+        Histogram handshakes = handshakeLatency.getIntervalHistogram();
+        out.printf("%d connexions établies en %.1f s (%d échecs)%n", established, connectSeconds, failedConnects.get());
+
+        // Phase 2 : charge, avec une période de chauffe non mesurée
+        ScheduledExecutorService pacers = Executors.newScheduledThreadPool(2);
+        long loadStart = System.nanoTime();
+        pacers.scheduleAtFixedRate(new Pacer(loadStart, messagesPerSecond, this::sendOne), 0, 1, TimeUnit.MILLISECONDS);
+        if (churnPerSecond > 0) {
+            pacers.scheduleAtFixedRate(new Pacer(loadStart, churnPerSecond, ignored -> churnOne()), 0, 10, TimeUnit.MILLISECONDS);
+        }
+        Thread.sleep(warmupSeconds * 1000L);
+        publicLatency.reset();
+        privateLatency.reset();
+        handshakeLatency.reset();
+        long sentPublicBase = sentPublic.get();
+        long sentPrivateBase = sentPrivate.get();
+        long deliveredPublicBase = deliveredPublic.get();
+        long deliveredPrivateBase = deliveredPrivate.get();
+        long reconnectsBase = reconnects.get();
+        long measureStart = System.nanoTime();
+        Thread.sleep(durationSeconds * 1000L);
+        double measuredSeconds = (System.nanoTime() - measureStart) / 1e9;
+        pacers.shutdownNow();
+        stopping = true;
+        // Laisser arriver les derniers messages en vol
+        Thread.sleep(500);
+
+        Report report = new Report();
+        report.connectionsRequested = connections;
+        report.connectionsEstablished = established;
+        report.failedConnects = failedConnects.get();
+        report.connectSeconds = connectSeconds;
+        report.handshakes = handshakes;
+        report.reconnectHandshakes = handshakeLatency.getIntervalHistogram();
+        report.measuredSeconds = measuredSeconds;
+        report.sentPublic = sentPublic.get() - sentPublicBase;
+        report.sentPrivate = sentPrivate.get() - sentPrivateBase;
+        report.deliveredPublic = deliveredPublic.get() - deliveredPublicBase;
+        report.deliveredPrivate = deliveredPrivate.get() - deliveredPrivateBase;
+        report.reconnects = reconnects.get() - reconnectsBase;
+        report.failedReconnects = failedReconnects.get();
+        report.peakUsers = peakUsers.get();
+        report.publicLatency = publicLatency.getIntervalHistogram();
+        report.privateLatency = privateLatency.getIntervalHistogram();
+
+        for (int i = 0; i < connections; i++) {
+            clients.get(i).close();
+        }
+        virtualThreads.shutdownNow();
+        if (server != null) {
+            server.stop();
+            ChatFixture.restoreConsole();
+        }
+
+        report.print(out);
+        if (jsonPath != null) {
+            Files.writeString(Path.of(jsonPath), report.toJson());
+            out.println("Résultats : " + jsonPath);
+        }
+        return report.checkGates(out) ? 0 : 2;
+    }
+
+    private ChatServer startEmbeddedServer(String[] serverArgs) throws Exception {
+        ChatFixture.useH2();
+        // Toutes les connexions viennent de 127.0.0.1
+        System.setProperty(ServerConfig.AUTH_RATE_PER_SECOND, "0");
+        // Serveur mesuré en mode production, sauf --headless=false
+        System.setProperty(ServerConfig.HEADLESS, "true");
+        ServerConfig.applyCommandLine(serverArgs);
+        if (port == 0) {
+            try (ServerSocket probe = new ServerSocket(0)) {
+                port = probe.getLocalPort();
+            }
+        }
+        out.printf("Création de %d comptes dans H2...%n", connections);
+        ChatFixture.silenceConsole();
+        for (int i = 0; i < connections; i++) {
+            UserManager.getInstance().createUser(USER_PREFIX + i, PASSWORD);
+        }
+        ChatServer server = new ChatServer(port);
+        Thread serverThread = new Thread(server::start, "load-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!server.isRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return server;
+    }
+
+    // Envoi d'un message (public ou /msg) par un client connecté au hasard
+    private void sendOne(long intendedNanos) {
+        LoadClient sender = randomActiveClient();
+        if (sender == null) {
+            return;
+        }
+        boolean privateMessage = ThreadLocalRandom.current().nextDouble() < privateRatio;
+        String line;
+        if (privateMessage) {
+            LoadClient target = randomActiveClient();
+            if (target == null || target == sender) {
+                return;
+            }
+            line = "/msg " + target.username + " salut " + MARKER + intendedNanos;
+        } else {
+            line = "message de charge " + MARKER + intendedNanos;
+        }
+        try {
+            sender.send(line);
+            (privateMessage ? sentPrivate : sentPublic).incrementAndGet();
+        } catch (IOException e) {
+            sender.close();
+        }
+    }
+
+    private void churnOne() {
+        LoadClient client = randomActiveClient();
+        if (client != null) {
+            virtualThreads.execute(client::churn);
+        }
+    }
+
+    private LoadClient randomActiveClient() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < 8; attempt++) {
+            LoadClient client = clients.get(random.nextInt(connections));
+            if (client != null && client.active) {
+                return client;
+            }
+        }
+        return null;
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+
+    /**
+     * Cadence fixe : à chaque tick, émet les événements dus depuis le départ, chacun avec
+     * son instant prévu (start + k / débit), même si le tick précédent a pris du retard.
+     */
+    private static final class Pacer implements Runnable {
+        interface Action {
+            void fire(long intendedNanos);
+        }
+
+        private final long startNanos;
+        private final double perSecond;
+        private final Action action;
+        private long issued;
+
+        Pacer(long startNanos, double perSecond, Action action) {
+            this.startNanos = startNanos;
+            this.perSecond = perSecond;
+            this.action = action;
+        }
+
+        @Override
+        public void run() {
+            if (perSecond <= 0) {
+                return;
+            }
+            long due = (long) ((System.nanoTime() - startNanos) / 1e9 * perSecond);
+            while (issued < due) {
+                long intended = startNanos + (long) (issued * 1e9 / perSecond);
+                issued++;
+                action.fire(intended);
+            }
+        }
+    }
+
+    private final class Report {
+        int connectionsRequested;
+        int connectionsEstablished;
+        long failedConnects;
+        double connectSeconds;
+        Histogram handshakes;
+        Histogram reconnectHandshakes;
+        double measuredSeconds;
+        long sentPublic;
+        long sentPrivate;
+        long deliveredPublic;
+        long deliveredPrivate;
+        long reconnects;
+        long failedReconnects;
+        int peakUsers;
+        Histogram publicLatency;
+        Histogram privateLatency;
+
+        void print(PrintStream out) {
+            out.println();
+            out.println("=== Connexions ===");
+            out.printf("établies           : %d / %d (%d échecs)%n", connectionsEstablished, connectionsRequested, failedConnects);
+            out.printf("débit d'ouverture  : %.0f connexions/s%n", connectionsEstablished / connectSeconds);
+            out.printf("utilisateurs (max) : %d%n", peakUsers);
+            printHistogram(out, "poignée de main", handshakes);
+            out.println();
+            out.printf("=== Charge (%.1f s mesurées, %s) ===%n", measuredSeconds, embedded ? "serveur embarqué" : host + ":" + port);
+            out.printf("envoyés            : %d publics, %d privés (%.0f messages/s)%n",
+                    sentPublic, sentPrivate, (sentPublic + sentPrivate) / measuredSeconds);
+            out.printf("livrés             : %d publics, %d privés (%.0f livraisons/s)%n",
+                    deliveredPublic, deliveredPrivate, (deliveredPublic + deliveredPrivate) / measuredSeconds);
+            out.printf("départs/retours    : %d (%d reconnexions refusées)%n", reconnects, failedReconnects);
+            printHistogram(out, "latence publique", publicLatency);
+            printHistogram(out, "latence privée", privateLatency);
+            if (reconnectHandshakes.getTotalCount() > 0) {
+                printHistogram(out, "reconnexion", reconnectHandshakes);
+            }
+        }
+
+        private void printHistogram(PrintStream out, String label, Histogram histogram) {
+            if (histogram.getTotalCount() == 0) {
+                out.printf("%-18s : aucune mesure%n", label);
+                return;
+            }
+            out.printf(Locale.ROOT, "%-18s : p50 %.2f ms  p90 %.2f ms  p99 %.2f ms  p99.9 %.2f ms  max %.2f ms  (n=%d)%n",
+                    label, ms(histogram, 50), ms(histogram, 90), ms(histogram, 99), ms(histogram, 99.9),
+                    histogram.getMaxValue() / 1000.0, histogram.getTotalCount());
+        }
+
+        boolean checkGates(PrintStream out) {
+            boolean passed = true;
+            if (maxP99Ms >= 0) {
+                double p99 = Math.max(ms(publicLatency, 99), ms(privateLatency, 99));
+                boolean ok = p99 <= maxP99Ms;
+                out.printf(Locale.ROOT, "Seuil p99 <= %.1f ms : %s (%.2f ms)%n", maxP99Ms, ok ? "OK" : "ÉCHEC", p99);
+                passed &= ok;
+            }
+            if (minUsers >= 0) {
+                boolean ok = peakUsers >= minUsers && failedConnects == 0;
+                out.printf("Seuil utilisateurs >= %d : %s (%d, %d échecs)%n", minUsers, ok ? "OK" : "ÉCHEC", peakUsers, failedConnects);
+                passed &= ok;
+            }
+            return passed;
+        }
+
+        String toJson() {
+            StringBuilder json = new StringBuilder("{\n");
+            json.append("  \"connectionsRequested\": ").append(connectionsRequested).append(",\n");
+            json.append("  \"connectionsEstablished\": ").append(connectionsEstablished).append(",\n");
+            json.append("  \"failedConnects\": ").append(failedConnects).append(",\n");
+            json.append("  \"connectionsPerSecond\": ").append(format(connectionsEstablished / connectSeconds)).append(",\n");
+            json.append("  \"peakUsers\": ").append(peakUsers).append(",\n");
+            json.append("  \"measuredSeconds\": ").append(format(measuredSeconds)).append(",\n");
+            json.append("  \"sentPublic\": ").append(sentPublic).append(",\n");
+            json.append("  \"sentPrivate\": ").append(sentPrivate).append(",\n");
+            json.append("  \"deliveredPublic\": ").append(deliveredPublic).append(",\n");
+            json.append("  \"deliveredPrivate\": ").append(deliveredPrivate).append(",\n");
+            json.append("  \"reconnects\": ").append(reconnects).append(",\n");
+        json.append("  \"failedReconnects\": ").append(failedReconnects).append(",\n");
+            json.append("  \"handshakeMs\": ").append(percentiles(handshakes)).append(",\n");
+            json.append("  \"publicLatencyMs\": ").append(percentiles(publicLatency)).append(",\n");
+            json.append("  \"privateLatencyMs\": ").append(percentiles(privateLatency)).append("\n");
+            return json.append("}\n").toString();
+        }
+
+        private String percentiles(Histogram histogram) {
+            return String.format(Locale.ROOT, "{\"count\": %d, \"p50\": %s, \"p90\": %s, \"p99\": %s, \"p999\": %s, \"max\": %s}",
+                    histogram.getTotalCount(), format(ms(histogram, 50)), format(ms(histogram, 90)),
+                    format(ms(histogram, 99)), format(ms(histogram, 99.9)), format(histogram.getMaxValue() / 1000.0));
+        }
+
+        private double ms(Histogram histogram, double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        private String format(double value) {
+            return String.format(Locale.ROOT, "%.3f", value);
+        }
+    }
+}
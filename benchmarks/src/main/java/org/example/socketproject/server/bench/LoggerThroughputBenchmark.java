@@ -0,0 +1,80 @@
+package org.example.socketproject.server.bench;
+
+import org.example.socketproject.server.ChatLogger;
+import org.example.socketproject.server.ServerConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Débit de persistance de ChatLogger : chaque invocation journalise MESSAGES messages puis
+ * attend qu'ils soient acceptés par le stockage (flush). Le résultat est en messages/s
+ * effectivement enregistrés, pour plusieurs tailles de lot de l'AsyncLogWriter et pour chaque
+ * stockage : "hibernate" (insertion dans H2 en mémoire) ou "journal" (journal local dans un
+ * répertoire temporaire, exporté vers H2 en arrière-plan pendant la mesure).
+ * La politique de débordement est "block" : aucun message n'est abandonné pendant la mesure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggerThroughputBenchmark {
+    private static final int MESSAGES = 1000;
+
+    @Param({"1", "50", "200"})
+    public int batchSize;
+
+    @Param({"hibernate", "journal"})
+    public String storage;
+
+    private ChatLogger logger;
+    private Path journal;
+
+    @Setup
+    public void setup() throws IOException {
+        ChatFixture.useH2();
+        System.setProperty(ServerConfig.STORAGE_LOGS, storage);
+        journal = Files.createTempDirectory("chat-journal");
+        System.setProperty(ServerConfig.JOURNAL_DIR, journal.toString());
+        System.setProperty(ServerConfig.LOG_OVERFLOW, "block");
+        System.setProperty(ServerConfig.LOG_BATCH_SIZE, String.valueOf(batchSize));
+        logger = ChatLogger.getInstance();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        logger.close();
+        try (Stream<Path> files = Files.walk(journal)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long persistMessages() {
+        for (int i = 0; i < MESSAGES; i++) {
+            logger.logMessage("alice", "alice: message numéro " + i);
+        }
+        logger.getWriter().flush(60_000);
+        return logger.getWriter().getWrittenCount();
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.socketproject.server.bench;
+
+import org.example.socketproject.server.ChatServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routage d'un /msg : découpage de la commande, recherche du destinataire dans le registre,
+ * dépôt du message privé et de la confirmation, journalisation asynchrone.
+ * Le coût ne doit pas dépendre du nombre de clients connectés.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrivateMessageBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int clients;
+
+    private ChatServer server;
+    private InMemoryClient[] connected;
+    private String[] commands;
+    private int next;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        ChatFixture.useH2();
+        ChatFixture.headless();
+        ChatFixture.silenceConsole();
+        server = ChatFixture.newServer();
+        connected = ChatFixture.connect(server, clients, false);
+        // Destinataires répartis sur tout le registre
+        commands = new String[Math.min(clients, 1024)];
+        for (int i = 0; i < commands.length; i++) {
+            int target = (int) ((long) i * clients / commands.length);
+            commands[i] = "/msg " + ChatFixture.username(target) + " on se retrouve à 14h ?";
+        }
+        Thread.sleep(200);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ChatFixture.disconnect(connected);
+        server.stop();
+        ChatFixture.restoreConsole();
+    }
+
+    @Benchmark
+    public boolean routePrivateMessage() {
+        String command = commands[next];
+        next = (next + 1) % commands.length;
+        return connected[0].receive(command);
+    }
+
+    @Benchmark
+    public boolean unknownRecipient() {
+        return connected[0].receive("/msg personne on se retrouve à 14h ?");
+    }
+}
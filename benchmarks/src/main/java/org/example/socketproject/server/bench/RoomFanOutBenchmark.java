@@ -0,0 +1,78 @@
+package org.example.socketproject.server.bench;
+
+import org.example.socketproject.server.ChatServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût d'un message de salon selon le nombre d'abonnés et le nombre total de connexions.
+ * Les roomSize premiers clients rejoignent le salon "bench" ; tous restent dans le salon général.
+ *   roomMessage    : message dans "bench", doit dépendre de roomSize et pas de connections ;
+ *   generalMessage : même message dans le salon général, pour comparaison (O(connections)).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomFanOutBenchmark {
+
+    @Param({"1000", "10000"})
+    public int connections;
+
+    @Param({"10", "100", "1000"})
+    public int roomSize;
+
+    private ChatServer server;
+    private InMemoryClient[] connected;
+    private InMemoryClient roomSender;
+    private InMemoryClient generalSender;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        ChatFixture.useH2();
+        ChatFixture.headless();
+        ChatFixture.silenceConsole();
+        server = ChatFixture.newServer();
+        connected = ChatFixture.connect(server, connections, false);
+        int members = Math.min(roomSize, connections - 1);
+        for (int i = 0; i < members; i++) {
+            connected[i].receive("/join bench");
+        }
+        roomSender = connected[0];
+        // Le dernier client n'a rejoint aucun salon : ses messages vont au salon général
+        generalSender = connected[connections - 1];
+        // Laisser passer la dernière diffusion de la présence
+        Thread.sleep(200);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ChatFixture.disconnect(connected);
+        server.stop();
+        ChatFixture.restoreConsole();
+    }
+
+    @Benchmark
+    public boolean roomMessage() {
+        return roomSender.receive("Point d'équipe à 14h dans la salle habituelle");
+    }
+
+    @Benchmark
+    public boolean generalMessage() {
+        return generalSender.receive("Point d'équipe à 14h dans la salle habituelle");
+    }
+}
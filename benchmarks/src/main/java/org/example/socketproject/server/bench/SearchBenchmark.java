@@ -0,0 +1,86 @@
+package org.example.socketproject.server.bench;
+
+import org.example.socketproject.server.Message;
+import org.example.socketproject.server.SearchHit;
+import org.example.socketproject.server.SearchIndex;
+import org.example.socketproject.server.ServerConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Latence de /search sur l'index plein texte (SearchIndex), hors réseau : l'index est rempli de
+ * MESSAGES messages (segments écrits tous les 10 000 messages, fusionnés en arrière-plan), puis
+ * chaque invocation cherche les 20 résultats les plus récents.
+ * - rare : terme présent dans un message sur 1 000 ;
+ * - common : deux termes fréquents, dont l'intersection parcourt tous les segments ;
+ * - absent : terme inconnu (recherche dichotomique dans chaque segment, rien d'autre).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int MESSAGES = 200_000;
+    private static final int LIMIT = 20;
+
+    @Param({"rare", "common", "absent"})
+    public String query;
+
+    private SearchIndex index;
+    private Path directory;
+    private String terms;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("chat-search");
+        System.setProperty(ServerConfig.SEARCH_DIR, directory.toString());
+        System.setProperty(ServerConfig.SEARCH_FLUSH_DOCS, "10000");
+        // Aucun message abandonné pendant le remplissage
+        System.setProperty(ServerConfig.LOG_QUEUE_CAPACITY, String.valueOf(MESSAGES));
+        index = new SearchIndex();
+        for (int i = 0; i < MESSAGES; i++) {
+            String sender = ChatFixture.username(i % 50);
+            index.submit(new Message(sender, sender + ": message " + i + " sujet" + (i % 1000)
+                    + (i % 3 == 0 ? " réunion" : "") + (i % 7 == 0 ? " demain" : ""), "PUBLIC", null, null));
+        }
+        index.flush(60_000);
+        terms = switch (query) {
+            case "rare" -> "sujet42";
+            case "common" -> "réunion demain";
+            default -> "introuvable";
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public List<SearchHit> search() {
+        return index.search(terms, Integer.MAX_VALUE, LIMIT, hit -> true);
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.socketproject.server.bench;
+
+import org.example.socketproject.server.HibernateUserStore;
+import org.example.socketproject.server.HibernateUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comptes lus sans passer par CredentialCache, sur H2 en mémoire :
+ * - "database" : une requête à chaque appel (StatelessSession, hors cache de second niveau) ;
+ * - "cache" : HibernateUserStore, User par sa clé naturelle et pages de pseudos dans le cache de
+ *   second niveau (ehcache.xml).
+ * passwordLookup : empreinte d'un compte, usernamePage : une page de 50 pseudos parmi 2000 comptes
+ * (liste de l'interface d'administration ; "database" lit tous les comptes, comme avant la pagination).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserCacheBenchmark {
+    private static final int PAGE = 50;
+
+    @Param({"database", "cache"})
+    public String lookup;
+
+    private HibernateUserStore users;
+    private String username;
+
+    @Setup
+    public void setup() {
+        ChatFixture.useH2();
+        ChatFixture.ensureUsers(2000);
+        username = ChatFixture.username(42);
+        users = new HibernateUserStore();
+    }
+
+    @Benchmark
+    public String passwordLookup() {
+        if (lookup.equals("cache")) {
+            return users.findPasswordHash(username);
+        }
+        return HibernateUtil.read(session -> session.createSelectionQuery(
+                        "select u.passwordHash from User u where u.username = :username", String.class)
+                .setParameter("username", username)
+                .uniqueResult());
+    }
+
+    @Benchmark
+    public List<String> usernamePage() {
+        if (lookup.equals("cache")) {
+            return users.listUsernames(PAGE * 10, PAGE);
+        }
+        List<String> usernames = new ArrayList<>(users.findAll().keySet());
+        usernames.sort(null);
+        return usernames.subList(PAGE * 10, PAGE * 11);
+    }
+}
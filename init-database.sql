@@ -50,6 +50,7 @@ BEGIN
         message NVARCHAR(MAX) NOT NULL,
         message_type NVARCHAR(20) DEFAULT 'PUBLIC', -- 'PUBLIC', 'PRIVATE'
         recipient_username NVARCHAR(50) NULL, -- NULL pour les messages publics
+        room NVARCHAR(50) NULL, -- salon des messages publics (NULL : privé, ou antérieur aux salons)
         timestamp DATETIME DEFAULT GETDATE()
     );
     
@@ -58,6 +59,27 @@ BEGIN
 END
 GO
 
+-- Salon des messages publics (bases créées avant les salons)
+IF COL_LENGTH('dbo.messages', 'room') IS NULL
+BEGIN
+    ALTER TABLE messages ADD room NVARCHAR(50) NULL;
+END
+GO
+
+-- Index de l'historique d'un salon (rejeu à l'abonnement, /history #salon)
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'idx_messages_room_timestamp' AND object_id = OBJECT_ID(N'[dbo].[messages]'))
+BEGIN
+    CREATE INDEX idx_messages_room_timestamp ON messages(room, timestamp);
+END
+GO
+
+-- Index de l'historique des conversations privées (/history @utilisateur, pagination par clé)
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'idx_messages_private_conversation' AND object_id = OBJECT_ID(N'[dbo].[messages]'))
+BEGIN
+    CREATE INDEX idx_messages_private_conversation ON messages(username, recipient_username, timestamp);
+END
+GO
+
 PRINT 'Base de données ChatDB initialisée avec succès!';
 GO
 
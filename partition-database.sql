@@ -0,0 +1,167 @@
+-- Partitionnement mensuel des tables messages et server_logs (SQL Server 2016 ou plus récent)
+-- Optionnel : à exécuter après init-database.sql, pendant une fenêtre de maintenance
+-- (la migration reconstruit les tables).
+--
+-- Pourquoi : sans partition, la purge des anciennes lignes (RetentionService, chat.retention.*)
+-- supprime ligne par ligne et fragmente idx_messages_timestamp. Avec une partition par mois, les
+-- mois expirés sont vidés d'un coup (TRUNCATE ... WITH (PARTITIONS)), sans journaliser chaque
+-- ligne ni toucher aux mois récents : le coût des insertions ne dépend plus de la taille de
+-- l'historique.
+--
+-- Répartition des rôles :
+--   - la procédure chat_partition_maintenance (fin de ce script), planifiée chaque mois (Agent SQL
+--     Server), crée la partition des mois à venir et vide les mois plus anciens que la plus longue
+--     durée de conservation (par exemple 13 mois pour PUBLIC=365) ;
+--   - RetentionService garde les durées plus courtes par type (EVENT=7, ERROR=90...), par petits
+--     lots pendant la plage creuse : ces suppressions ne touchent qu'une ou deux partitions ;
+--   - chat.retention.archiveDir reste nécessaire si les lignes doivent être archivées avant
+--     suppression : TRUNCATE n'archive rien.
+--
+-- Changement de clé : l'index cluster passe de (id) à (timestamp, id), les insertions restent
+-- séquentielles ; la clé primaire devient (id, timestamp), non cluster et alignée sur les
+-- partitions (id reste unique : IDENTITY). Hibernate ne lit que id.
+
+USE ChatDB;
+GO
+
+-- Fonction et schéma de partition par mois, des 13 derniers mois aux 3 prochains
+IF NOT EXISTS (SELECT * FROM sys.partition_functions WHERE name = 'pf_chat_month')
+BEGIN
+    DECLARE @first DATETIME = DATEADD(MONTH, DATEDIFF(MONTH, 0, GETDATE()) - 13, 0);
+    CREATE PARTITION FUNCTION pf_chat_month (DATETIME) AS RANGE RIGHT FOR VALUES ();
+    CREATE PARTITION SCHEME ps_chat_month AS PARTITION pf_chat_month ALL TO ([PRIMARY]);
+    DECLARE @boundary DATETIME = @first;
+    WHILE @boundary <= DATEADD(MONTH, 3, GETDATE())
+    BEGIN
+        ALTER PARTITION SCHEME ps_chat_month NEXT USED [PRIMARY];
+        ALTER PARTITION FUNCTION pf_chat_month() SPLIT RANGE (@boundary);
+        SET @boundary = DATEADD(MONTH, 1, @boundary);
+    END
+END
+GO
+
+-- Migration d'une table vers le schéma de partition : timestamp obligatoire, index cluster
+-- (timestamp, id), clé primaire (id, timestamp), index secondaires alignés
+CREATE OR ALTER PROCEDURE chat_partition_table @table SYSNAME
+AS
+BEGIN
+    SET NOCOUNT ON;
+    IF EXISTS (SELECT * FROM sys.indexes i JOIN sys.partition_schemes s ON s.data_space_id = i.data_space_id
+               WHERE i.object_id = OBJECT_ID(@table) AND i.index_id <= 1)
+    BEGIN
+        PRINT @table + ' est déjà partitionnée';
+        RETURN;
+    END
+
+    DECLARE @sql NVARCHAR(MAX) = N'';
+    -- Index secondaires (recréés alignés plus bas), clé primaire et valeur par défaut de timestamp
+    SELECT @sql += N'DROP INDEX ' + QUOTENAME(i.name) + N' ON ' + QUOTENAME(@table) + N'; '
+    FROM sys.indexes i
+    WHERE i.object_id = OBJECT_ID(@table) AND i.index_id > 1 AND i.is_primary_key = 0;
+    SELECT @sql += N'ALTER TABLE ' + QUOTENAME(@table) + N' DROP CONSTRAINT ' + QUOTENAME(k.name) + N'; '
+    FROM sys.key_constraints k
+    WHERE k.parent_object_id = OBJECT_ID(@table) AND k.type = 'PK';
+    SELECT @sql += N'ALTER TABLE ' + QUOTENAME(@table) + N' DROP CONSTRAINT ' + QUOTENAME(d.name) + N'; '
+    FROM sys.default_constraints d
+    JOIN sys.columns c ON c.object_id = d.parent_object_id AND c.column_id = d.parent_column_id
+    WHERE d.parent_object_id = OBJECT_ID(@table) AND c.name = 'timestamp';
+    EXEC sp_executesql @sql;
+
+    SET @sql = N'UPDATE ' + QUOTENAME(@table) + N' SET timestamp = GETDATE() WHERE timestamp IS NULL; '
+        + N'ALTER TABLE ' + QUOTENAME(@table) + N' ALTER COLUMN timestamp DATETIME NOT NULL; '
+        + N'ALTER TABLE ' + QUOTENAME(@table) + N' ADD CONSTRAINT ' + QUOTENAME('df_' + @table + '_timestamp')
+        + N' DEFAULT GETDATE() FOR timestamp; ';
+    EXEC sp_executesql @sql;
+
+    SET @sql = N'CREATE CLUSTERED INDEX ' + QUOTENAME('cx_' + @table + '_timestamp') + N' ON ' + QUOTENAME(@table)
+        + N' (timestamp, id) ON ps_chat_month(timestamp); '
+        + N'ALTER TABLE ' + QUOTENAME(@table) + N' ADD CONSTRAINT ' + QUOTENAME('pk_' + @table)
+        + N' PRIMARY KEY NONCLUSTERED (id, timestamp) ON ps_chat_month(timestamp); ';
+    EXEC sp_executesql @sql;
+END
+GO
+
+EXEC chat_partition_table 'server_logs';
+GO
+
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'idx_server_logs_timestamp' AND object_id = OBJECT_ID(N'[dbo].[server_logs]'))
+BEGIN
+    CREATE INDEX idx_server_logs_timestamp ON server_logs(timestamp) ON ps_chat_month(timestamp);
+END
+GO
+
+EXEC chat_partition_table 'messages';
+GO
+
+-- Mêmes index que init-database.sql (et que l'entité Message), alignés sur les partitions
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'idx_messages_timestamp' AND object_id = OBJECT_ID(N'[dbo].[messages]'))
+BEGIN
+    CREATE INDEX idx_messages_timestamp ON messages(timestamp) ON ps_chat_month(timestamp);
+END
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'idx_messages_username' AND object_id = OBJECT_ID(N'[dbo].[messages]'))
+BEGIN
+    CREATE INDEX idx_messages_username ON messages(username) ON ps_chat_month(timestamp);
+END
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'idx_messages_room_timestamp' AND object_id = OBJECT_ID(N'[dbo].[messages]'))
+BEGIN
+    CREATE INDEX idx_messages_room_timestamp ON messages(room, timestamp) ON ps_chat_month(timestamp);
+END
+IF NOT EXISTS (SELECT * FROM sys.indexes WHERE name = 'idx_messages_private_conversation' AND object_id = OBJECT_ID(N'[dbo].[messages]'))
+BEGIN
+    CREATE INDEX idx_messages_private_conversation ON messages(username, recipient_username, timestamp) ON ps_chat_month(timestamp);
+END
+GO
+
+-- Maintenance mensuelle : partitions des 3 prochains mois, puis vidage et fusion des mois plus
+-- anciens que @keep_months (les deux tables partagent la fonction de partition)
+CREATE OR ALTER PROCEDURE chat_partition_maintenance @keep_months INT = 13
+AS
+BEGIN
+    SET NOCOUNT ON;
+    DECLARE @next DATETIME = DATEADD(MONTH, DATEDIFF(MONTH, 0, GETDATE()) + 1, 0);
+    WHILE @next <= DATEADD(MONTH, 3, GETDATE())
+    BEGIN
+        IF NOT EXISTS (SELECT * FROM sys.partition_range_values v JOIN sys.partition_functions f ON f.function_id = v.function_id
+                       WHERE f.name = 'pf_chat_month' AND CAST(v.value AS DATETIME) = @next)
+        BEGIN
+            ALTER PARTITION SCHEME ps_chat_month NEXT USED [PRIMARY];
+            ALTER PARTITION FUNCTION pf_chat_month() SPLIT RANGE (@next);
+        END
+        SET @next = DATEADD(MONTH, 1, @next);
+    END
+
+    DECLARE @cutoff DATETIME = DATEADD(MONTH, DATEDIFF(MONTH, 0, GETDATE()) - @keep_months, 0);
+    DECLARE @oldest DATETIME;
+    -- Partition 1 : tout ce qui précède la plus ancienne borne. La vider puis supprimer cette
+    -- borne fusionne le mois suivant dans la partition 1, jusqu'à la borne @cutoff (conservée)
+    WHILE 1 = 1
+    BEGIN
+        SET @oldest = NULL;
+        SELECT TOP 1 @oldest = CAST(v.value AS DATETIME)
+        FROM sys.partition_range_values v JOIN sys.partition_functions f ON f.function_id = v.function_id
+        WHERE f.name = 'pf_chat_month'
+        ORDER BY v.boundary_id;
+        IF @oldest IS NULL OR @oldest > @cutoff
+            BREAK;
+        TRUNCATE TABLE messages WITH (PARTITIONS (1));
+        TRUNCATE TABLE server_logs WITH (PARTITIONS (1));
+        IF @oldest = @cutoff
+            BREAK;
+        ALTER PARTITION FUNCTION pf_chat_month() MERGE RANGE (@oldest);
+    END
+
+    -- Les purges par lots de RetentionService laissent des pages à moitié vides dans les mois
+    -- récents : réorganiser (en ligne) les index des partitions fragmentées
+    DECLARE @sql NVARCHAR(MAX) = N'';
+    SELECT @sql += N'ALTER INDEX ' + QUOTENAME(i.name) + N' ON ' + QUOTENAME(OBJECT_NAME(s.object_id))
+        + N' REORGANIZE PARTITION = ' + CAST(s.partition_number AS NVARCHAR(10)) + N'; '
+    FROM sys.dm_db_index_physical_stats(DB_ID(), NULL, NULL, NULL, 'LIMITED') s
+    JOIN sys.indexes i ON i.object_id = s.object_id AND i.index_id = s.index_id
+    WHERE s.object_id IN (OBJECT_ID('messages'), OBJECT_ID('server_logs'))
+      AND s.avg_fragmentation_in_percent > 30 AND s.page_count > 1000;
+    EXEC sp_executesql @sql;
+END
+GO
+
+PRINT 'Tables messages et server_logs partitionnées par mois';
+GO
@@ -0,0 +1,168 @@
+package org.example.socketproject.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contrôle d'admission des poignées de main (authentification).
+ * - limite de débit par adresse IP (seau à jetons), appliquée à l'acceptation ;
+ * - pool borné de workers d'authentification avec une file d'attente bornée ;
+ * - délai maximal de poignée de main, compté depuis l'acceptation.
+ * Une vague de connexions est refusée rapidement au lieu de créer des threads sans limite
+ * et de priver les sessions établies.
+ */
+public class AdmissionController {
+
+    private final ThreadPoolExecutor authPool;
+    private final ScheduledThreadPoolExecutor timer;
+    private final long handshakeTimeoutMs;
+    private final double ratePerSecond;
+    private final double rateBurst;
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejectedRateLimited = new AtomicLong();
+    private final AtomicLong rejectedOverloaded = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    // Seau à jetons d'une adresse IP ; modifié uniquement dans buckets.compute()
+    private static final class TokenBucket {
+        double tokens;
+        long lastRefillNanos;
+
+        TokenBucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.lastRefillNanos = now;
+        }
+    }
+
+    public AdmissionController() {
+        int workers = Math.max(1, ServerConfig.getInt(ServerConfig.AUTH_WORKERS, 16));
+        int maxPending = Math.max(1, ServerConfig.getInt(ServerConfig.AUTH_MAX_PENDING, 1000));
+        this.handshakeTimeoutMs = ServerConfig.getLong(ServerConfig.AUTH_HANDSHAKE_TIMEOUT_MS, 5000);
+        this.ratePerSecond = ServerConfig.getInt(ServerConfig.AUTH_RATE_PER_SECOND, 20);
+        this.rateBurst = Math.max(1, ServerConfig.getInt(ServerConfig.AUTH_RATE_BURST, 100));
+
+        AtomicInteger counter = new AtomicInteger();
+        this.authPool = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxPending), runnable -> {
+                    Thread thread = new Thread(runnable, "auth-worker-" + counter.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "handshake-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+        // Oublier les adresses inactives (seau plein depuis plus d'une minute)
+        this.timer.scheduleWithFixedDelay(this::purgeIdleBuckets, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Limite de débit par IP, vérifiée à l'acceptation. Retourne false si la connexion doit être refusée.
+     */
+    public boolean tryAdmit(String ipAddress) {
+        if (ratePerSecond <= 0) {
+            admitted.incrementAndGet();
+            return true;
+        }
+        long now = System.nanoTime();
+        boolean[] allowed = new boolean[1];
+        buckets.compute(ipAddress, (ip, bucket) -> {
+            if (bucket == null) {
+                bucket = new TokenBucket(rateBurst, now);
+            } else {
+                double elapsedSeconds = (now - bucket.lastRefillNanos) / 1_000_000_000.0;
+                bucket.tokens = Math.min(rateBurst, bucket.tokens + elapsedSeconds * ratePerSecond);
+                bucket.lastRefillNanos = now;
+            }
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                allowed[0] = true;
+            }
+            return bucket;
+        });
+        if (allowed[0]) {
+            admitted.incrementAndGet();
+        } else {
+            rejectedRateLimited.incrementAndGet();
+        }
+        return allowed[0];
+    }
+
+    /**
+     * Confie une poignée de main au pool d'authentification.
+     * Retourne false si la file d'attente est pleine (serveur saturé).
+     */
+    public boolean submitHandshake(Runnable handshake) {
+        try {
+            authPool.execute(() -> {
+                inFlight.incrementAndGet();
+                try {
+                    handshake.run();
+                } finally {
+                    inFlight.decrementAndGet();
+                    completed.incrementAndGet();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejectedOverloaded.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Coupe la connexion si elle n'est pas authentifiée à l'expiration du délai.
+     * Le résultat doit être annulé (cancel) quand la poignée de main se termine.
+     */
+    public ScheduledFuture<?> watchHandshake(ClientConnection connection) {
+        if (handshakeTimeoutMs <= 0) {
+            return null;
+        }
+        return timer.schedule(() -> {
+            if (connection.handshakeTimedOut()) {
+                timedOut.incrementAndGet();
+            }
+        }, handshakeTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void purgeIdleBuckets() {
+        long now = System.nanoTime();
+        long idleNanos = TimeUnit.MINUTES.toNanos(1);
+        buckets.entrySet().removeIf(entry -> now - entry.getValue().lastRefillNanos > idleNanos);
+    }
+
+    public void shutdown() {
+        authPool.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    // Métriques
+    public int getQueuedCount() { return authPool.getQueue().size(); }
+    public int getInFlightCount() { return inFlight.get(); }
+    public long getAdmittedCount() { return admitted.get(); }
+    public long getCompletedCount() { return completed.get(); }
+    public long getRejectedRateLimitedCount() { return rejectedRateLimited.get(); }
+    public long getRejectedOverloadedCount() { return rejectedOverloaded.get(); }
+    public long getTimedOutCount() { return timedOut.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("Admission[queued=%d, inFlight=%d, admitted=%d, rateLimited=%d, overloaded=%d, timedOut=%d]",
+                getQueuedCount(), getInFlightCount(), getAdmittedCount(),
+                getRejectedRateLimitedCount(), getRejectedOverloadedCount(), getTimedOutCount());
+    }
+}
@@ -0,0 +1,196 @@
+package org.example.socketproject.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Écriture différée des Message / ServerLog : les appelants déposent les entités dans une file
+ * bornée et un thread dédié les remet par lots au stockage (LogStore : une transaction par lot
+ * en base, ou un ajout au journal local).
+ */
+public class AsyncLogWriter {
+
+    // Politique quand la file est pleine
+    public enum OverflowPolicy {
+        DROP,   // abandonner l'entrée (compteur "dropped"), l'appelant n'attend jamais
+        BLOCK   // attendre au plus offerTimeoutMs, puis abandonner
+    }
+
+    private final LogStore store;
+    private final BlockingQueue<Object> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final OverflowPolicy overflowPolicy;
+    private final long offerTimeoutMs;
+    private final Thread writerThread;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private static final MetricsRegistry.Timer BATCH_TIME = MetricsRegistry.getInstance()
+            .timer("chat_log_batch", "Écriture d'un lot de logs dans le stockage (LogStore.append)");
+    private static final MetricsRegistry.Timer PERSIST_LATENCY = MetricsRegistry.getInstance()
+            .timer("chat_log_persist", "Délai entre le dépôt d'un log et son acceptation par le stockage");
+
+    // Entité en attente, avec son instant de dépôt (latence de persistance)
+    private static final class Pending {
+        final Object entity;
+        final long submittedAt;
+
+        Pending(Object entity, long submittedAt) {
+            this.entity = entity;
+            this.submittedAt = submittedAt;
+        }
+    }
+
+    // Marqueur déposé dans la file par flush() : signalé une fois tout ce qui le précède écrit
+    private static final class FlushMarker {
+        final CountDownLatch done = new CountDownLatch(1);
+    }
+
+    public AsyncLogWriter(LogStore store, int queueCapacity, int batchSize, long flushIntervalMs,
+                          OverflowPolicy overflowPolicy, long offerTimeoutMs) {
+        this.store = store;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.overflowPolicy = overflowPolicy;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.writerThread = new Thread(this::runWriter, "chat-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Dépose une entité (Message ou ServerLog) à persister. Ne bloque jamais sur la base de données.
+     * Retourne false si l'entrée a été abandonnée (file pleine).
+     */
+    public boolean submit(Object entity) {
+        boolean accepted;
+        Pending pending = new Pending(entity, System.nanoTime());
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                accepted = queue.offer(pending, offerTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+        } else {
+            accepted = queue.offer(pending);
+        }
+        if (accepted) {
+            enqueued.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+        return accepted;
+    }
+
+    /**
+     * Attend que toutes les entrées déposées avant cet appel soient écrites.
+     * Retourne false si le délai est dépassé.
+     */
+    public boolean flush(long timeoutMs) {
+        if (!writerThread.isAlive()) {
+            return queue.isEmpty();
+        }
+        FlushMarker marker = new FlushMarker();
+        try {
+            if (!queue.offer(marker, timeoutMs, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            return marker.done.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void runWriter() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        List<FlushMarker> markers = new ArrayList<>();
+        while (true) {
+            try {
+                // Attendre la première entrée, puis compléter le lot pendant au plus flushIntervalMs
+                Object first = queue.take();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                Object next = first;
+                while (next != null) {
+                    if (next instanceof FlushMarker) {
+                        markers.add((FlushMarker) next);
+                        break;
+                    }
+                    batch.add((Pending) next);
+                    if (batch.size() >= batchSize) {
+                        break;
+                    }
+                    next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining > 0) {
+                            next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        }
+                    }
+                }
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Erreur du thread d'écriture des logs : " + e.getMessage());
+            } finally {
+                batch.clear();
+                for (FlushMarker marker : markers) {
+                    marker.done.countDown();
+                }
+                markers.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Object> entries = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            entries.add(pending.entity);
+        }
+        try {
+            store.append(entries);
+            written.addAndGet(batch.size());
+            batches.incrementAndGet();
+            long committedAt = System.nanoTime();
+            BATCH_TIME.record(committedAt - start);
+            for (Pending pending : batch) {
+                PERSIST_LATENCY.record(committedAt - pending.submittedAt);
+            }
+        } catch (Exception e) {
+            failed.addAndGet(batch.size());
+            System.err.println("Erreur lors de l'enregistrement d'un lot de " + batch.size() + " logs : " + e.getMessage());
+        }
+    }
+
+    // Rend durable ce que le stockage a déjà accepté (arrêt du serveur)
+    public void syncStore() {
+        store.sync();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getEnqueuedCount() { return enqueued.get(); }
+    public long getWrittenCount() { return written.get(); }
+    public long getDroppedCount() { return dropped.get(); }
+    public long getFailedCount() { return failed.get(); }
+    public long getBatchCount() { return batches.get(); }
+}
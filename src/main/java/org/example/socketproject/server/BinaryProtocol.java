@@ -0,0 +1,148 @@
+package org.example.socketproject.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Protocole binaire, négocié par la capacité "binary" (ligne CAPS:binary avant les identifiants).
+ * Le serveur confirme par la ligne texte CAPS_OK:...binary ; ensuite, dans les deux sens,
+ * chaque trame est :
+ *   longueur (varint, octets qui suivent) | type (1 octet) | contenu
+ *
+ * Types :
+ *   TEXT    (1) : une ligne du protocole texte, en UTF-8 (identifiants, commandes, réponses du serveur)
+ *   MESSAGE (2) : client -> serveur : texte du message pour le salon courant (UTF-8, retours à la ligne permis)
+ *                 serveur -> client : id expéditeur (varint) | longueur du salon (varint) | salon | texte
+ *   PRIVATE (3) : client -> serveur : id destinataire (varint) | texte
+ *                 serveur -> client : id expéditeur (varint) | texte
+ *   USER    (4) : serveur -> client : id (varint) | pseudo ; envoyé avant la première trame qui
+ *                 utilise cet id, et pour chaque utilisateur connecté à l'authentification
+ *   DEFLATE (5) : serveur -> client, si la capacité "deflate" a aussi été négociée : une ou
+ *                 plusieurs trames complètes (longueur comprise), compressées ensemble en deflate
+ *                 brut (RFC 1951). Chaque trame DEFLATE est indépendante (pas de dictionnaire
+ *                 partagé avec les précédentes) : un Inflater neuf, ou réinitialisé, par trame.
+ *
+ * Les ids sont attribués par le serveur (UserIds) et restent valables pendant toute la session.
+ * Le texte d'un MESSAGE n'est jamais décodé pour être relayé : ses octets sont recopiés tels
+ * quels dans la trame diffusée aux clients binaires.
+ */
+public final class BinaryProtocol {
+    public static final String CAPABILITY = "binary";
+
+    public static final byte TEXT = 1;
+    public static final byte MESSAGE = 2;
+    public static final byte PRIVATE = 3;
+    public static final byte USER = 4;
+    public static final byte DEFLATE = 5;
+
+    private BinaryProtocol() {
+    }
+
+    // Vrai si la ligne de négociation demande le protocole binaire
+    public static boolean isRequested(String capsLine) {
+        if (capsLine == null || !capsLine.startsWith("CAPS:")) {
+            return false;
+        }
+        for (String capability : capsLine.substring(5).split(",")) {
+            if (capability.trim().equalsIgnoreCase(CAPABILITY)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Lit un varint dans le tampon. Retourne -1 s'il est incomplet (position inchangée).
+     */
+    public static int getVarint(ByteBuffer buffer) throws ProtocolException {
+        int start = buffer.position();
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                buffer.position(start);
+                return -1;
+            }
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    throw new ProtocolException("varint négatif");
+                }
+                return value;
+            }
+        }
+        throw new ProtocolException("varint trop long");
+    }
+
+    // Lecture bloquante d'un varint ; -1 si le flux se termine avant son premier octet
+    public static int readVarint(InputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = input.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new ProtocolException("varint négatif");
+                }
+                return value;
+            }
+        }
+        throw new ProtocolException("varint trop long");
+    }
+
+    /**
+     * Trame complète : longueur, type, id (si id > 0), puis les octets de chaque partie.
+     * Tampon direct si la trame est partagée par plusieurs destinataires.
+     */
+    public static ByteBuffer encode(byte type, int id, boolean direct, byte[]... parts) {
+        int bodySize = 1 + (id > 0 ? varintSize(id) : 0);
+        for (byte[] part : parts) {
+            bodySize += part.length;
+        }
+        int size = varintSize(bodySize) + bodySize;
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        putVarint(buffer, bodySize);
+        buffer.put(type);
+        if (id > 0) {
+            putVarint(buffer, id);
+        }
+        for (byte[] part : parts) {
+            buffer.put(part);
+        }
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    // Préfixe de longueur (varint) d'une chaîne UTF-8 déjà encodée
+    public static byte[] lengthPrefix(byte[] bytes) {
+        ByteBuffer prefix = ByteBuffer.allocate(varintSize(bytes.length));
+        putVarint(prefix, bytes.length);
+        return prefix.array();
+    }
+}
@@ -1,30 +1,58 @@
 package org.example.socketproject.server;
 
-import org.hibernate.Session;
-import org.hibernate.Transaction;
-
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-
 /**
  * Système de logging pour enregistrer tous les événements et messages du serveur.
- * Les logs sont sauvegardés via Hibernate.
+ * Les logs sont sauvegardés en arrière-plan et par lots (AsyncLogWriter), dans le stockage
+ * choisi par chat.storage.logs (LogStore) : l'appelant ne subit jamais la latence de la base de données.
  */
 public class ChatLogger {
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-    
-    private static ChatLogger instance;
-    
+    private final AsyncLogWriter writer;
+    // Console : affichage direct, ou lignes structurées écrites en arrière-plan (mode headless)
+    private final ConsoleLogSink console;
+    // Index plein texte des messages (/search), null si désactivé ou impossible à ouvrir
+    private final SearchIndex searchIndex;
+
     private ChatLogger() {
+        AsyncLogWriter.OverflowPolicy overflow =
+                ServerConfig.getString(ServerConfig.LOG_OVERFLOW, "drop").equalsIgnoreCase("block")
+                        ? AsyncLogWriter.OverflowPolicy.BLOCK
+                        : AsyncLogWriter.OverflowPolicy.DROP;
+        LogStore store = LogStore.fromConfig();
+        store.start();
+        writer = new AsyncLogWriter(
+                store,
+                ServerConfig.getInt(ServerConfig.LOG_QUEUE_CAPACITY, 10_000),
+                ServerConfig.getInt(ServerConfig.LOG_BATCH_SIZE, 200),
+                ServerConfig.getLong(ServerConfig.LOG_FLUSH_INTERVAL_MS, 200),
+                overflow,
+                ServerConfig.getLong(ServerConfig.LOG_OFFER_TIMEOUT_MS, 50));
+        console = new ConsoleLogSink(ServerConfig.isHeadless());
+        searchIndex = openSearchIndex();
+        // Vider la file même si le processus est arrêté sans passer par ChatServer.stop() (Ctrl+C)
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "chat-log-flush"));
     }
     
-    public static synchronized ChatLogger getInstance() {
-        if (instance == null) {
-            instance = new ChatLogger();
-        }
-        return instance;
+    // Instance unique, créée au premier appel sans verrou (un moniteur épinglerait les threads virtuels)
+    private static final class Holder {
+        private static final ChatLogger INSTANCE = new ChatLogger();
+    }
+
+    public static ChatLogger getInstance() {
+        return Holder.INSTANCE;
     }
     
+    private static SearchIndex openSearchIndex() {
+        if (!ServerConfig.getBoolean(ServerConfig.SEARCH_ENABLED, true)) {
+            return null;
+        }
+        try {
+            return new SearchIndex();
+        } catch (Exception e) {
+            System.err.println("Index de recherche indisponible : " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Enregistre un événement du serveur (démarrage, connexions, déconnexions, erreurs)
      */
@@ -36,23 +64,11 @@ public class ChatLogger {
      * Enregistre un événement du serveur avec un type spécifique
      */
     private void logServerEvent(String logType, String event) {
-        String timestamp = LocalDateTime.now().format(DATE_FORMATTER);
-        String logEntry = String.format("[%s] %s", timestamp, event);
-        
         // Afficher dans la console
-        System.out.println(logEntry);
+        console.info(logType, event);
         
-        // Enregistrer dans la base de données
-        Transaction transaction = null;
-        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
-            transaction = session.beginTransaction();
-            ServerLog log = new ServerLog(logType, event);
-            session.persist(log);
-            transaction.commit();
-        } catch (Exception e) {
-            if (transaction != null) transaction.rollback();
-            System.err.println("Erreur lors de l'enregistrement du log : " + e.getMessage());
-        }
+        // Enregistrer dans la base de données (en arrière-plan)
+        writer.submit(new ServerLog(logType, event));
     }
     
     /**
@@ -66,21 +82,21 @@ public class ChatLogger {
      * Enregistre un message (public ou privé)
      */
     public void logMessage(String username, String message, String messageType, String recipientUsername) {
-        String timestamp = LocalDateTime.now().format(DATE_FORMATTER);
-        String logEntry = String.format("[%s] [%s] %s", timestamp, username, message);
-        
-        // Enregistrer dans la base de données
-        Transaction transaction = null;
-        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
-            transaction = session.beginTransaction();
-            Message msg = new Message(username, message, 
-                    messageType != null ? messageType : "PUBLIC", 
-                    recipientUsername);
-            session.persist(msg);
-            transaction.commit();
-        } catch (Exception e) {
-            if (transaction != null) transaction.rollback();
-            System.err.println("Erreur lors de l'enregistrement du message : " + e.getMessage());
+        logMessage(username, message, messageType, recipientUsername, null);
+    }
+
+    /**
+     * Enregistre un message public envoyé dans un salon
+     */
+    public void logMessage(String username, String message, String messageType, String recipientUsername, String room) {
+        Message entry = new Message(username, message,
+                messageType != null ? messageType : "PUBLIC",
+                recipientUsername, room);
+        // Enregistrer dans la base de données (en arrière-plan)
+        writer.submit(entry);
+        // Indexer pour /search (en arrière-plan)
+        if (searchIndex != null) {
+            searchIndex.submit(entry);
         }
     }
     
@@ -88,23 +104,11 @@ public class ChatLogger {
      * Enregistre une erreur
      */
     public void logError(String error) {
-        String timestamp = LocalDateTime.now().format(DATE_FORMATTER);
-        String logEntry = String.format("[%s] [ERROR] %s", timestamp, error);
-        
         // Afficher dans la console
-        System.err.println(logEntry);
+        console.error("ERROR", error);
         
-        // Enregistrer dans la base de données
-        Transaction transaction = null;
-        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
-            transaction = session.beginTransaction();
-            ServerLog log = new ServerLog("ERROR", error);
-            session.persist(log);
-            transaction.commit();
-        } catch (Exception e) {
-            if (transaction != null) transaction.rollback();
-            System.err.println("Erreur lors de l'enregistrement de l'erreur : " + e.getMessage());
-        }
+        // Enregistrer dans la base de données (en arrière-plan)
+        writer.submit(new ServerLog("ERROR", error));
     }
     
     public void logConnection(String username, String ipAddress) {
@@ -123,7 +127,34 @@ public class ChatLogger {
         logServerEvent("SERVER_STOP", "Serveur arrêté");
     }
 
+    /**
+     * Écrit tous les logs encore en file d'attente (appelé à l'arrêt du serveur).
+     * Le thread d'écriture reste actif : le serveur peut être redémarré depuis l'interface.
+     */
     public void close() {
+        long timeoutMs = ServerConfig.getLong(ServerConfig.LOG_SHUTDOWN_FLUSH_MS, 10_000);
+        if (!writer.flush(timeoutMs)) {
+            System.err.println("Délai dépassé lors de l'écriture des derniers logs ("
+                    + writer.getQueueDepth() + " en attente)");
+        }
+        writer.syncStore();
+        if (searchIndex != null && !searchIndex.flush(timeoutMs)) {
+            System.err.println("Délai dépassé lors de l'écriture de l'index de recherche");
+        }
+        console.flush(1_000);
         // HibernateUtil.shutdown(); // On pourrait fermer ici, mais attention si le logger est utilisé lors de la fermeture globale
     }
+
+    // Statistiques de l'écriture différée (file, lots, entrées abandonnées)
+    public AsyncLogWriter getWriter() {
+        return writer;
+    }
+
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    public ConsoleLogSink getConsole() {
+        return console;
+    }
 }
\ No newline at end of file
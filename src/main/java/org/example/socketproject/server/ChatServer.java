@@ -2,68 +2,129 @@ package org.example.socketproject.server;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class ChatServer {
+    private static final MetricsRegistry.Timer BROADCAST_TIME = MetricsRegistry.getInstance()
+            .timer("chat_broadcast", "Diffusion d'un message à tous les clients (dépôt dans les files)");
+
     private int port;
     private ServerSocket serverSocket;
-    private Set<ClientHandler> clients;
-    private Set<String> usernames;
+    private final ClientRegistry clients;
+    // Autres nœuds de la grappe (sans effet si le serveur fonctionne seul)
+    private final ClusterNode cluster;
+    private final PresenceBroadcaster presence;
     private ExecutorService threadPool;
+    private final ServerConfig.Transport transport;
+    private NioServerTransport nioTransport;
+    private final AdmissionController admission;
+    private MetricsExporter metricsExporter;
+    // Ids numériques des pseudos (protocole binaire)
+    private final UserIds userIds = new UserIds();
+    // Salons et leurs abonnés (le salon général contient tous les clients authentifiés)
+    private final RoomRegistry rooms = new RoomRegistry();
+    // Derniers messages de chaque salon, rejoués aux clients qui s'y abonnent
+    private final HistoryCache history = new HistoryCache();
+    // Pages plus anciennes, à la demande (/history)
+    private final HistoryService historyService = new HistoryService();
+    // Recherche plein texte dans l'index des messages (/search)
+    private final SearchService searchService = new SearchService();
+    // Purge des anciens messages et logs pendant la plage creuse (null si désactivée)
+    private final RetentionService retention = RetentionService.isEnabled() ? new RetentionService() : null;
     private volatile boolean running;
-    private ServerController serverController;
+    // Interface graphique, écho console... (aucun en mode headless)
+    private final CopyOnWriteArrayList<ServerEventListener> listeners = new CopyOnWriteArrayList<>();
 
     public ChatServer(int port) {
         this.port = port;
-        this.clients = ConcurrentHashMap.newKeySet(); // Thread-safe
-        this.usernames = ConcurrentHashMap.newKeySet(); // Pseudos uniques
-        this.threadPool = Executors.newCachedThreadPool();
+        this.clients = new ClientRegistry(); // Thread-safe, indexé par pseudo
+        this.cluster = new ClusterNode(clients, port);
+        this.presence = new PresenceBroadcaster(clients, cluster, this::onPresenceChanged);
+        // Threads virtuels : un ClientHandler bloqué dans readLine() ne monopolise plus un thread système
+        this.threadPool = ServerConfig.useVirtualThreads()
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newCachedThreadPool();
+        this.transport = ServerConfig.getTransport();
+        this.admission = new AdmissionController();
         this.running = false;
+        // Mode headless : le contenu des conversations n'est pas recopié sur la console
+        if (!ServerConfig.isHeadless()) {
+            listeners.add(new ConsoleEchoListener());
+        }
     }
 
     public void start() {
         ChatLogger logger = ChatLogger.getInstance();
+        // Initialiser les singletons (et Hibernate) sur ce thread, jamais sur le thread d'un client
+        UserManager.getInstance();
+        history.warmUp();
         try {
-            serverSocket = new ServerSocket(port);
+            // Rejoindre la grappe avant d'accepter des clients : les pseudos y sont réservés
+            cluster.start(this);
+            // Les deux transports passent par des canaux : les trames partagées (Frame) sont
+            // écrites directement avec SocketChannel.write(), sans copie par destinataire
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverSocket = serverChannel.socket();
             running = true;
             logger.logServerStart(port);
+            startMetrics();
+            if (retention != null) {
+                retention.start();
+            }
+            System.out.println(" Mode de transport : " + transport.name().toLowerCase()
+                    + (transport == ServerConfig.Transport.BLOCKING && ServerConfig.useVirtualThreads() ? " (threads virtuels)" : ""));
             String ipInfo = " Adresses IP disponibles pour la connexion :\n   - localhost / 127.0.0.1 (même machine)";
             System.out.println(ipInfo);
             StringBuilder ipAddresses = new StringBuilder();
             printLocalIPAddresses(ipAddresses);
             System.out.println(" En attente de connexions...\n");
             
-            if (serverController != null) {
-                serverController.appendLog("✅ Serveur démarré sur le port " + port);
-                serverController.appendLog(ipInfo);
-                if (ipAddresses.length() > 0) {
-                    serverController.appendLog(ipAddresses.toString());
-                }
-                serverController.appendLog(" En attente de connexions...");
+            String addresses = ipInfo + (ipAddresses.length() > 0 ? "\n" + ipAddresses.toString().stripTrailing() : "");
+            for (ServerEventListener listener : listeners) {
+                listener.serverStarted(port, addresses);
+            }
+
+            if (transport == ServerConfig.Transport.NIO) {
+                nioTransport = new NioServerTransport(this);
+                nioTransport.run(serverChannel);
+                return;
             }
 
             while (running) {
                 try {
-                    Socket clientSocket = serverSocket.accept();
+                    SocketChannel clientChannel = serverChannel.accept();
+                    Socket clientSocket = clientChannel.socket();
+                    if (!admission.tryAdmit(clientSocket.getInetAddress().getHostAddress())) {
+                        rejectConnection(clientChannel);
+                        continue;
+                    }
 
+                    // La poignée de main passe par le pool d'authentification borné ;
+                    // seules les sessions authentifiées occupent le pool des clients
                     ClientHandler clientHandler = new ClientHandler(clientSocket, this);
-                    clients.add(clientHandler);
-                    threadPool.execute(clientHandler);
-
-                    String clientIP = clientSocket.getInetAddress().getHostAddress();
-                    String connectionMsg = "Nouvelle connexion depuis " + clientIP + " (Clients connectés : " + clients.size() + ")";
-                    logger.logServerEvent(connectionMsg);
-                    if (serverController != null) {
-                        serverController.appendLog("🔌 " + connectionMsg);
-                        serverController.updateClientCount(clients.size());
+                    clientAccepted(clientHandler);
+                    if (!admission.submitHandshake(() -> {
+                        if (clientHandler.runHandshake()) {
+                            threadPool.execute(clientHandler::runSession);
+                        }
+                    })) {
+                        clientHandler.rejectOverloaded();
                     }
 
                 } catch (IOException e) {
@@ -80,18 +141,151 @@ public class ChatServer {
         }
     }
 
+    // Jauges lues à chaque export, puis exposition HTTP / JMX
+    private void startMetrics() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("chat_connections_active", "Connexions ouvertes (authentifiées ou non)", clients::size);
+        metrics.gauge("chat_users_authenticated", "Utilisateurs authentifiés", clients::getUserCount);
+        metrics.gauge("chat_rooms_open", "Salons ouverts (salon général compris)", () -> rooms.list().size());
+        if (cluster.isEnabled()) {
+            metrics.gauge("chat_cluster_peers", "Nœuds de la grappe joignables", cluster::getPeerCount);
+            metrics.gauge("chat_cluster_remote_users", "Utilisateurs connectés sur les autres nœuds",
+                    cluster::getRemoteUserCount);
+        }
+        metrics.gauge("chat_outbound_backlog_total", "Messages en attente dans les files sortantes",
+                () -> outboundStats(false));
+        metrics.gauge("chat_outbound_backlog_max", "File sortante la plus longue (client le plus lent)",
+                () -> outboundStats(true));
+        metrics.gauge("chat_outbound_dropped", "Messages abandonnés par les files sortantes des clients connectés",
+                () -> clients.sessions().stream().mapToLong(c -> c.getOutboundQueue().getDroppedCount()).sum());
+        metrics.gauge("chat_admission_queued", "Poignées de main en attente d'un worker", admission::getQueuedCount);
+        metrics.gauge("chat_admission_in_flight", "Poignées de main en cours", admission::getInFlightCount);
+        metrics.gauge("chat_admission_rejected_rate_limited", "Connexions refusées par la limite par IP",
+                admission::getRejectedRateLimitedCount);
+        metrics.gauge("chat_admission_rejected_overloaded", "Poignées de main refusées (pool saturé)",
+                admission::getRejectedOverloadedCount);
+        metrics.gauge("chat_admission_timed_out", "Poignées de main expirées", admission::getTimedOutCount);
+        AsyncLogWriter writer = ChatLogger.getInstance().getWriter();
+        metrics.gauge("chat_log_queue_depth", "Logs en attente d'écriture en base", writer::getQueueDepth);
+        metrics.gauge("chat_log_written", "Logs écrits en base", writer::getWrittenCount);
+        metrics.gauge("chat_log_dropped", "Logs abandonnés (file pleine)", writer::getDroppedCount);
+        metrics.gauge("chat_log_failed", "Logs perdus sur une erreur d'écriture", writer::getFailedCount);
+        CredentialCache cache = UserManager.getInstance().getCredentialCache();
+        metrics.gauge("chat_auth_cache_hits", "Identifiants trouvés dans le cache", cache::getHitCount);
+        metrics.gauge("chat_auth_cache_misses", "Identifiants lus en base", cache::getMissCount);
+        HibernateUtil.instrumentConnectionPool(metrics);
+        HibernateUtil.instrumentCache(metrics);
+
+        metricsExporter = new MetricsExporter(metrics);
+        metricsExporter.start();
+    }
+
+    private double outboundStats(boolean max) {
+        long total = 0;
+        int longest = 0;
+        for (ClientConnection client : clients.sessions()) {
+            int depth = client.getOutboundQueue().getDepth();
+            total += depth;
+            longest = Math.max(longest, depth);
+        }
+        return max ? longest : total;
+    }
+
+    // Refuser une connexion trop fréquente (limite de débit par IP), sans créer de ClientConnection
+    void rejectConnection(SocketChannel channel) {
+        String clientIP = channel.socket().getInetAddress().getHostAddress();
+        try {
+            channel.write(Frame.of("AUTH_FAILED:Trop de tentatives de connexion, réessayez plus tard").buffer());
+        } catch (IOException e) {
+            // Le client est déjà parti
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignorer les erreurs de fermeture
+        }
+        ChatLogger.getInstance().logError("Connexion refusée (limite de débit) depuis " + clientIP);
+    }
+
+    public AdmissionController getAdmissionController() {
+        return admission;
+    }
+
+    // Enregistrer un client qui vient d'être accepté (quel que soit le transport)
+    void clientAccepted(ClientConnection client) {
+        client.startHandshakeTimer(admission);
+        clients.add(client);
+        String connectionMsg = "Nouvelle connexion depuis " + client.getRemoteAddress() + " (Clients connectés : " + clients.size() + ")";
+        ChatLogger.getInstance().logServerEvent(connectionMsg);
+        for (ServerEventListener listener : listeners) {
+            listener.connectionsChanged(connectionMsg, clients.size());
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    // Nombre d'utilisateurs authentifiés
+    public int getUserCount() {
+        return clients.getUserCount();
+    }
+
+    // Exécuter une tâche propre à un client (ex. son writer) sur le pool du mode bloquant
+    void executeClientTask(Runnable task) {
+        threadPool.execute(task);
+    }
+
+    /**
+     * Profondeur de la file sortante de chaque client (pseudo, ou adresse IP avant authentification).
+     * Permet de repérer les clients lents sans qu'ils ralentissent la diffusion.
+     */
+    public Map<String, Integer> getOutboundQueueDepths() {
+        Map<String, Integer> depths = new HashMap<>();
+        for (ClientConnection client : clients.sessions()) {
+            depths.put(client.getUsername(), client.getOutboundQueue().getDepth());
+        }
+        for (ClientConnection client : clients.pending()) {
+            depths.merge(client.getRemoteAddress(), client.getOutboundQueue().getDepth(), Integer::sum);
+        }
+        return depths;
+    }
+
     public void stop() {
         running = false;
         ChatLogger logger = ChatLogger.getInstance();
 
         System.out.println("\n Arrêt du serveur...");
 
-        // Fermer tous les clients
-        for (ClientHandler client : clients) {
+        // Fermer tous les clients : fin des files d'envoi, une seule attente commune pour les
+        // derniers messages (un client lent ne retarde pas les suivants), puis coupure des retardataires
+        List<ClientConnection> connections = new ArrayList<>(clients.pending());
+        connections.addAll(clients.sessions());
+        for (ClientConnection client : connections) {
+            client.getOutboundQueue().close();
+        }
+        long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ClientConnection.DRAIN_TIMEOUT_MS);
+        for (ClientConnection client : connections) {
+            try {
+                if (!client.awaitDrained(drainDeadline)) {
+                    client.abort();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                client.abort();
+            }
+        }
+        for (ClientConnection client : connections) {
             client.disconnect();
         }
 
-        // Arrêter le pool de threads
+        // Arrêter le pool d'authentification et le pool de threads
+        presence.shutdown();
+        admission.shutdown();
         threadPool.shutdown();
         try {
             if (!threadPool.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -110,105 +304,348 @@ public class ChatServer {
             logger.logError("Erreur lors de la fermeture du serveur : " + e.getMessage());
         }
 
+        // Arrêter les boucles NIO
+        if (nioTransport != null) {
+            nioTransport.stop();
+        }
+
+        // Les autres nœuds oublient les utilisateurs de celui-ci en voyant le lien se fermer
+        cluster.stop();
+
+        historyService.shutdown();
+        searchService.shutdown();
+        if (retention != null) {
+            retention.stop();
+        }
+
+        if (metricsExporter != null) {
+            metricsExporter.stop();
+            metricsExporter = null;
+        }
+
         logger.logServerStop();
         logger.close();
     }
 
-    // Diffuser un message à tous les clients sauf l'expéditeur
-    public void broadcast(String message, ClientHandler sender) {
-        // Enregistrer le message dans les logs si c'est un message utilisateur (pas un message système)
-        if (sender != null && sender.getUsername() != null && message.contains(": ")) {
-            ChatLogger.getInstance().logMessage(sender.getUsername(), message);
+    // Message du serveur (arrivée, départ...) à tous les clients authentifiés de la grappe
+    // sauf l'expéditeur, sans journalisation
+    public void broadcast(String message, ClientConnection sender) {
+        broadcastLocal(message, sender);
+        cluster.relayBroadcast(message);
+    }
+
+    // Même diffusion, limitée aux clients de ce nœud (aussi pour les messages des autres nœuds)
+    void broadcastLocal(String message, ClientConnection sender) {
+        // Encoder une seule fois pour tous les destinataires
+        long start = System.nanoTime();
+        Frame frame = Frame.shared(message);
+        for (ClientConnection client : clients.sessions()) {
+            if (client != sender && client.isRegistered()) {
+                client.sendFrame(frame);
+            }
         }
-        
-        for (ClientHandler client : clients) {
-            if (client != sender) {
-                client.sendMessage(message);
+        BROADCAST_TIME.recordSince(start);
+    }
+
+    /**
+     * Message d'un utilisateur dans un salon : journalisé, conservé pour le rejeu et diffusé
+     * aux seuls abonnés du salon (coût proportionnel à la taille du salon), sur ce nœud et
+     * sur les nœuds de la grappe qui ont des abonnés dans le salon.
+     * payload : texte UTF-8 reçu d'un client binaire (message null) ; la diffusion aux clients
+     * binaires recopie ces octets sans les décoder, seule la journalisation le fait (une fois).
+     */
+    public void sendRoomMessage(ClientConnection sender, String roomName, String message, byte[] payload) {
+        RoomRegistry.Room room = rooms.get(roomName);
+        if (room == null || !sender.isInRoom(roomName)) {
+            sender.sendMessage("❌ Vous n'êtes pas dans le salon " + roomName);
+            return;
+        }
+        String username = sender.getUsername();
+        Frame frame = Frame.chat(userIds.idOf(username), username, roomName, message, payload);
+        String text = frame.message();
+        ChatLogger.getInstance().logMessage(username, username + ": " + text, "PUBLIC", null, roomName);
+        notifyUserMessage(username, roomName, text);
+        deliverRoomFrame(roomName, frame, sender);
+        cluster.relayRoomMessage(roomName, username, text);
+    }
+
+    // Message d'un salon venu d'un autre nœud de la grappe
+    void deliverRoomMessage(String roomName, String username, String message) {
+        deliverRoomFrame(roomName, Frame.chat(userIds.idOf(username), username, roomName, message, null), null);
+    }
+
+    // Remise aux abonnés de ce nœud
+    private void deliverRoomFrame(String roomName, Frame frame, ClientConnection sender) {
+        RoomRegistry.Room room = rooms.get(roomName);
+        if (room == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        // Pas renvoyé à un abonné qui l'a déjà reçu dans le rejeu de l'historique
+        long seq = history.append(roomName, frame);
+        for (Map.Entry<ClientConnection, Long> member : room.members()) {
+            ClientConnection client = member.getKey();
+            if (client != sender && member.getValue() < seq) {
+                client.sendFrame(frame);
             }
         }
+        BROADCAST_TIME.recordSince(start);
     }
-    
-    // Envoyer la liste des utilisateurs connectés à tous les clients
-    public void broadcastUserList() {
-        StringBuilder userList = new StringBuilder("USERS:");
-        for (ClientHandler client : clients) {
-            if (client.getUsername() != null) {
-                if (userList.length() > 6) {
-                    userList.append(",");
-                }
-                userList.append(client.getUsername());
+
+    // Envoyer une trame aux abonnés d'un salon (présence du salon)
+    private void sendToRoom(RoomRegistry.Room room, String message, ClientConnection except) {
+        Frame frame = Frame.shared(message);
+        for (Map.Entry<ClientConnection, Long> member : room.members()) {
+            if (member.getKey() != except) {
+                member.getKey().sendFrame(frame);
+            }
+        }
+    }
+
+    // Présence d'un salon (ROOM_JOIN, ROOM_LEAVE) venue d'un autre nœud
+    void deliverRoomEvent(String roomName, String line) {
+        RoomRegistry.Room room = rooms.get(roomName);
+        if (room != null) {
+            sendToRoom(room, line, null);
+        }
+    }
+
+    public RoomRegistry getRooms() {
+        return rooms;
+    }
+
+    /**
+     * Abonner un client qui vient de s'authentifier au salon général : rejeu de l'historique,
+     * puis diffusions (toutes deux sous le verrou de l'historique du salon).
+     */
+    void enterDefaultRoom(ClientConnection client) {
+        history.replay(RoomRegistry.DEFAULT_ROOM, client, seq -> {
+            client.markRegistered();
+            client.roomJoined(RoomRegistry.DEFAULT_ROOM);
+            return rooms.subscribe(RoomRegistry.DEFAULT_ROOM, client, seq);
+        });
+    }
+
+    /**
+     * /join salon : abonnement (avec rejeu de l'historique du salon), le salon devient celui
+     * où partent les messages du client. Réponses : ROOM_JOINED:salon puis ROOM_USERS:salon:a,b ;
+     * les autres abonnés reçoivent ROOM_JOIN:salon:pseudo.
+     */
+    public void joinRoom(ClientConnection client, String requestedName) {
+        String name = RoomRegistry.normalize(requestedName);
+        if (name == null) {
+            client.sendMessage("❌ Nom de salon invalide (lettres, chiffres, _ et -, 30 caractères au plus)");
+            return;
+        }
+        if (client.isInRoom(name)) {
+            client.setCurrentRoom(name);
+            client.sendMessage("ROOM_JOINED:" + name);
+            return;
+        }
+        if (!rooms.canCreate(name)) {
+            client.sendMessage("❌ Nombre maximal de salons atteint");
+            return;
+        }
+        boolean joined = history.replay(name, client, seq -> {
+            if (!rooms.subscribe(name, client, seq)) {
+                return false;
             }
+            client.roomJoined(name);
+            // Avant les lignes rejouées
+            client.sendMessage("ROOM_JOINED:" + name);
+            return true;
+        });
+        if (!joined) {
+            client.sendMessage("❌ Nombre maximal de salons atteint");
+            return;
+        }
+        client.setCurrentRoom(name);
+        cluster.updateRoomInterest(name);
+        RoomRegistry.Room room = rooms.get(name);
+        if (room != null) {
+            // Abonnés de ce nœud seulement
+            client.sendMessage("ROOM_USERS:" + name + ":" + String.join(",", room.usernames()));
+            String event = "ROOM_JOIN:" + name + ":" + client.getUsername();
+            sendToRoom(room, event, client);
+            cluster.relayRoomEvent(name, event);
+        }
+    }
+
+    /**
+     * /leave salon : désabonnement ; le salon général ne peut pas être quitté.
+     */
+    public void leaveRoom(ClientConnection client, String requestedName) {
+        String name = RoomRegistry.normalize(requestedName);
+        if (RoomRegistry.DEFAULT_ROOM.equals(name)) {
+            client.sendMessage("❌ Impossible de quitter le salon général");
+            return;
+        }
+        if (name == null || !client.isInRoom(name)) {
+            client.sendMessage("❌ Vous n'êtes pas dans le salon " + requestedName.trim());
+            return;
+        }
+        unsubscribe(client, name);
+        if (name.equals(client.getCurrentRoom())) {
+            client.setCurrentRoom(RoomRegistry.DEFAULT_ROOM);
+        }
+        client.sendMessage("ROOM_LEFT:" + name);
+    }
+
+    // /rooms : ROOMS:general(12),dev(3)
+    public void listRooms(ClientConnection client) {
+        List<String> entries = new ArrayList<>();
+        for (RoomRegistry.Room room : rooms.list()) {
+            entries.add(room.getName() + "(" + room.size() + ")");
+        }
+        client.sendMessage("ROOMS:" + String.join(",", entries));
+    }
+
+    // Client déconnecté : désabonnement de tous ses salons
+    void leaveAllRooms(ClientConnection client) {
+        for (String name : client.getRooms()) {
+            unsubscribe(client, name);
         }
-        String userListStr = userList.toString();
-        for (ClientHandler client : clients) {
-            client.sendMessage(userListStr);
+    }
+
+    private void unsubscribe(ClientConnection client, String name) {
+        client.roomLeft(name);
+        if (!rooms.unsubscribe(name, client)) {
+            return;
+        }
+        RoomRegistry.Room room = rooms.get(name);
+        if (room == null) {
+            history.evict(name);
+        } else if (!RoomRegistry.DEFAULT_ROOM.equals(name)) {
+            // La présence du salon général passe par PresenceBroadcaster
+            sendToRoom(room, "ROOM_LEAVE:" + name + ":" + client.getUsername(), client);
+        }
+        if (!RoomRegistry.DEFAULT_ROOM.equals(name)) {
+            cluster.relayRoomEvent(name, "ROOM_LEAVE:" + name + ":" + client.getUsername());
         }
-        
-        // Mettre à jour le contrôleur serveur si disponible
-        if (serverController != null) {
-            serverController.updateConnectedUsers(usernames);
+        cluster.updateRoomInterest(name);
+    }
+    
+    public HistoryCache getHistory() {
+        return history;
+    }
+
+    public HistoryService getHistoryService() {
+        return historyService;
+    }
+
+    public SearchService getSearchService() {
+        return searchService;
+    }
+
+    public RetentionService getRetention() {
+        return retention;
+    }
+
+    // Diffusion des arrivées et départs (liste complète ou deltas selon le client)
+    public PresenceBroadcaster getPresence() {
+        return presence;
+    }
+
+    // Appelé après chaque diffusion de la présence
+    private void onPresenceChanged(Set<String> connectedUsers) {
+        for (ServerEventListener listener : listeners) {
+            listener.connectedUsersChanged(connectedUsers);
         }
     }
     
-    // Envoyer un message privé à un utilisateur spécifique
+    // Envoyer un message privé à un utilisateur spécifique (sur ce nœud ou sur celui qui le sert)
     public boolean sendPrivateMessage(String fromUsername, String toUsername, String message) {
-        for (ClientHandler client : clients) {
-            if (client.getUsername() != null && client.getUsername().equals(toUsername)) {
-                client.sendMessage("PRIVATE:" + fromUsername + ":" + message);
-                ChatLogger.getInstance().logMessage(fromUsername, message, "PRIVATE", toUsername);
-                return true;
-            }
+        if (!deliverPrivateMessage(fromUsername, toUsername, message)
+                && !cluster.relayPrivateMessage(fromUsername, toUsername, message)) {
+            return false;
         }
-        return false;
+        ChatLogger.getInstance().logMessage(fromUsername, message, "PRIVATE", toUsername);
+        return true;
     }
 
-    // Retirer un client déconnecté
-    public void removeClient(ClientHandler client) {
-        clients.remove(client);
-        String disconnectMsg = " Client déconnecté (Clients connectés : " + clients.size() + ")";
-        ChatLogger.getInstance().logServerEvent(disconnectMsg);
-        if (serverController != null) {
-            serverController.appendLog("🔌" + disconnectMsg);
-            serverController.updateClientCount(clients.size());
-            serverController.updateConnectedUsers(usernames);
+    // Remise à un destinataire de ce nœud, sans journalisation
+    boolean deliverPrivateMessage(String fromUsername, String toUsername, String message) {
+        ClientConnection client = clients.get(toUsername);
+        if (client == null) {
+            return false;
         }
+        client.sendFrame(Frame.privateMessage(userIds.idOf(fromUsername), fromUsername, message));
+        return true;
+    }
+
+    public UserIds getUserIds() {
+        return userIds;
+    }
+
+    public ClusterNode getCluster() {
+        return cluster;
     }
 
-    // Enregistrer un nouveau pseudo, retourne false s'il est déjà pris
-    public boolean registerUsername(String username) {
-        return usernames.add(username);
+    // Pseudo aussi connecté sur un nœud prioritaire de la grappe (après une coupure) : on cède
+    void closeDuplicateSession(ClientConnection client, String peer) {
+        ChatLogger.getInstance().logError("Grappe : " + client.getUsername() + " est aussi connecté sur le nœud "
+                + peer + ", fermeture de la session locale");
+        client.sendMessage("❌ Session fermée : ce nom d'utilisateur est connecté sur un autre serveur");
+        client.disconnect();
     }
 
-    // Supprimer un pseudo lors de la déconnexion
-    public void unregisterUsername(String username) {
-        if (username != null) {
-            usernames.remove(username);
+    /**
+     * Retirer un client déconnecté (et libérer son pseudo).
+     * Retourne true s'il s'agissait d'une session authentifiée.
+     */
+    public boolean removeClient(ClientConnection client) {
+        boolean wasSession = clients.remove(client);
+        if (wasSession) {
+            cluster.userLeft(client.getUsername());
         }
+        String disconnectMsg = "Client déconnecté (Clients connectés : " + clients.size() + ")";
+        ChatLogger.getInstance().logServerEvent(disconnectMsg);
+        for (ServerEventListener listener : listeners) {
+            listener.connectionsChanged(disconnectMsg, clients.size());
+        }
+        return wasSession;
+    }
+
+    // Associer le pseudo à la connexion authentifiée, retourne false s'il est déjà pris
+    // (sur ce nœud ou, en grappe, sur un autre)
+    public boolean registerUsername(String username, ClientConnection client) {
+        if (!clients.register(username, client)) {
+            return false;
+        }
+        if (!cluster.claim(username)) {
+            clients.unregister(username, client);
+            return false;
+        }
+        return true;
     }
     
-    // Définir le contrôleur serveur
-    public void setServerController(ServerController controller) {
-        this.serverController = controller;
+    // Abonner un observateur aux événements du serveur (interface graphique, écho console...)
+    public void addEventListener(ServerEventListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeEventListener(ServerEventListener listener) {
+        listeners.remove(listener);
     }
     
-    // Notifier le contrôleur lorsqu'un utilisateur rejoint
+    // Notifier les observateurs lorsqu'un utilisateur rejoint
     public void notifyUserJoined(String username) {
-        if (serverController != null) {
-            serverController.appendLog("👤 " + username + " a rejoint le chat");
+        for (ServerEventListener listener : listeners) {
+            listener.userJoined(username);
         }
     }
     
-    // Notifier le contrôleur lorsqu'un utilisateur envoie un message
-    public void notifyUserMessage(String username, String message) {
-        if (serverController != null) {
-            serverController.appendLog("💬 [" + username + "] " + message);
+    // Notifier les observateurs lorsqu'un utilisateur envoie un message
+    public void notifyUserMessage(String username, String room, String message) {
+        for (ServerEventListener listener : listeners) {
+            listener.userMessage(username, room, message);
         }
     }
     
-    // Notifier le contrôleur lorsqu'un utilisateur quitte
+    // Notifier les observateurs lorsqu'un utilisateur quitte
     public void notifyUserLeft(String username) {
-        if (serverController != null) {
-            serverController.appendLog("👋 " + username + " s'est déconnecté");
+        for (ServerEventListener listener : listeners) {
+            listener.userLeft(username);
         }
     }
 
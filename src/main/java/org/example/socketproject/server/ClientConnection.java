@@ -0,0 +1,493 @@
+package org.example.socketproject.server;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Connexion d'un client, indépendante du transport (bloquant ou NIO).
+ * Contient la logique du protocole : poignée de main "username:password",
+ * commandes (/quit, /msg) et diffusion des messages, en lignes de texte ou, si le client l'a
+ * négocié, en trames binaires (BinaryProtocol).
+ */
+public abstract class ClientConnection {
+    private static final MetricsRegistry.Timer HANDSHAKE_TIME = MetricsRegistry.getInstance()
+            .timer("chat_handshake", "Poignée de main, de l'acceptation de la connexion à la réponse");
+    private static final MetricsRegistry.Meter MESSAGES_IN = MetricsRegistry.getInstance()
+            .meter("chat_messages_in", "Lignes reçues des clients authentifiés");
+    private static final MetricsRegistry.Meter MESSAGES_OUT = MetricsRegistry.getInstance()
+            .meter("chat_messages_out", "Messages déposés dans les files sortantes des clients");
+
+    protected final ChatServer server;
+    protected volatile String username;
+    protected volatile boolean registered = false;
+    private final AtomicBoolean disconnected = new AtomicBoolean(false);
+    // Messages sortants : l'appelant (broadcast, etc.) ne fait que déposer, le transport écrit
+    protected final OutboundQueue outbound = OutboundQueue.fromConfig();
+    // Délai laissé au transport pour envoyer les derniers messages avant de fermer
+    static final long DRAIN_TIMEOUT_MS = 1000;
+    // Délai de poignée de main (AdmissionController), annulé une fois l'authentification terminée
+    private volatile ScheduledFuture<?> handshakeTimer;
+    // Capacité "presence-delta" négociée avant l'authentification (ligne CAPS:)
+    private volatile boolean capabilitiesNegotiated = false;
+    private volatile boolean presenceDeltas = false;
+    // Messages perdus par la file sortante lors du dernier envoi de la liste complète
+    private volatile long presenceDropMark = -1;
+    // Protocole binaire négocié : tout ce qui suit CAPS_OK part en trames binaires
+    private volatile boolean binary = false;
+    // Compression négociée (CAPS:binary,deflate) : trames DEFLATE au-delà de chat.compression.minBytes
+    private volatile boolean compressed = false;
+    // Ids dont le client binaire a reçu le pseudo (trame USER), remis à zéro si la file perd des trames
+    private final Set<Integer> knownUsers = ConcurrentHashMap.newKeySet();
+    private final Object knownUsersLock = new Object();
+    private volatile long knownUsersDropMark = 0;
+    private final long acceptedAt = System.nanoTime();
+    // Salons auxquels le client est abonné, et celui où partent ses messages
+    private final Set<String> rooms = ConcurrentHashMap.newKeySet();
+    private volatile String currentRoom = RoomRegistry.DEFAULT_ROOM;
+
+    protected ClientConnection(ChatServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Traite une ligne de négociation optionnelle, envoyée avant les identifiants :
+     * CAPS:cap1,cap2 (une seule fois). Les capacités reconnues sont confirmées par CAPS_OK:...
+     * Avec "binary", la confirmation est la dernière ligne texte : le transport lit et écrit
+     * ensuite des trames binaires (les identifiants arrivent dans une trame TEXT).
+     * Retourne false si la ligne n'est pas une négociation (c'est alors l'authentification).
+     */
+    protected boolean handleCapabilities(String line) {
+        if (registered || capabilitiesNegotiated || line == null || !line.startsWith("CAPS:")) {
+            return false;
+        }
+        capabilitiesNegotiated = true;
+        List<String> accepted = new ArrayList<>();
+        boolean deflate = false;
+        for (String capability : line.substring(5).split(",")) {
+            if (capability.trim().equalsIgnoreCase(PresenceBroadcaster.CAPABILITY)) {
+                presenceDeltas = true;
+                accepted.add(PresenceBroadcaster.CAPABILITY);
+            } else if (capability.trim().equalsIgnoreCase(FrameCompressor.CAPABILITY)) {
+                deflate = true;
+            }
+        }
+        if (BinaryProtocol.isRequested(line)) {
+            accepted.add(BinaryProtocol.CAPABILITY);
+            // La compression n'existe qu'en binaire (trames DEFLATE)
+            if (deflate) {
+                accepted.add(FrameCompressor.CAPABILITY);
+            }
+            sendFrame(Frame.textOnly("CAPS_OK:" + String.join(",", accepted)));
+            compressed = deflate;
+            binary = true;
+        } else {
+            sendMessage("CAPS_OK:" + String.join(",", accepted));
+        }
+        return true;
+    }
+
+    /**
+     * Traite la ligne d'authentification (format: username:password).
+     * Retourne true si le client est authentifié et enregistré.
+     */
+    protected boolean handleHandshake(String authData) {
+        try {
+            return authenticateAndRegister(authData);
+        } finally {
+            HANDSHAKE_TIME.recordSince(acceptedAt);
+            ScheduledFuture<?> timer = handshakeTimer;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+    }
+
+    private boolean authenticateAndRegister(String authData) {
+        if (authData == null || authData.trim().isEmpty()) {
+            sendMessage("AUTH_FAILED:Données d'authentification vides");
+            ChatLogger.getInstance().logError("Tentative de connexion avec des données vides");
+            return false;
+        }
+
+        // Séparer username et password
+        String[] authParts = authData.split(":", 2);
+        if (authParts.length != 2) {
+            sendMessage("AUTH_FAILED:Format d'authentification invalide. Format attendu: username:password");
+            ChatLogger.getInstance().logError("Format d'authentification invalide reçu");
+            return false;
+        }
+
+        username = authParts[0].trim();
+        String password = authParts[1].trim();
+
+        if (username.isEmpty() || password.isEmpty()) {
+            sendMessage("AUTH_FAILED:Nom d'utilisateur ou mot de passe vide");
+            ChatLogger.getInstance().logError("Tentative de connexion avec username ou password vide");
+            return false;
+        }
+
+        // Authentifier l'utilisateur
+        UserManager userManager = UserManager.getInstance();
+        if (!userManager.authenticate(username, password)) {
+            sendMessage("AUTH_FAILED:Nom d'utilisateur ou mot de passe incorrect");
+            ChatLogger.getInstance().logError("Échec d'authentification pour : " + username);
+            return false;
+        }
+
+        // Vérifier l'unicité du pseudo (déjà connecté) et l'associer à cette connexion
+        if (!server.registerUsername(username, this)) {
+            sendMessage("AUTH_FAILED:Ce nom d'utilisateur est déjà connecté");
+            ChatLogger.getInstance().logError("Tentative de connexion avec un utilisateur déjà connecté : " + username);
+            return false;
+        }
+
+        // Authentification réussie ; les diffusions n'atteignent le client qu'après AUTH_SUCCESS
+        // et les derniers messages du salon général, rejoués depuis le cache (HistoryCache)
+        sendMessage("AUTH_SUCCESS");
+        server.enterDefaultRoom(this);
+        if (binary) {
+            // Pour adresser des messages privés par id
+            announceUsers(server.getCluster().onlineUsers());
+        }
+
+        ChatLogger.getInstance().logConnection(username, getRemoteAddress());
+        server.notifyUserJoined(username);
+        server.broadcast(" " + username + " a rejoint le chat", this);
+
+        // Liste complète pour ce client, arrivée diffusée aux autres (USERS: ou USER_JOIN:)
+        server.getPresence().userJoined(this);
+        return true;
+    }
+
+    /**
+     * Traite une ligne reçue d'un client authentifié.
+     * Retourne false si le client a demandé à quitter.
+     */
+    protected boolean handleLine(String message) {
+        MESSAGES_IN.mark();
+        if (message.trim().isEmpty()) {
+            return true;
+        }
+
+        // Commandes spéciales
+        if (message.equalsIgnoreCase("/quit")) {
+            return false;
+        }
+
+        // Salons : /join salon, /leave salon, /rooms
+        if (message.startsWith("/join ")) {
+            server.joinRoom(this, message.substring(6));
+            return true;
+        }
+        if (message.startsWith("/leave ")) {
+            server.leaveRoom(this, message.substring(7));
+            return true;
+        }
+        if (message.equals("/rooms")) {
+            server.listRooms(this);
+            return true;
+        }
+
+        // Historique : /history [@utilisateur|#salon] [avantId] [nombre]
+        if (message.equals("/history") || message.startsWith("/history ")) {
+            server.getHistoryService().handle(this, message.substring("/history".length()).trim());
+            return true;
+        }
+
+        // Recherche : /search termes
+        if (message.equals("/search") || message.startsWith("/search ")) {
+            server.getSearchService().handle(this, message.substring("/search".length()).trim());
+            return true;
+        }
+
+        // Message privé : format /msg username message
+        if (message.startsWith("/msg ")) {
+            String[] parts = message.substring(5).split(" ", 2);
+            if (parts.length == 2) {
+                sendPrivateMessage(parts[0], parts[1]);
+                return true;
+            }
+        }
+
+        // Message dans le salon courant (journalisé par sendRoomMessage)
+        server.sendRoomMessage(this, currentRoom, message, null);
+        return true;
+    }
+
+    private void sendPrivateMessage(String targetUser, String privateMsg) {
+        if (server.sendPrivateMessage(username, targetUser, privateMsg)) {
+            // Confirmer à l'expéditeur que le message a été envoyé
+            sendMessage("✅ Message privé envoyé à " + targetUser);
+        } else {
+            sendMessage("❌ Utilisateur '" + targetUser + "' introuvable ou déconnecté");
+        }
+    }
+
+    /**
+     * Traite une trame binaire d'un client authentifié (type, puis contenu).
+     * Retourne false si le client a demandé à quitter.
+     */
+    protected boolean handleFrame(byte type, ByteBuffer body) {
+        switch (type) {
+            case BinaryProtocol.TEXT:
+                return handleLine(utf8(body));
+            case BinaryProtocol.MESSAGE: {
+                MESSAGES_IN.mark();
+                byte[] payload = new byte[body.remaining()];
+                body.get(payload);
+                if (payload.length > 0) {
+                    // Relayé sans décodage aux clients binaires du salon
+                    server.sendRoomMessage(this, currentRoom, null, payload);
+                }
+                return true;
+            }
+            case BinaryProtocol.PRIVATE: {
+                MESSAGES_IN.mark();
+                int id;
+                try {
+                    id = BinaryProtocol.getVarint(body);
+                } catch (ProtocolException e) {
+                    id = -1;
+                }
+                String target = id > 0 ? server.getUserIds().usernameOf(id) : null;
+                if (target == null) {
+                    sendMessage("❌ Utilisateur #" + id + " inconnu");
+                    return true;
+                }
+                sendPrivateMessage(target, utf8(body));
+                return true;
+            }
+            default:
+                sendMessage("❌ Trame de type " + type + " non prise en charge");
+                return true;
+        }
+    }
+
+    protected static String utf8(ByteBuffer body) {
+        if (body.hasArray()) {
+            String text = new String(body.array(), body.arrayOffset() + body.position(), body.remaining(), StandardCharsets.UTF_8);
+            body.position(body.limit());
+            return text;
+        }
+        return StandardCharsets.UTF_8.decode(body).toString();
+    }
+
+    // Démarrer le délai de poignée de main (appelé à l'acceptation)
+    void startHandshakeTimer(AdmissionController admission) {
+        handshakeTimer = admission.watchHandshake(this);
+    }
+
+    /**
+     * Appelé par AdmissionController à l'expiration du délai de poignée de main.
+     * Retourne true si la connexion a été coupée.
+     */
+    boolean handshakeTimedOut() {
+        if (registered || isDisconnected()) {
+            return false;
+        }
+        ChatLogger.getInstance().logError("Délai d'authentification dépassé pour " + getRemoteAddress());
+        abort();
+        return true;
+    }
+
+    // Refuser la poignée de main : le pool d'authentification est saturé
+    void rejectOverloaded() {
+        sendMessage("AUTH_FAILED:Serveur saturé, réessayez plus tard");
+        ChatLogger.getInstance().logError("Poignée de main refusée (serveur saturé) pour " + getRemoteAddress());
+        disconnect();
+    }
+
+    // Envoyer un message à ce client (sans bloquer : le message est mis en file)
+    public void sendMessage(String message) {
+        sendFrame(Frame.of(message));
+    }
+
+    // Envoyer une trame déjà encodée, éventuellement partagée avec d'autres destinataires
+    public void sendFrame(Frame frame) {
+        if (binary && frame.senderId() > 0) {
+            announceUser(frame.senderId(), frame.sender());
+        }
+        OutboundQueue.OfferResult result = outbound.offer(frame);
+        if (result == OutboundQueue.OfferResult.ACCEPTED) {
+            MESSAGES_OUT.mark();
+            onOutboundReady();
+        } else if (result == OutboundQueue.OfferResult.OVERFLOW) {
+            ChatLogger.getInstance().logError("Client trop lent, déconnexion de " + username
+                    + " (" + outbound.getDepth() + " messages en attente)");
+            outbound.clear();
+            abort();
+        }
+    }
+
+    /**
+     * Client binaire : envoie l'association id -> pseudo (trame USER) si le client ne l'a pas
+     * encore reçue. Mise en file avant la trame qui utilise l'id : un autre thread qui voit l'id
+     * comme connu ne peut déposer sa trame qu'après la trame USER.
+     */
+    private void announceUser(int id, String name) {
+        long dropped = outbound.getDroppedCount();
+        if (dropped == knownUsersDropMark && knownUsers.contains(id)) {
+            return;
+        }
+        synchronized (knownUsersLock) {
+            if (dropped != knownUsersDropMark) {
+                // La trame USER a pu être perdue : tout renvoyer à la demande
+                knownUsers.clear();
+                knownUsersDropMark = dropped;
+            }
+            if (knownUsers.contains(id)) {
+                return;
+            }
+            if (outbound.offer(Frame.user(id, name)) == OutboundQueue.OfferResult.ACCEPTED) {
+                knownUsers.add(id);
+            }
+        }
+    }
+
+    // Client binaire : ids des pseudos donnés (utilisateurs arrivés, liste à l'authentification)
+    void announceUsers(Collection<String> usernames) {
+        if (!binary) {
+            return;
+        }
+        UserIds ids = server.getUserIds();
+        for (String name : usernames) {
+            announceUser(ids.idOf(name), name);
+        }
+        onOutboundReady();
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Tampons à écrire pour un lot de trames, dans l'encodage négocié par ce client
+     * (texte, binaire, ou binaire compressé).
+     */
+    protected ByteBuffer[] encode(List<Frame> batch) {
+        if (compressed) {
+            return FrameCompressor.encode(batch);
+        }
+        boolean binaryFrames = binary;
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = batch.get(i).buffer(binaryFrames);
+        }
+        return buffers;
+    }
+
+    // Appelé par ChatServer, sous le verrou de l'historique du salon général
+    void markRegistered() {
+        registered = true;
+    }
+
+    public String getCurrentRoom() {
+        return currentRoom;
+    }
+
+    void setCurrentRoom(String room) {
+        this.currentRoom = room;
+    }
+
+    public Set<String> getRooms() {
+        return Collections.unmodifiableSet(rooms);
+    }
+
+    public boolean isInRoom(String room) {
+        return rooms.contains(room);
+    }
+
+    void roomJoined(String room) {
+        rooms.add(room);
+    }
+
+    void roomLeft(String room) {
+        rooms.remove(room);
+    }
+
+    public OutboundQueue getOutboundQueue() {
+        return outbound;
+    }
+
+    // Signaler au writer du transport que des messages attendent
+    protected abstract void onOutboundReady();
+
+    // Couper immédiatement la connexion ; le transport appelle ensuite disconnect() depuis son propre thread
+    protected abstract void abort();
+
+    // Adresse IP du client (pour les logs)
+    public abstract String getRemoteAddress();
+
+    // Fermer les ressources réseau propres au transport
+    protected abstract void closeTransport() throws IOException;
+
+    /**
+     * Après outbound.close() : attend, au plus jusqu'à deadlineNanos (System.nanoTime()), que les
+     * messages en file soient écrits. Retourne false si le délai est dépassé.
+     */
+    protected abstract boolean awaitDrained(long deadlineNanos) throws InterruptedException;
+
+    // Déconnecter proprement le client (sans effet si déjà fait)
+    public void disconnect() {
+        if (!disconnected.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // Libérer le pseudo d'abord : la liste diffusée ensuite ne contient plus ce client
+            if (server.removeClient(this)) {
+                ChatLogger.getInstance().logDisconnection(username);
+                server.leaveAllRooms(this);
+                server.notifyUserLeft(username);
+                server.broadcast(" " + username + " a quitté le chat", this);
+                // Mettre à jour la liste des utilisateurs (USERS: ou USER_LEAVE:)
+                server.getPresence().userLeft(username);
+            }
+
+            closeTransport();
+
+        } catch (IOException e) {
+            ChatLogger.getInstance().logError("Erreur lors de la déconnexion de " + username + " : " + e.getMessage());
+        }
+    }
+
+    protected boolean isDisconnected() {
+        return disconnected.get();
+    }
+
+    // Authentifié et AUTH_SUCCESS envoyé : peut recevoir les diffusions
+    public boolean isRegistered() {
+        return registered;
+    }
+
+    public boolean supportsPresenceDeltas() {
+        return presenceDeltas;
+    }
+
+    // Vrai si la file sortante n'a rien perdu depuis le dernier envoi de la liste complète
+    boolean isPresenceSynced() {
+        return presenceDropMark == outbound.getDroppedCount();
+    }
+
+    void markPresenceSynced() {
+        presenceDropMark = outbound.getDroppedCount();
+    }
+
+    // Getter pour le username (utilisé par ChatServer pour les logs)
+    public String getUsername() {
+        return username;
+    }
+}
@@ -1,119 +1,98 @@
 package org.example.socketproject.server;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport bloquant : un thread par client, bloqué dans readLine() (ou readFrame() en
+ * protocole binaire), et un writer par client qui vide la file des messages sortants.
+ * La lecture se fait en octets : après une ligne CAPS:binary, les octets déjà lus d'avance
+ * appartiennent aux trames binaires et ne doivent pas passer par un décodeur de caractères.
+ */
+public class ClientHandler extends ClientConnection implements Runnable {
+    private static final int WRITE_BATCH = 256;
 
-public class ClientHandler implements Runnable {
     private Socket socket;
-    private ChatServer server;
-    private BufferedReader reader;
-    private PrintWriter writer;
-    private String username;
-    private boolean registered = false;
+    private InputStream input;
+    private OutputStream output;
+    private final int maxFrameBytes = Math.max(256, ServerConfig.getInt(ServerConfig.NIO_MAX_LINE_BYTES, 64 * 1024));
+    private final CountDownLatch writerDone = new CountDownLatch(1);
+    private volatile boolean writerStarted = false;
 
     public ClientHandler(Socket socket, ChatServer server) {
+        super(server);
         this.socket = socket;
-        this.server = server;
     }
 
     @Override
     public void run() {
+        if (runHandshake()) {
+            runSession();
+        }
+    }
+
+    /**
+     * Poignée de main, exécutée sur le pool d'authentification (AdmissionController).
+     * Retourne true si le client est authentifié ; sinon la connexion est déjà fermée.
+     */
+    boolean runHandshake() {
         try {
-            // Initialiser les flux de communication
-            reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            writer = new PrintWriter(socket.getOutputStream(), true);
-
-            // Lire les identifiants (format: username:password)
-            String authData = reader.readLine();
-            
-            if (authData == null || authData.trim().isEmpty()) {
-                writer.println("AUTH_FAILED:Données d'authentification vides");
-                ChatLogger.getInstance().logError("Tentative de connexion avec des données vides");
-                return;
-            }
-            
-            // Séparer username et password
-            String[] authParts = authData.split(":", 2);
-            if (authParts.length != 2) {
-                writer.println("AUTH_FAILED:Format d'authentification invalide. Format attendu: username:password");
-                ChatLogger.getInstance().logError("Format d'authentification invalide reçu");
-                return;
-            }
-            
-            username = authParts[0].trim();
-            String password = authParts[1].trim();
-            
-            if (username.isEmpty() || password.isEmpty()) {
-                writer.println("AUTH_FAILED:Nom d'utilisateur ou mot de passe vide");
-                ChatLogger.getInstance().logError("Tentative de connexion avec username ou password vide");
-                return;
-            }
-            
-            // Authentifier l'utilisateur
-            UserManager userManager = UserManager.getInstance();
-            if (!userManager.authenticate(username, password)) {
-                writer.println("AUTH_FAILED:Nom d'utilisateur ou mot de passe incorrect");
-                ChatLogger.getInstance().logError("Échec d'authentification pour : " + username);
-                return;
+            // Initialiser les flux de communication (l'écriture passe par le writer et ses trames)
+            input = new BufferedInputStream(socket.getInputStream());
+            output = socket.getOutputStream();
+
+            // Lire les identifiants (format: username:password), précédés d'un éventuel CAPS:
+            String authData = readLine();
+            if (handleCapabilities(authData)) {
+                // Un client binaire attend CAPS_OK avant ses identifiants : pas encore de writer
+                writePending();
+                authData = isBinary() ? readTextFrame() : readLine();
             }
-            
-            // Vérifier l'unicité du pseudo (déjà connecté)
-            if (!server.registerUsername(username)) {
-                writer.println("AUTH_FAILED:Ce nom d'utilisateur est déjà connecté");
-                ChatLogger.getInstance().logError("Tentative de connexion avec un utilisateur déjà connecté : " + username);
-                return;
+            if (!handleHandshake(authData)) {
+                disconnect();
+                return false;
             }
-            
-            // Authentification réussie
-            writer.println("AUTH_SUCCESS");
-            registered = true;
-
-            String clientIP = socket.getInetAddress().getHostAddress();
-            ChatLogger.getInstance().logConnection(username, clientIP);
-            String joinMessage = "👤 " + username + " a rejoint le chat";
-            System.out.println(joinMessage);
-            server.notifyUserJoined(username);
-            server.broadcast(" " + username + " a rejoint le chat", this);
-            
-            // Envoyer la liste des utilisateurs connectés à tous les clients
-            server.broadcastUserList();
-            
-            // Boucle de réception des messages
-            String message;
-            while ((message = reader.readLine()) != null) {
-                if (message.trim().isEmpty()) {
-                    continue;
-                }
+            writerStarted = true;
+            server.executeClientTask(this::writeLoop);
+            return true;
+        } catch (IOException e) {
+            ChatLogger.getInstance().logError("Erreur avec le client " + username + " : " + e.getMessage());
+            disconnect();
+            return false;
+        }
+    }
 
-                // Commandes spéciales
-                if (message.equalsIgnoreCase("/quit")) {
-                    break;
+    // Session d'un client authentifié, exécutée sur le pool des clients
+    void runSession() {
+        try {
+            // Boucle de réception des messages
+            if (isBinary()) {
+                ByteBuffer frame;
+                while ((frame = readFrame()) != null) {
+                    if (!handleFrame(frame.get(), frame)) {
+                        break;
+                    }
                 }
-                
-                // Message privé : format /msg username message
-                if (message.startsWith("/msg ")) {
-                    String[] parts = message.substring(5).split(" ", 2);
-                    if (parts.length == 2) {
-                        String targetUser = parts[0];
-                        String privateMsg = parts[1];
-                        if (server.sendPrivateMessage(username, targetUser, privateMsg)) {
-                            // Confirmer à l'expéditeur que le message a été envoyé
-                            writer.println("✅ Message privé envoyé à " + targetUser);
-                        } else {
-                            writer.println("❌ Utilisateur '" + targetUser + "' introuvable ou déconnecté");
-                        }
-                        continue;
+            } else {
+                String message;
+                while ((message = readLine()) != null) {
+                    if (!handleLine(message)) {
+                        break;
                     }
                 }
-
-                String logMessage = "[" + username + "] " + message;
-                System.out.println(logMessage);
-                server.notifyUserMessage(username, message);
-                // Le logger sera appelé dans broadcast()
-                server.broadcast(username + ": " + message, this);
             }
 
         } catch (IOException e) {
@@ -123,40 +102,153 @@ public class ClientHandler implements Runnable {
         }
     }
 
-    // Envoyer un message à ce client
-    public void sendMessage(String message) {
-        if (writer != null) {
-            writer.println(message);
+    // Ligne UTF-8 terminée par \n (\r final ignoré), null en fin de flux
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = input.read()) != '\n') {
+            if (b < 0) {
+                if (line.size() == 0) {
+                    return null;
+                }
+                break;
+            }
+            if (line.size() >= maxFrameBytes) {
+                throw new ProtocolException("ligne de plus de " + maxFrameBytes + " octets");
+            }
+            line.write(b);
+        }
+        byte[] bytes = line.toByteArray();
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Trame binaire (type puis contenu, sans la longueur), null en fin de flux
+    private ByteBuffer readFrame() throws IOException {
+        int length = BinaryProtocol.readVarint(input);
+        if (length < 0) {
+            return null;
+        }
+        if (length == 0 || length + BinaryProtocol.varintSize(length) > maxFrameBytes) {
+            throw new ProtocolException("trame de " + length + " octets");
+        }
+        byte[] frame = input.readNBytes(length);
+        if (frame.length < length) {
+            throw new EOFException();
+        }
+        return ByteBuffer.wrap(frame);
+    }
+
+    // Identifiants en protocole binaire : trame TEXT (null si le client envoie autre chose)
+    private String readTextFrame() throws IOException {
+        ByteBuffer frame = readFrame();
+        if (frame == null || frame.get() != BinaryProtocol.TEXT) {
+            return null;
         }
+        return utf8(frame);
     }
 
-    // Déconnecter proprement le client
-    public void disconnect() {
+    // Writer : écrit les trames en file, un lot par appel système (écriture groupée)
+    private void writeLoop() {
+        List<Frame> batch = new ArrayList<>(WRITE_BATCH);
         try {
-            if (registered && username != null) {
-                ChatLogger.getInstance().logDisconnection(username);
-                String disconnectMsg = "👋 " + username + " s'est déconnecté";
-                System.out.println(disconnectMsg);
-                server.notifyUserLeft(username);
-                server.broadcast(" " + username + " a quitté le chat", this);
-                server.unregisterUsername(username);
-                // Mettre à jour la liste des utilisateurs
-                server.broadcastUserList();
+            while (outbound.awaitAndDrain(batch, WRITE_BATCH, Long.MAX_VALUE)) {
+                writeFrames(batch);
+                batch.clear();
             }
+        } catch (IOException e) {
+            // Socket fermé ou en erreur : le thread de lecture s'occupe de la déconnexion
+            outbound.clear();
+            abort();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            writerDone.countDown();
+        }
+    }
 
-            server.removeClient(this);
+    private void writeFrames(List<Frame> batch) throws IOException {
+        SocketChannel channel = socket.getChannel();
+        ByteBuffer[] buffers = encode(batch);
+        if (channel != null) {
+            ByteBuffer last = buffers[buffers.length - 1];
+            while (last.hasRemaining()) {
+                channel.write(buffers);
+            }
+        } else {
+            // Socket sans canal : copie vers le flux
+            for (ByteBuffer buffer : buffers) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                output.write(bytes);
+            }
+            output.flush();
+        }
+    }
 
-            if (reader != null) reader.close();
-            if (writer != null) writer.close();
-            if (socket != null && !socket.isClosed()) socket.close();
+    // Écriture directe des trames en file, avant le démarrage du writer
+    private void writePending() throws IOException {
+        List<Frame> pending = new ArrayList<>();
+        try {
+            outbound.awaitAndDrain(pending, WRITE_BATCH, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (!pending.isEmpty()) {
+            writeFrames(pending);
+        }
+    }
+
+    @Override
+    protected void onOutboundReady() {
+        // Le writer est réveillé par la file elle-même
+    }
 
+    @Override
+    protected void abort() {
+        try {
+            if (!socket.isClosed()) socket.close();
         } catch (IOException e) {
-            ChatLogger.getInstance().logError("Erreur lors de la déconnexion de " + username + " : " + e.getMessage());
+            // Ignorer les erreurs de fermeture
         }
     }
-    
-    // Getter pour le username (utilisé par ChatServer pour les logs)
-    public String getUsername() {
-        return username;
+
+    @Override
+    public String getRemoteAddress() {
+        return socket.getInetAddress().getHostAddress();
+    }
+
+    @Override
+    protected boolean awaitDrained(long deadlineNanos) throws InterruptedException {
+        return !writerStarted || writerDone.await(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    protected void closeTransport() throws IOException {
+        // Envoyer les derniers messages (ex. AUTH_FAILED) avant de fermer
+        outbound.close();
+        if (writerStarted) {
+            try {
+                // Socket déjà fermé (abort) : le writer s'arrête sur une erreur, inutile d'attendre
+                if (!socket.isClosed()) {
+                    awaitDrained(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DRAIN_TIMEOUT_MS));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (!socket.isClosed()) {
+            // Pas encore de writer (échec de la poignée de main) : écrire directement, quelques octets
+            try {
+                writePending();
+            } catch (IOException e) {
+                // Le client est déjà parti
+            }
+        }
+        outbound.clear();
+        // Fermer le socket en premier : il débloque une lecture en cours
+        if (socket != null && !socket.isClosed()) socket.close();
+        if (input != null) input.close();
+        if (output != null) output.close();
     }
-}
\ No newline at end of file
+}
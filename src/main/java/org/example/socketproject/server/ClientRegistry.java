@@ -0,0 +1,87 @@
+package org.example.socketproject.server;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registre des connexions du serveur, indexé par pseudo.
+ * - les connexions acceptées mais pas encore authentifiées sont dans "pending" ;
+ * - une session authentifiée est enregistrée sous son pseudo (unique) en une seule opération
+ *   atomique : le pseudo et la connexion ne peuvent plus être désynchronisés.
+ * Un message privé trouve son destinataire en O(1) au lieu de parcourir tous les clients.
+ */
+public class ClientRegistry {
+
+    private final Set<ClientConnection> pending = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, ClientConnection> sessions = new ConcurrentHashMap<>();
+
+    // Connexion acceptée, en attente d'authentification
+    public void add(ClientConnection client) {
+        pending.add(client);
+    }
+
+    /**
+     * Associe le pseudo à la connexion. Retourne false si le pseudo est déjà connecté,
+     * ou si la connexion a été fermée pendant l'authentification.
+     */
+    public boolean register(String username, ClientConnection client) {
+        if (sessions.putIfAbsent(username, client) != null) {
+            return false;
+        }
+        pending.remove(client);
+        // Déconnexion concurrente : remove() a pu passer avant putIfAbsent()
+        if (client.isDisconnected()) {
+            sessions.remove(username, client);
+            return false;
+        }
+        return true;
+    }
+
+    // Annule register() (pseudo refusé par la grappe) : la connexion redevient non authentifiée
+    public void unregister(String username, ClientConnection client) {
+        if (sessions.remove(username, client) && !client.isDisconnected()) {
+            pending.add(client);
+        }
+    }
+
+    /**
+     * Retire la connexion, authentifiée ou non. Retourne true si elle occupait un pseudo.
+     * La suppression est conditionnelle : un pseudo pris par une autre connexion n'est pas touché.
+     */
+    public boolean remove(ClientConnection client) {
+        pending.remove(client);
+        String username = client.getUsername();
+        return username != null && sessions.remove(username, client);
+    }
+
+    // Session authentifiée de ce pseudo, ou null
+    public ClientConnection get(String username) {
+        return sessions.get(username);
+    }
+
+    // Sessions authentifiées (vue concurrente, sans copie)
+    public Collection<ClientConnection> sessions() {
+        return sessions.values();
+    }
+
+    // Connexions pas encore authentifiées
+    public Collection<ClientConnection> pending() {
+        return Collections.unmodifiableSet(pending);
+    }
+
+    // Pseudos connectés (vue concurrente, non modifiable)
+    public Set<String> usernames() {
+        return Collections.unmodifiableSet(sessions.keySet());
+    }
+
+    public int getUserCount() {
+        return sessions.size();
+    }
+
+    // Toutes les connexions ouvertes, authentifiées ou non
+    public int size() {
+        return pending.size() + sessions.size();
+    }
+}
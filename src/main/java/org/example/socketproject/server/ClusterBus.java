@@ -0,0 +1,50 @@
+package org.example.socketproject.server;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Bus entre les nœuds d'une grappe de serveurs (ClusterNode) : transporte des lignes de texte
+ * opaques d'un nœud à un autre. L'implémentation est choisie par chat.cluster.bus :
+ * "tcp" (TcpClusterBus, défaut) ou le nom complet d'une classe qui implémente cette interface
+ * (constructeur sans argument).
+ *
+ * Garanties attendues d'une implémentation : les lignes envoyées à un même nœud arrivent dans
+ * l'ordre, et peerDisconnected est appelé quand plus rien n'arrivera d'un nœud (ses utilisateurs
+ * sont alors oubliés ; il renverra son état à la reconnexion, via peerConnected).
+ */
+public interface ClusterBus {
+
+    interface Listener {
+        // Lien sortant vers ce nœud établi : lui envoyer l'état local (utilisateurs, salons)
+        void peerConnected(String nodeId);
+
+        // Plus rien n'arrivera de ce nœud
+        void peerDisconnected(String nodeId);
+
+        // Ligne reçue d'un nœud ; appelé par un seul thread par nœud, dans l'ordre d'envoi
+        void received(String nodeId, String message);
+    }
+
+    void start(String nodeId, Listener listener) throws IOException;
+
+    // Sans bloquer ; retourne false si le nœud n'est pas joignable
+    boolean send(String nodeId, String message);
+
+    // Nœuds joignables (lien sortant établi)
+    Set<String> peers();
+
+    void stop();
+
+    static ClusterBus fromConfig() {
+        String type = ServerConfig.getString(ServerConfig.CLUSTER_BUS, "tcp");
+        if (type.equalsIgnoreCase("tcp")) {
+            return new TcpClusterBus();
+        }
+        try {
+            return (ClusterBus) Class.forName(type).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Bus de grappe invalide (" + ServerConfig.CLUSTER_BUS + ") : " + type, e);
+        }
+    }
+}
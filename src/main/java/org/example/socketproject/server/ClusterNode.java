@@ -0,0 +1,448 @@
+package org.example.socketproject.server;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Participation du serveur à une grappe de nœuds reliés par un ClusterBus.
+ * Sans grappe (chat.cluster.port / chat.cluster.bus absents), toutes les méthodes sont
+ * sans effet et le serveur fonctionne seul.
+ *
+ * Chaque nœud annonce ses utilisateurs (JOIN / LEAVE) et les salons où il a des abonnés
+ * (SUB / UNSUB) ; il connaît donc, pour chaque pseudo, le nœud qui le sert. Les messages ne
+ * partent que vers les nœuds qui ont des destinataires : message privé vers le nœud du
+ * destinataire, message de salon vers les nœuds abonnés au salon, diffusion du salon général
+ * et messages du serveur vers les nœuds qui ont au moins un utilisateur.
+ *
+ * Unicité des pseudos dans la grappe : avant d'accepter une connexion, le nœud demande le pseudo
+ * à tous les nœuds joignables (CLAIM) et attend leur accord (GRANT) au plus
+ * chat.cluster.claimTimeoutMs. Un nœud refuse (DENY) un pseudo connecté chez lui ou chez un
+ * autre, ou déjà promis à un autre nœud ; deux demandes simultanées sont départagées par
+ * l'identifiant de nœud (le plus petit l'emporte). Si deux nœuds séparés par une coupure ont
+ * accepté le même pseudo, la session du nœud d'identifiant le plus grand est fermée quand ils
+ * se retrouvent.
+ *
+ * Protocole du bus : une ligne par message, champs séparés par des tabulations (le texte en dernier).
+ */
+public class ClusterNode implements ClusterBus.Listener {
+    // Serveur local, fourni par start() une fois construit (seul le bus, démarré après, s'en sert)
+    private volatile ChatServer server;
+    private final ClientRegistry clients;
+    private final ClusterBus bus;
+    private final String nodeId;
+    private final long claimTimeoutMs;
+
+    // Utilisateurs des autres nœuds : pseudo -> nœud, et pseudos de chaque nœud
+    private final Map<String, String> remoteUsers = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> usersByNode = new ConcurrentHashMap<>();
+    // Salon -> autres nœuds qui y ont des abonnés (salon général : voir roomTargets)
+    private final Map<String, Set<String>> roomNodes = new ConcurrentHashMap<>();
+    // Salons où ce nœud a des abonnés, tels qu'annoncés (protégé par this, comme les annonces JOIN / LEAVE)
+    private final Set<String> localRooms = new HashSet<>();
+
+    // Réservation des pseudos (protégé par claimLock)
+    private final Object claimLock = new Object();
+    private final Set<String> claiming = new HashSet<>();
+    private final Map<String, Promise> promises = new HashMap<>();
+    private final AtomicLong claimIds = new AtomicLong();
+    private final Map<Long, Claim> claims = new ConcurrentHashMap<>();
+
+    // Pseudo accordé à un autre nœud, en attente de son JOIN (ou de son ABORT)
+    private record Promise(String nodeId, long expiresAt) {
+    }
+
+    // Demande en cours : nœuds dont on attend la réponse
+    private static final class Claim {
+        private final Set<String> waiting = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean denied = false;
+
+        Claim(Set<String> peers) {
+            waiting.addAll(peers);
+        }
+
+        void answer(String peer, boolean granted) {
+            if (!granted) {
+                denied = true;
+                done.countDown();
+                return;
+            }
+            waiting.remove(peer);
+            if (waiting.isEmpty()) {
+                done.countDown();
+            }
+        }
+
+        boolean await(long timeoutMs) throws InterruptedException {
+            return done.await(timeoutMs, TimeUnit.MILLISECONDS) && !denied;
+        }
+    }
+
+    public ClusterNode(ClientRegistry clients, int port) {
+        this.clients = clients;
+        this.bus = ServerConfig.isClustered() ? ClusterBus.fromConfig() : null;
+        this.nodeId = ServerConfig.getString(ServerConfig.CLUSTER_NODE_ID, "node-" + port);
+        this.claimTimeoutMs = Math.max(1, ServerConfig.getLong(ServerConfig.CLUSTER_CLAIM_TIMEOUT_MS, 2000));
+    }
+
+    public void start(ChatServer server) throws IOException {
+        this.server = server;
+        if (bus != null) {
+            bus.start(nodeId, this);
+        }
+    }
+
+    public void stop() {
+        if (bus != null) {
+            bus.stop();
+        }
+    }
+
+    public boolean isEnabled() {
+        return bus != null;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public int getPeerCount() {
+        return bus == null ? 0 : bus.peers().size();
+    }
+
+    public int getRemoteUserCount() {
+        return remoteUsers.size();
+    }
+
+    // Connecté sur ce nœud ou sur un autre
+    public boolean isOnline(String username) {
+        return clients.get(username) != null || remoteUsers.containsKey(username);
+    }
+
+    // Pseudos connectés dans toute la grappe (ceux de ce nœud d'abord)
+    public Set<String> onlineUsers() {
+        if (remoteUsers.isEmpty()) {
+            return clients.usernames();
+        }
+        Set<String> usernames = new LinkedHashSet<>(clients.usernames());
+        usernames.addAll(remoteUsers.keySet());
+        return Collections.unmodifiableSet(usernames);
+    }
+
+    /**
+     * Réserve dans la grappe un pseudo qui vient d'être enregistré sur ce nœud. Bloque au plus
+     * chat.cluster.claimTimeoutMs (appelé depuis la poignée de main). Retourne false si un
+     * autre nœud le refuse ou ne répond pas à temps.
+     */
+    public boolean claim(String username) {
+        if (bus == null) {
+            return true;
+        }
+        Set<String> peers = new HashSet<>(bus.peers());
+        synchronized (claimLock) {
+            if (remoteUsers.containsKey(username) || isPromised(username, null)) {
+                return false;
+            }
+            claiming.add(username);
+        }
+        long id = claimIds.incrementAndGet();
+        Claim claim = new Claim(peers);
+        boolean granted = false;
+        try {
+            claims.put(id, claim);
+            for (String peer : peers) {
+                // Nœud devenu injoignable : il n'a pas à répondre
+                if (!bus.send(peer, "CLAIM\t" + id + "\t" + username)) {
+                    claim.answer(peer, true);
+                }
+            }
+            granted = peers.isEmpty() || claim.await(claimTimeoutMs);
+            granted = granted && !remoteUsers.containsKey(username);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            claims.remove(id);
+            synchronized (this) {
+                if (granted) {
+                    publish("JOIN\t" + username);
+                } else {
+                    for (String peer : peers) {
+                        bus.send(peer, "ABORT\t" + username);
+                    }
+                }
+            }
+            synchronized (claimLock) {
+                claiming.remove(username);
+            }
+        }
+        if (!granted) {
+            ChatLogger.getInstance().logError("Grappe : pseudo " + username + " refusé par un autre nœud");
+        }
+        return granted;
+    }
+
+    // Session de ce nœud fermée
+    public synchronized void userLeft(String username) {
+        publish("LEAVE\t" + username);
+    }
+
+    /**
+     * Annonce aux autres nœuds que ce nœud a (ou n'a plus) des abonnés dans le salon.
+     * Appelé après chaque abonnement / désabonnement : relit l'état courant du salon, sous le
+     * même verrou que les annonces, et n'envoie que les changements.
+     */
+    public synchronized void updateRoomInterest(String room) {
+        if (bus == null || RoomRegistry.DEFAULT_ROOM.equals(room)) {
+            return;
+        }
+        boolean subscribed = server.getRooms().get(room) != null;
+        if (subscribed ? localRooms.add(room) : localRooms.remove(room)) {
+            publish((subscribed ? "SUB\t" : "UNSUB\t") + room);
+        }
+    }
+
+    // Message du serveur (arrivée, départ) vers les nœuds qui ont des utilisateurs
+    public void relayBroadcast(String message) {
+        for (String node : nodesWithUsers()) {
+            bus.send(node, "BROADCAST\t" + message);
+        }
+    }
+
+    // Retourne false si le destinataire n'est connecté sur aucun autre nœud
+    public boolean relayPrivateMessage(String fromUsername, String toUsername, String message) {
+        String node = remoteUsers.get(toUsername);
+        return node != null && bus.send(node, "PRIVATE\t" + fromUsername + "\t" + toUsername + "\t" + escape(message));
+    }
+
+    public void relayRoomMessage(String room, String username, String message) {
+        Set<String> targets = roomTargets(room);
+        if (targets.isEmpty()) {
+            return;
+        }
+        String line = "ROOM\t" + room + "\t" + username + "\t" + escape(message);
+        for (String node : targets) {
+            bus.send(node, line);
+        }
+    }
+
+    // Ligne de présence d'un salon (ROOM_JOIN, ROOM_LEAVE)
+    public void relayRoomEvent(String room, String line) {
+        for (String node : roomTargets(room)) {
+            bus.send(node, "ROOM_EVENT\t" + room + "\t" + line);
+        }
+    }
+
+    private Set<String> roomTargets(String room) {
+        if (RoomRegistry.DEFAULT_ROOM.equals(room)) {
+            return nodesWithUsers();
+        }
+        return roomNodes.getOrDefault(room, Collections.emptySet());
+    }
+
+    private Set<String> nodesWithUsers() {
+        if (usersByNode.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> nodes = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : usersByNode.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                nodes.add(entry.getKey());
+            }
+        }
+        return nodes;
+    }
+
+    // Un message reçu en binaire peut contenir des retours à la ligne : une ligne par message sur le bus
+    private static String escape(String text) {
+        if (text.indexOf('\\') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return text.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String text) {
+        if (text.indexOf('\\') < 0) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(++i);
+                result.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    // Appelé avec le verrou de this : les annonces restent dans l'ordre des changements
+    private void publish(String message) {
+        if (bus == null) {
+            return;
+        }
+        for (String peer : bus.peers()) {
+            bus.send(peer, message);
+        }
+    }
+
+    // Appelé avec claimLock : pseudo promis à un nœud autre que except
+    private boolean isPromised(String username, String except) {
+        Promise promise = promises.get(username);
+        if (promise == null) {
+            return false;
+        }
+        if (promise.expiresAt() < System.currentTimeMillis()) {
+            promises.remove(username);
+            return false;
+        }
+        return !promise.nodeId().equals(except);
+    }
+
+    private boolean isClaiming(String username) {
+        synchronized (claimLock) {
+            return claiming.contains(username);
+        }
+    }
+
+    @Override
+    public synchronized void peerConnected(String peer) {
+        // État complet pour ce nœud ; les pseudos en cours de réservation seront annoncés par claim()
+        for (String username : clients.usernames()) {
+            if (!isClaiming(username)) {
+                bus.send(peer, "JOIN\t" + username);
+            }
+        }
+        for (String room : localRooms) {
+            bus.send(peer, "SUB\t" + room);
+        }
+    }
+
+    @Override
+    public void peerDisconnected(String peer) {
+        Set<String> users = usersByNode.remove(peer);
+        roomNodes.values().forEach(nodes -> nodes.remove(peer));
+        roomNodes.values().removeIf(Set::isEmpty);
+        // Un nœud parti ne détient plus aucun pseudo
+        for (Claim claim : claims.values()) {
+            claim.answer(peer, true);
+        }
+        synchronized (claimLock) {
+            promises.values().removeIf(promise -> promise.nodeId().equals(peer));
+        }
+        if (users == null) {
+            return;
+        }
+        for (String username : users) {
+            if (remoteUsers.remove(username, peer)) {
+                server.getPresence().remoteUserChanged(username);
+            }
+        }
+        ChatLogger.getInstance().logServerEvent("Grappe : nœud " + peer + " perdu, "
+                + users.size() + " utilisateur(s) retiré(s)");
+    }
+
+    @Override
+    public void received(String peer, String message) {
+        int tab = message.indexOf('\t');
+        String type = tab < 0 ? message : message.substring(0, tab);
+        String body = tab < 0 ? "" : message.substring(tab + 1);
+        switch (type) {
+            case "JOIN" -> remoteJoined(peer, body);
+            case "LEAVE" -> remoteLeft(peer, body);
+            case "CLAIM" -> {
+                String[] parts = body.split("\t", 2);
+                bus.send(peer, (grant(peer, parts[1]) ? "GRANT\t" : "DENY\t") + parts[0]);
+            }
+            case "GRANT", "DENY" -> {
+                Claim claim = claims.get(Long.parseLong(body));
+                if (claim != null) {
+                    claim.answer(peer, type.equals("GRANT"));
+                }
+            }
+            case "ABORT" -> {
+                synchronized (claimLock) {
+                    Promise promise = promises.get(body);
+                    if (promise != null && promise.nodeId().equals(peer)) {
+                        promises.remove(body);
+                    }
+                }
+            }
+            case "SUB" -> roomNodes.computeIfAbsent(body, room -> ConcurrentHashMap.newKeySet()).add(peer);
+            case "UNSUB" -> roomNodes.computeIfPresent(body, (room, nodes) -> {
+                nodes.remove(peer);
+                return nodes.isEmpty() ? null : nodes;
+            });
+            case "BROADCAST" -> server.broadcastLocal(body, null);
+            case "PRIVATE" -> {
+                String[] parts = body.split("\t", 3);
+                server.deliverPrivateMessage(parts[0], parts[1], unescape(parts[2]));
+            }
+            case "ROOM" -> {
+                String[] parts = body.split("\t", 3);
+                server.deliverRoomMessage(parts[0], parts[1], unescape(parts[2]));
+            }
+            case "ROOM_EVENT" -> {
+                String[] parts = body.split("\t", 2);
+                server.deliverRoomEvent(parts[0], parts[1]);
+            }
+            default -> ChatLogger.getInstance().logError("Grappe : message inconnu de " + peer + " : " + type);
+        }
+    }
+
+    // Réponse à la demande d'un autre nœud pour ce pseudo
+    private boolean grant(String peer, String username) {
+        synchronized (claimLock) {
+            if (claiming.contains(username)) {
+                // Demandes simultanées : le plus petit identifiant de nœud l'emporte
+                return peer.compareTo(nodeId) < 0;
+            }
+            if (clients.get(username) != null) {
+                return false;
+            }
+            String owner = remoteUsers.get(username);
+            if ((owner != null && !owner.equals(peer)) || isPromised(username, peer)) {
+                return false;
+            }
+            promises.put(username, new Promise(peer, System.currentTimeMillis() + 2 * claimTimeoutMs));
+            return true;
+        }
+    }
+
+    private void remoteJoined(String peer, String username) {
+        usersByNode.computeIfAbsent(peer, node -> ConcurrentHashMap.newKeySet()).add(username);
+        remoteUsers.put(username, peer);
+        synchronized (claimLock) {
+            Promise promise = promises.get(username);
+            if (promise != null && promise.nodeId().equals(peer)) {
+                promises.remove(username);
+            }
+        }
+        // Même pseudo accepté des deux côtés d'une coupure : le nœud au plus grand identifiant cède
+        ClientConnection local = clients.get(username);
+        if (local != null && !isClaiming(username) && peer.compareTo(nodeId) < 0) {
+            server.closeDuplicateSession(local, peer);
+        }
+        server.getPresence().remoteUserChanged(username);
+    }
+
+    private void remoteLeft(String peer, String username) {
+        Set<String> users = usersByNode.get(peer);
+        if (users != null) {
+            users.remove(username);
+        }
+        if (remoteUsers.remove(username, peer)) {
+            server.getPresence().remoteUserChanged(username);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.socketproject.server;
+
+/**
+ * Écho du contenu du chat sur la console (arrivées, messages, départs).
+ * Installé par ChatServer sauf en mode headless (chat.headless=true), où le contenu
+ * des conversations n'est pas affiché.
+ */
+public class ConsoleEchoListener implements ServerEventListener {
+
+    @Override
+    public void userJoined(String username) {
+        System.out.println("👤 " + username + " a rejoint le chat");
+    }
+
+    @Override
+    public void userMessage(String username, String room, String message) {
+        System.out.println(RoomRegistry.format(room, "[" + username + "] " + message));
+    }
+
+    @Override
+    public void userLeft(String username) {
+        System.out.println("👋 " + username + " s'est déconnecté");
+    }
+}
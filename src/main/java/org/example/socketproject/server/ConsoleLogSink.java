@@ -0,0 +1,142 @@
+package org.example.socketproject.server;
+
+import java.io.PrintStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sortie console de ChatLogger.
+ * - mode normal : affichage immédiat, "[date] événement" (erreurs sur stderr) ;
+ * - mode headless : une ligne clé=valeur par événement (ts, level, type, msg), déposée dans une
+ *   file bornée et écrite par lots par le thread "console-log". L'appelant ne fait jamais
+ *   d'E/S ; si la console ne suit pas, les lignes en trop sont abandonnées et comptées.
+ */
+public class ConsoleLogSink {
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int MAX_BATCH = 500;
+
+    private final boolean structured;
+    private final BlockingQueue<String> queue;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public ConsoleLogSink(boolean structured) {
+        this.structured = structured;
+        if (structured) {
+            this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            Thread writerThread = new Thread(this::runWriter, "console-log");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        } else {
+            this.queue = null;
+        }
+    }
+
+    public void info(String type, String message) {
+        if (structured) {
+            enqueue(format("INFO", type, message));
+        } else {
+            System.out.println(String.format("[%s] %s", LocalDateTime.now().format(DATE_FORMATTER), message));
+        }
+    }
+
+    public void error(String type, String message) {
+        if (structured) {
+            enqueue(format("ERROR", type, message));
+        } else {
+            System.err.println(String.format("[%s] [ERROR] %s", LocalDateTime.now().format(DATE_FORMATTER), message));
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Attend que les lignes en file soient écrites, au plus timeoutMs (appelé à l'arrêt).
+     */
+    public void flush(long timeoutMs) {
+        if (!structured) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!queue.isEmpty() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        System.out.flush();
+    }
+
+    private void enqueue(String line) {
+        if (!queue.offer(line)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    // ts=2024-01-01T12:00:00.123 level=INFO type=CONNECTION msg="Connexion : alice depuis 10.0.0.2"
+    private static String format(String level, String type, String message) {
+        StringBuilder line = new StringBuilder(64 + message.length());
+        line.append("ts=").append(LocalDateTime.now())
+                .append(" level=").append(level)
+                .append(" type=").append(type)
+                .append(" msg=\"");
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                default -> line.append(c);
+            }
+        }
+        return line.append('"').toString();
+    }
+
+    private void runWriter() {
+        List<String> batch = new ArrayList<>(MAX_BATCH);
+        StringBuilder buffer = new StringBuilder(16 * 1024);
+        long reportedDropped = 0;
+        while (true) {
+            try {
+                String first = queue.poll(1, TimeUnit.SECONDS);
+                long droppedNow = dropped.get();
+                if (droppedNow > reportedDropped) {
+                    buffer.append(format("WARN", "CONSOLE",
+                            (droppedNow - reportedDropped) + " ligne(s) de log console abandonnée(s)")).append('\n');
+                    reportedDropped = droppedNow;
+                }
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    for (String line : batch) {
+                        buffer.append(line).append('\n');
+                    }
+                    batch.clear();
+                }
+                if (buffer.length() > 0) {
+                    // Lu à chaque lot : System.setOut() reste pris en compte
+                    PrintStream out = System.out;
+                    out.print(buffer);
+                    out.flush();
+                    buffer.setLength(0);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                buffer.setLength(0);
+                System.err.println("Erreur du thread de log console : " + e.getMessage());
+            }
+        }
+    }
+}
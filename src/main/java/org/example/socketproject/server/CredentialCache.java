@@ -0,0 +1,176 @@
+package org.example.socketproject.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache borné des empreintes de mot de passe, devant les requêtes User de UserManager.
+ * Éviction LRU au-delà de maxEntries et expiration après ttl ; un utilisateur inconnu est
+ * aussi mis en cache (cache négatif, durée plus courte) pour ne pas interroger la base à
+ * chaque tentative.
+ *
+ * Une lecture en base peut croiser une création ou une suppression : l'appelant relève
+ * generation() avant de lire la base et le passe à put(), qui ignore le résultat si invalidate()
+ * ou clear() a été appelé entre-temps (sinon un compte tout juste créé resterait refusé pendant
+ * la durée du cache négatif).
+ */
+public class CredentialCache {
+
+    // Résultat d'une recherche : HIT avec empreinte, HIT négatif (utilisateur inconnu), ou MISS
+    public static final class Lookup {
+        static final Lookup MISS = new Lookup(false, null);
+        static final Lookup UNKNOWN_USER = new Lookup(true, null);
+
+        private final boolean hit;
+        private final String passwordHash;
+
+        private Lookup(boolean hit, String passwordHash) {
+            this.hit = hit;
+            this.passwordHash = passwordHash;
+        }
+
+        public boolean isHit() { return hit; }
+        public String getPasswordHash() { return passwordHash; }
+    }
+
+    private static final class Entry {
+        final String passwordHash;
+        final long expiresAt;
+
+        Entry(String passwordHash, long expiresAt) {
+            this.passwordHash = passwordHash;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries;
+    // Incrémenté par invalidate() et clear(), sous le verrou
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public CredentialCache(int maxEntries, long ttlMs, long negativeTtlMs) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = ttlMs * 1_000_000L;
+        this.negativeTtlNanos = negativeTtlMs * 1_000_000L;
+        // Ordre d'accès : l'entrée la moins récemment utilisée est évincée en premier
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > CredentialCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Lookup get(String username) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(username);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return Lookup.MISS;
+            }
+            if (System.nanoTime() - entry.expiresAt > 0) {
+                entries.remove(username);
+                expirations.incrementAndGet();
+                misses.incrementAndGet();
+                return Lookup.MISS;
+            }
+            if (entry.passwordHash == null) {
+                negativeHits.incrementAndGet();
+                return Lookup.UNKNOWN_USER;
+            }
+            hits.incrementAndGet();
+            return new Lookup(true, entry.passwordHash);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // À relever avant la lecture en base dont le résultat sera passé à put()
+    public long generation() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Met en cache le résultat d'une lecture commencée à la génération donnée ; passwordHash null :
+     * l'utilisateur n'existe pas (cache négatif). Retourne false si le résultat est ignoré parce
+     * qu'une invalidation a eu lieu depuis.
+     */
+    public boolean put(String username, String passwordHash, long readGeneration) {
+        long ttl = passwordHash != null ? ttlNanos : negativeTtlNanos;
+        if (ttl <= 0) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (generation != readGeneration) {
+                return false;
+            }
+            entries.put(username, new Entry(passwordHash, System.nanoTime() + ttl));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(String username) {
+        lock.lock();
+        try {
+            entries.remove(username);
+            generation++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            generation++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() { return hits.get(); }
+    public long getNegativeHitCount() { return negativeHits.get(); }
+    public long getMissCount() { return misses.get(); }
+    public long getEvictionCount() { return evictions.get(); }
+    public long getExpirationCount() { return expirations.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("CredentialCache[size=%d, hits=%d, negativeHits=%d, misses=%d, evictions=%d, expirations=%d]",
+                size(), getHitCount(), getNegativeHitCount(), getMissCount(), getEvictionCount(), getExpirationCount());
+    }
+}
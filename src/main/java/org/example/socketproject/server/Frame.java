@@ -0,0 +1,226 @@
+package org.example.socketproject.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Message sortant déjà encodé, immuable, avec ses deux encodages :
+ * - texte : ligne UTF-8 terminée par \n (protocole historique) ;
+ * - binaire : trame BinaryProtocol, pour les clients qui l'ont négocié.
+ * Chaque encodage est calculé au plus une fois, à la première écriture qui en a besoin, puis
+ * partagé : une diffusion écrit le même tampon sur tous les sockets, chaque destinataire
+ * recevant une vue (duplicate()) qui partage les octets.
+ *
+ * Pour les clients qui compressent, l'encodage compressé des trames assez grandes (FrameCompressor)
+ * est lui aussi calculé une fois et partagé.
+ *
+ * Un message d'utilisateur reçu en binaire garde ses octets UTF-8 d'origine : la trame binaire
+ * les recopie sans les décoder, le texte n'est construit que si un client texte le reçoit.
+ */
+public final class Frame {
+    private static final String USERS_PREFIX = "USERS:";
+
+    // Tampon direct : trame partagée par plusieurs destinataires
+    private final boolean direct;
+    private final boolean userList;
+    // Réponse de négociation (CAPS_OK) : toujours envoyée en texte
+    private final boolean textOnly;
+    private final byte binaryType;
+    // Message d'un utilisateur : expéditeur, salon (null pour un message privé), contenu
+    private final int senderId;
+    private final String sender;
+    private final String room;
+    private final byte[] payload;
+    // Décodé au plus une fois (journalisation, clients texte) s'il a été reçu en binaire
+    private volatile String message;
+
+    private volatile String text;
+    private volatile ByteBuffer textBytes;
+    private volatile ByteBuffer binaryBytes;
+    // Trame DEFLATE, ou la trame binaire elle-même si la compression ne gagne rien
+    private volatile ByteBuffer compressedBytes;
+
+    private Frame(String text, boolean direct, boolean textOnly) {
+        this.text = text;
+        this.direct = direct;
+        this.userList = text.startsWith(USERS_PREFIX);
+        this.textOnly = textOnly;
+        this.binaryType = BinaryProtocol.TEXT;
+        this.senderId = 0;
+        this.sender = null;
+        this.room = null;
+        this.message = null;
+        this.payload = null;
+        this.textBytes = encodeText(text);
+    }
+
+    private Frame(byte binaryType, int senderId, String sender, String room, String message, byte[] payload, boolean direct) {
+        this.direct = direct;
+        this.userList = false;
+        this.textOnly = false;
+        this.binaryType = binaryType;
+        this.senderId = senderId;
+        this.sender = sender;
+        this.room = room;
+        this.message = message;
+        this.payload = payload;
+    }
+
+    /**
+     * Trame destinée à un seul client (réponse, message privé) : tampon sur le tas.
+     */
+    public static Frame of(String text) {
+        return new Frame(text, false, false);
+    }
+
+    /**
+     * Trame partagée par plusieurs destinataires : tampon direct, écrit sur les sockets
+     * sans la copie intermédiaire que le JDK fait pour un tampon sur le tas.
+     */
+    public static Frame shared(String text) {
+        return new Frame(text, true, false);
+    }
+
+    // Ligne texte même pour un client binaire (confirmation du passage au binaire)
+    public static Frame textOnly(String text) {
+        return new Frame(text, false, true);
+    }
+
+    /**
+     * Message public d'un utilisateur dans un salon. payload : texte en UTF-8 tel que reçu d'un
+     * client binaire (message null), ou null si le message vient d'un client texte.
+     */
+    public static Frame chat(int senderId, String sender, String room, String message, byte[] payload) {
+        return new Frame(BinaryProtocol.MESSAGE, senderId, sender, room, message, payload, true);
+    }
+
+    public static Frame privateMessage(int senderId, String sender, String message) {
+        return new Frame(BinaryProtocol.PRIVATE, senderId, sender, null, message, null, false);
+    }
+
+    // Association id -> pseudo, pour les clients binaires
+    public static Frame user(int id, String username) {
+        return new Frame(BinaryProtocol.USER, id, username, null, null, null, false);
+    }
+
+    // Vue indépendante (position propre) sur les mêmes octets, à consommer par un seul writer
+    public ByteBuffer buffer() {
+        return textBuffer().duplicate();
+    }
+
+    public ByteBuffer buffer(boolean binary) {
+        return binary && !textOnly ? binaryBuffer().duplicate() : buffer();
+    }
+
+    // Encodage binaire compressé (FrameCompressor), réservé aux trames d'au moins MIN_BYTES octets
+    ByteBuffer compressedBuffer() {
+        ByteBuffer current = compressedBytes;
+        if (current == null) {
+            ByteBuffer raw = binaryBuffer();
+            current = FrameCompressor.deflate(direct, raw);
+            if (current == null) {
+                current = raw;
+            }
+            compressedBytes = current;
+        }
+        return current.duplicate();
+    }
+
+    public int size() {
+        return textBuffer().remaining();
+    }
+
+    public int size(boolean binary) {
+        return binary && !textOnly ? binaryBuffer().remaining() : size();
+    }
+
+    public String text() {
+        String current = text;
+        if (current == null) {
+            current = switch (binaryType) {
+                case BinaryProtocol.MESSAGE -> RoomRegistry.format(room, sender + ": " + singleLine(message()));
+                case BinaryProtocol.PRIVATE -> "PRIVATE:" + sender + ":" + singleLine(message());
+                default -> "USER:" + senderId + ":" + sender;
+            };
+            text = current;
+        }
+        return current;
+    }
+
+    // Contenu d'un message d'utilisateur (décodé à la demande s'il a été reçu en binaire)
+    public String message() {
+        String current = message;
+        if (current == null && payload != null) {
+            current = new String(payload, StandardCharsets.UTF_8);
+            message = current;
+        }
+        return current;
+    }
+
+    // Id de l'expéditeur d'un message d'utilisateur (0 pour une ligne du serveur)
+    public int senderId() {
+        return binaryType == BinaryProtocol.USER ? 0 : senderId;
+    }
+
+    public String sender() {
+        return sender;
+    }
+
+    // Toujours envoyée en texte, avant le passage au binaire
+    boolean isTextOnly() {
+        return textOnly;
+    }
+
+    // Liste des utilisateurs connectés : seule la plus récente compte
+    public boolean isUserList() {
+        return userList;
+    }
+
+    private ByteBuffer textBuffer() {
+        ByteBuffer current = textBytes;
+        if (current == null) {
+            current = encodeText(text());
+            textBytes = current;
+        }
+        return current;
+    }
+
+    private ByteBuffer binaryBuffer() {
+        ByteBuffer current = binaryBytes;
+        if (current == null) {
+            current = switch (binaryType) {
+                case BinaryProtocol.MESSAGE -> {
+                    byte[] roomBytes = room.getBytes(StandardCharsets.UTF_8);
+                    yield BinaryProtocol.encode(binaryType, senderId, direct,
+                            BinaryProtocol.lengthPrefix(roomBytes), roomBytes, payloadBytes());
+                }
+                case BinaryProtocol.PRIVATE -> BinaryProtocol.encode(binaryType, senderId, direct, payloadBytes());
+                case BinaryProtocol.USER -> BinaryProtocol.encode(binaryType, senderId, direct,
+                        sender.getBytes(StandardCharsets.UTF_8));
+                default -> BinaryProtocol.encode(binaryType, 0, direct, text().getBytes(StandardCharsets.UTF_8));
+            };
+            binaryBytes = current;
+        }
+        return current;
+    }
+
+    private byte[] payloadBytes() {
+        return payload != null ? payload : message().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private ByteBuffer encodeText(String line) {
+        byte[] encoded = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        if (!direct) {
+            return ByteBuffer.wrap(encoded).asReadOnlyBuffer();
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length);
+        buffer.put(encoded).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    // Un message reçu en binaire peut contenir des retours à la ligne : pas une ligne texte
+    // (aussi pour les messages relus en base : historique, rejeu, recherche)
+    static String singleLine(String value) {
+        return value.indexOf('\n') < 0 && value.indexOf('\r') < 0 ? value : value.replace('\r', ' ').replace('\n', ' ');
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.socketproject.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Compression des trames sortantes pour les clients qui ont négocié "deflate" en plus de "binary"
+ * (CAPS:binary,deflate). Chaque trame DEFLATE est compressée sans état partagé avec les
+ * précédentes, ce qui a deux conséquences :
+ * - une trame diffusée (liste USERS:, long message collé) est compressée une seule fois et la
+ *   même trame DEFLATE est écrite à tous les clients qui compressent (cache de Frame) ;
+ * - les petites trames d'un même lot d'écriture (rejeu de l'historique, page de /history) sont
+ *   compressées ensemble, pour ce client seulement, sinon elles partent telles quelles.
+ * En dessous de chat.compression.minBytes, ou si la compression ne fait rien gagner, les octets
+ * partent sans compression.
+ */
+public final class FrameCompressor {
+    public static final String CAPABILITY = "deflate";
+
+    static final int MIN_BYTES = Math.max(1, ServerConfig.getInt(ServerConfig.COMPRESSION_MIN_BYTES, 512));
+    private static final int LEVEL = Math.max(Deflater.BEST_SPEED,
+            Math.min(Deflater.BEST_COMPRESSION, ServerConfig.getInt(ServerConfig.COMPRESSION_LEVEL, Deflater.BEST_SPEED)));
+
+    private static final MetricsRegistry.Meter BYTES_IN = MetricsRegistry.getInstance()
+            .meter("chat_compression_in_bytes", "Octets des trames compressées, avant compression");
+    private static final MetricsRegistry.Meter BYTES_OUT = MetricsRegistry.getInstance()
+            .meter("chat_compression_out_bytes", "Octets des trames DEFLATE produites");
+
+    // Deflater réutilisés (mémoire native) : au plus un par writer qui compresse en même temps
+    private static final Queue<Deflater> DEFLATERS = new ConcurrentLinkedQueue<>();
+
+    private FrameCompressor() {
+    }
+
+    /**
+     * Tampons à écrire pour un lot de trames d'un client binaire qui compresse : les grandes
+     * trames dans leur encodage compressé partagé, les suites de petites trames regroupées.
+     */
+    static ByteBuffer[] encode(List<Frame> batch) {
+        ByteBuffer[] raw = new ByteBuffer[batch.size()];
+        int totalBytes = 0;
+        boolean large = false;
+        for (int i = 0; i < raw.length; i++) {
+            Frame frame = batch.get(i);
+            raw[i] = frame.isTextOnly() ? frame.buffer() : frame.buffer(true);
+            totalBytes += raw[i].remaining();
+            large |= !frame.isTextOnly() && raw[i].remaining() >= MIN_BYTES;
+        }
+        // Cas courant d'un message court : rien à compresser
+        if (!large && (raw.length < 2 || totalBytes < MIN_BYTES)) {
+            return raw;
+        }
+
+        List<ByteBuffer> buffers = new ArrayList<>(raw.length);
+        List<ByteBuffer> run = new ArrayList<>();
+        int runBytes = 0;
+        for (int i = 0; i < raw.length; i++) {
+            Frame frame = batch.get(i);
+            if (frame.isTextOnly()) {
+                addRun(run, runBytes, buffers);
+                runBytes = 0;
+                buffers.add(raw[i]);
+                continue;
+            }
+            if (raw[i].remaining() >= MIN_BYTES) {
+                addRun(run, runBytes, buffers);
+                runBytes = 0;
+                buffers.add(frame.compressedBuffer());
+            } else {
+                run.add(raw[i]);
+                runBytes += raw[i].remaining();
+            }
+        }
+        addRun(run, runBytes, buffers);
+        return buffers.toArray(new ByteBuffer[0]);
+    }
+
+    private static void addRun(List<ByteBuffer> run, int runBytes, List<ByteBuffer> buffers) {
+        ByteBuffer deflated = run.size() > 1 && runBytes >= MIN_BYTES
+                ? deflate(false, run.toArray(new ByteBuffer[0])) : null;
+        if (deflated != null) {
+            buffers.add(deflated);
+        } else {
+            buffers.addAll(run);
+        }
+        run.clear();
+    }
+
+    /**
+     * Trame DEFLATE contenant les trames données (positions inchangées), ou null si elle ne serait
+     * pas plus petite qu'elles.
+     */
+    static ByteBuffer deflate(boolean direct, ByteBuffer... frames) {
+        int inputSize = 0;
+        for (ByteBuffer frame : frames) {
+            inputSize += frame.remaining();
+        }
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            deflater = new Deflater(LEVEL, true);
+        }
+        try {
+            // Sortie limitée à la taille d'entrée : au-delà, la compression ne gagne rien
+            byte[] output = new byte[inputSize];
+            int length = 0;
+            for (ByteBuffer frame : frames) {
+                deflater.setInput(frame.duplicate());
+                while (!deflater.needsInput()) {
+                    if (length == output.length) {
+                        return null;
+                    }
+                    length += deflater.deflate(output, length, output.length - length);
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (length == output.length) {
+                    return null;
+                }
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            int bodySize = 1 + length;
+            int size = BinaryProtocol.varintSize(bodySize) + bodySize;
+            if (size >= inputSize) {
+                return null;
+            }
+            ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+            BinaryProtocol.putVarint(buffer, bodySize);
+            buffer.put(BinaryProtocol.DEFLATE);
+            buffer.put(output, 0, length);
+            buffer.flip();
+            BYTES_IN.mark(inputSize);
+            BYTES_OUT.mark(size);
+            return buffer.asReadOnlyBuffer();
+        } finally {
+            deflater.reset();
+            DEFLATERS.offer(deflater);
+        }
+    }
+}
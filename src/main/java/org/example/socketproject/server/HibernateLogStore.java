@@ -0,0 +1,60 @@
+package org.example.socketproject.server;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Logs insérés en base, une transaction par lot.
+ *
+ * Les entités utilisent des identifiants IDENTITY, ce qui empêche Hibernate de regrouper les
+ * INSERT ; les lots sont donc envoyés en batch JDBC via StatelessSession.doWork(). Les deux
+ * requêtes sont préparées à chaque lot : le cache d'instructions du pilote (configuré sur le
+ * pool HikariCP) réutilise leur plan d'exécution.
+ */
+public class HibernateLogStore implements LogStore {
+    private static final String INSERT_MESSAGE =
+            "insert into messages (username, message, message_type, recipient_username, room, timestamp) values (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_SERVER_LOG =
+            "insert into server_logs (log_type, message, timestamp) values (?, ?, ?)";
+
+    @Override
+    public void append(List<Object> entries) {
+        HibernateUtil.inTransaction(session -> {
+            session.doWork(connection -> {
+                try (PreparedStatement messages = connection.prepareStatement(INSERT_MESSAGE);
+                     PreparedStatement serverLogs = connection.prepareStatement(INSERT_SERVER_LOG)) {
+                    boolean hasMessages = false;
+                    boolean hasServerLogs = false;
+                    for (Object entity : entries) {
+                        if (entity instanceof Message) {
+                            Message msg = (Message) entity;
+                            messages.setString(1, msg.getUsername());
+                            messages.setString(2, msg.getMessage());
+                            messages.setString(3, msg.getMessageType());
+                            messages.setString(4, msg.getRecipientUsername());
+                            messages.setString(5, msg.getRoom());
+                            messages.setTimestamp(6, Timestamp.valueOf(msg.getTimestamp()));
+                            messages.addBatch();
+                            hasMessages = true;
+                        } else if (entity instanceof ServerLog) {
+                            ServerLog log = (ServerLog) entity;
+                            serverLogs.setString(1, log.getLogType());
+                            serverLogs.setString(2, log.getMessage());
+                            serverLogs.setTimestamp(3, Timestamp.valueOf(log.getTimestamp()));
+                            serverLogs.addBatch();
+                            hasServerLogs = true;
+                        }
+                    }
+                    if (hasMessages) {
+                        messages.executeBatch();
+                    }
+                    if (hasServerLogs) {
+                        serverLogs.executeBatch();
+                    }
+                }
+            });
+            return null;
+        });
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.socketproject.server;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Comptes utilisateurs dans la table users, via Hibernate.
+ *
+ * Les lectures d'un compte et les écritures passent par une Session (HibernateUtil.readCached /
+ * inCachedTransaction) : User est dans le cache de second niveau, recherché par sa clé naturelle
+ * (username), et chaque insertion ou suppression y est répercutée. Les pages de pseudos sont dans
+ * le cache de requêtes, invalidé par toute écriture sur users. findAll reste une requête
+ * StatelessSession, hors cache.
+ */
+public class HibernateUserStore implements UserStore {
+
+    @Override
+    public String findPasswordHash(String username) {
+        return HibernateUtil.readCached(session -> {
+            User user = session.bySimpleNaturalId(User.class).load(username);
+            return user == null ? null : user.getPasswordHash();
+        });
+    }
+
+    @Override
+    public void insert(String username, String passwordHash) {
+        HibernateUtil.inCachedTransaction(session -> {
+            session.persist(new User(username, passwordHash));
+            return null;
+        });
+    }
+
+    @Override
+    public boolean delete(String username) {
+        return HibernateUtil.inCachedTransaction(session -> {
+            User user = session.bySimpleNaturalId(User.class).load(username);
+            if (user == null) {
+                return false;
+            }
+            session.remove(user);
+            return true;
+        });
+    }
+
+    @Override
+    public Map<String, String> findAll() {
+        Map<String, String> users = new HashMap<>();
+        HibernateUtil.read(session -> {
+            for (Object[] row : session.createNamedSelectionQuery(User.CREDENTIALS, Object[].class).list()) {
+                users.put((String) row[0], (String) row[1]);
+            }
+            return users;
+        });
+        return users;
+    }
+
+    @Override
+    public List<String> listUsernames(int offset, int limit) {
+        return HibernateUtil.readCached(session -> session.createNamedSelectionQuery(User.USERNAMES, String.class)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .setCacheable(true)
+                .setCacheRegion(User.LIST_CACHE_REGION)
+                .list());
+    }
+
+    @Override
+    public long countUsers() {
+        return HibernateUtil.readCached(session -> session.createNamedSelectionQuery(User.COUNT, Long.class)
+                .setCacheable(true)
+                .setCacheRegion(User.LIST_CACHE_REGION)
+                .uniqueResult());
+    }
+}
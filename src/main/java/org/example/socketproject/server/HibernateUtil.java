@@ -1,15 +1,58 @@
 package org.example.socketproject.server;
 
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
 
+/**
+ * SessionFactory unique du serveur, et accès aux données sans contexte de persistance.
+ *
+ * Le serveur ne relit jamais une entité pour la modifier : chaque opération (une insertion, une
+ * requête scalaire, une page d'historique) passe par une StatelessSession (read / inTransaction),
+ * sans cache de premier niveau ni vérification des modifications au commit. Les requêtes fixes
+ * sont des @NamedQuery des entités, analysées et validées une fois au démarrage.
+ *
+ * Exception : les comptes (User) sont dans le cache de second niveau (ehcache.xml), qu'une
+ * StatelessSession ignore. HibernateUserStore passe donc par une Session (readCached /
+ * inCachedTransaction) pour lire le cache et l'invalider à chaque écriture. Ce cache est local à
+ * la JVM : en grappe, un compte supprimé sur un autre nœud reste valide ici jusqu'à son éviction.
+ */
 public class HibernateUtil {
     private static final SessionFactory sessionFactory = buildSessionFactory();
 
+    // Travail sur une StatelessSession, qui peut lever une exception contrôlée (IOException d'une archive...)
+    @FunctionalInterface
+    public interface Work<T, E extends Exception> {
+        T execute(StatelessSession session) throws E;
+    }
+
+    // Travail sur une Session, qui passe par le cache de second niveau
+    @FunctionalInterface
+    public interface CachedWork<T> {
+        T execute(Session session);
+    }
+
     private static SessionFactory buildSessionFactory() {
         try {
-            // Create the SessionFactory from hibernate.cfg.xml
-            return new Configuration().configure().buildSessionFactory();
+            // Create the SessionFactory from hibernate.cfg.xml (or the resource named by -Dchat.hibernate.config)
+            String resource = ServerConfig.getString(ServerConfig.HIBERNATE_CONFIG, "hibernate.cfg.xml");
+            Configuration configuration = new Configuration().configure(resource);
+            if (ServerConfig.isProduction()) {
+                // Profil prod : aucune requête recopiée sur la sortie standard
+                configuration.setProperty(AvailableSettings.SHOW_SQL, "false");
+                configuration.setProperty(AvailableSettings.FORMAT_SQL, "false");
+                configuration.setProperty(AvailableSettings.HIGHLIGHT_SQL, "false");
+            }
+            return configuration.buildSessionFactory();
         } catch (Throwable ex) {
             System.err.println("Initial SessionFactory creation failed." + ex);
             throw new ExceptionInInitializerError(ex);
@@ -20,6 +63,150 @@ public class HibernateUtil {
         return sessionFactory;
     }
 
+    /**
+     * Lecture sur une StatelessSession, sans transaction explicite (une requête, en auto-commit).
+     */
+    public static <T, E extends Exception> T read(Work<T, E> work) throws E {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            return work.execute(session);
+        }
+    }
+
+    /**
+     * Écriture sur une StatelessSession, dans une transaction annulée si le travail échoue.
+     */
+    public static <T, E extends Exception> T inTransaction(Work<T, E> work) throws E {
+        Transaction transaction = null;
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            transaction = session.beginTransaction();
+            T result = work.execute(session);
+            transaction.commit();
+            return result;
+        } catch (Exception e) {
+            if (transaction != null) {
+                try {
+                    transaction.rollback();
+                } catch (Exception ignored) {
+                    // La connexion est peut-être déjà perdue
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Lecture seule sur une Session : entités et clés naturelles servies par le cache de second
+     * niveau, sans instantané pour la vérification des modifications.
+     */
+    public static <T> T readCached(CachedWork<T> work) {
+        try (Session session = sessionFactory.openSession()) {
+            session.setDefaultReadOnly(true);
+            return work.execute(session);
+        }
+    }
+
+    /**
+     * Écriture sur une Session, dans une transaction : le cache de second niveau est mis à jour
+     * (ou invalidé) au commit.
+     */
+    public static <T> T inCachedTransaction(CachedWork<T> work) {
+        Transaction transaction = null;
+        try (Session session = sessionFactory.openSession()) {
+            transaction = session.beginTransaction();
+            T result = work.execute(session);
+            transaction.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.isActive()) {
+                try {
+                    transaction.rollback();
+                } catch (Exception ignored) {
+                    // La connexion est peut-être déjà perdue
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Publie les compteurs du cache de second niveau (entités, clés naturelles, requêtes) dans le
+     * registre de métriques. Sans effet si hibernate.generate_statistics est désactivé.
+     */
+    public static void instrumentCache(MetricsRegistry registry) {
+        Statistics stats = sessionFactory.getStatistics();
+        if (!stats.isStatisticsEnabled()) {
+            return;
+        }
+        registry.gauge("chat_db_cache_hits", "Entités trouvées dans le cache de second niveau", stats::getSecondLevelCacheHitCount);
+        registry.gauge("chat_db_cache_misses", "Entités absentes du cache de second niveau", stats::getSecondLevelCacheMissCount);
+        registry.gauge("chat_db_cache_puts", "Entités ajoutées au cache de second niveau", stats::getSecondLevelCachePutCount);
+        registry.gauge("chat_db_natural_id_cache_hits", "Pseudos résolus par le cache des clés naturelles", stats::getNaturalIdCacheHitCount);
+        registry.gauge("chat_db_natural_id_cache_misses", "Pseudos absents du cache des clés naturelles", stats::getNaturalIdCacheMissCount);
+        registry.gauge("chat_db_query_cache_hits", "Résultats de requêtes trouvés dans le cache", stats::getQueryCacheHitCount);
+        registry.gauge("chat_db_query_cache_misses", "Résultats de requêtes absents du cache", stats::getQueryCacheMissCount);
+    }
+
+    // Résumé du cache de second niveau pour l'interface, ou null sans statistiques
+    public static String getCacheSummary() {
+        Statistics stats = sessionFactory.getStatistics();
+        if (!stats.isStatisticsEnabled()) {
+            return null;
+        }
+        return "Cache : " + ratio(stats.getSecondLevelCacheHitCount(), stats.getSecondLevelCacheMissCount()) + " comptes, "
+                + ratio(stats.getNaturalIdCacheHitCount(), stats.getNaturalIdCacheMissCount()) + " pseudos, "
+                + ratio(stats.getQueryCacheHitCount(), stats.getQueryCacheMissCount()) + " listes";
+    }
+
+    // "hits/total"
+    private static String ratio(long hits, long misses) {
+        return hits + "/" + (hits + misses);
+    }
+
+    // Pool HikariCP derrière Hibernate, ou null avec un autre fournisseur de connexions (ex. H2 des benchmarks)
+    public static HikariDataSource getHikariDataSource() {
+        ConnectionProvider provider = ((SessionFactoryImplementor) getSessionFactory())
+                .getServiceRegistry().getService(ConnectionProvider.class);
+        if (provider != null && provider.isUnwrappableAs(HikariDataSource.class)) {
+            return provider.unwrap(HikariDataSource.class);
+        }
+        return null;
+    }
+
+    /**
+     * Publie l'attente d'une connexion du pool et son occupation dans le registre de métriques.
+     * Sans effet si le pool n'est pas HikariCP ou s'il est déjà instrumenté.
+     */
+    public static void instrumentConnectionPool(MetricsRegistry registry) {
+        HikariDataSource dataSource = getHikariDataSource();
+        if (dataSource == null || dataSource.getMetricsTrackerFactory() != null) {
+            return;
+        }
+        MetricsRegistry.Timer acquire = registry.timer("chat_db_pool_acquire",
+                "Attente d'une connexion du pool HikariCP");
+        MetricsRegistry.Meter timeouts = registry.meter("chat_db_pool_timeouts",
+                "Connexions non obtenues dans le délai du pool");
+        dataSource.setMetricsTrackerFactory((poolName, poolStats) -> {
+            registerPoolGauges(registry, poolStats);
+            return new IMetricsTracker() {
+                @Override
+                public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                    acquire.record(elapsedAcquiredNanos);
+                }
+
+                @Override
+                public void recordConnectionTimeout() {
+                    timeouts.mark();
+                }
+            };
+        });
+    }
+
+    private static void registerPoolGauges(MetricsRegistry registry, PoolStats stats) {
+        registry.gauge("chat_db_pool_active", "Connexions du pool en cours d'utilisation", stats::getActiveConnections);
+        registry.gauge("chat_db_pool_idle", "Connexions du pool libres", stats::getIdleConnections);
+        registry.gauge("chat_db_pool_pending", "Threads en attente d'une connexion du pool", stats::getPendingThreads);
+    }
+
     public static void shutdown() {
         // Close caches and connection pools
         getSessionFactory().close();
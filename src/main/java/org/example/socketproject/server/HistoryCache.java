@@ -0,0 +1,180 @@
+package org.example.socketproject.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Derniers messages publics de chaque salon, rejoués à un client quand il s'y abonne
+ * (salon général : juste après AUTH_SUCCESS ; autres salons : à /join).
+ * Chaque salon est un anneau de chat.history.size trames (déjà encodées, partagées avec la
+ * diffusion), rempli depuis la table messages une seule fois (au démarrage pour le salon
+ * général, à la première utilisation pour les autres) puis à chaque diffusion : un abonnement
+ * ne fait jamais de requête SQL pour obtenir l'historique.
+ *
+ * Chaque message reçoit un numéro de séquence. Le rejeu et l'abonnement du client se font
+ * sous le verrou de l'anneau : un message est soit dans le rejeu, soit diffusé en direct
+ * après lui, jamais les deux ni aucun des deux.
+ */
+public class HistoryCache {
+    public static final String DEFAULT_CHANNEL = "general";
+
+    private final int capacity;
+    private final Map<String, Ring> channels = new ConcurrentHashMap<>();
+    // Séquence commune à tous les salons : un anneau recréé après la suppression de son salon
+    // ne réutilise pas des numéros déjà attribués à l'ancien
+    private final AtomicLong sequence = new AtomicLong();
+    // Vrai une fois le serveur démarré : les anneaux créés ensuite sont remplis depuis la base
+    private volatile boolean loadFromDatabase = false;
+
+    public HistoryCache() {
+        this(ServerConfig.getInt(ServerConfig.HISTORY_SIZE, 50));
+    }
+
+    public HistoryCache(int capacity) {
+        this.capacity = Math.max(0, capacity);
+    }
+
+    /**
+     * Anneau d'un canal : trames et numéros de séquence, du plus ancien au plus récent.
+     */
+    private static final class Ring {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Frame[] frames;
+        private long lastSeq;
+        // Nombre de trames présentes ; l'écriture suivante se fait en (start + count) % length
+        private int start;
+        private int count;
+
+        Ring(int capacity) {
+            this.frames = new Frame[capacity];
+        }
+
+        // Appelé avec le verrou
+        long add(Frame frame, long seq) {
+            lastSeq = seq;
+            if (frames.length == 0) {
+                return lastSeq;
+            }
+            if (count < frames.length) {
+                frames[(start + count) % frames.length] = frame;
+                count++;
+            } else {
+                frames[start] = frame;
+                start = (start + 1) % frames.length;
+            }
+            return lastSeq;
+        }
+    }
+
+    private Ring ring(String channel) {
+        Ring ring = channels.get(channel);
+        if (ring != null) {
+            return ring;
+        }
+        // Requête hors de la map : au pire, deux premiers abonnés simultanés la font chacun
+        Ring loaded = new Ring(capacity);
+        if (loadFromDatabase && capacity > 0) {
+            for (String text : loadRecent(channel, capacity)) {
+                loaded.add(Frame.shared(RoomRegistry.format(channel, text)), sequence.incrementAndGet());
+            }
+        }
+        ring = channels.putIfAbsent(channel, loaded);
+        return ring != null ? ring : loaded;
+    }
+
+    // Salon supprimé (plus d'abonnés) : son historique sera relu depuis la base s'il est recréé
+    public void evict(String channel) {
+        if (!DEFAULT_CHANNEL.equals(channel)) {
+            channels.remove(channel);
+        }
+    }
+
+    /**
+     * Ajoute un message diffusé et retourne son numéro de séquence, à comparer à celui
+     * du rejeu de chaque abonné (RoomRegistry.Room) pour ne pas l'envoyer une seconde fois.
+     */
+    public long append(String channel, Frame frame) {
+        Ring ring = ring(channel);
+        ring.lock.lock();
+        try {
+            return ring.add(frame, sequence.incrementAndGet());
+        } finally {
+            ring.lock.unlock();
+        }
+    }
+
+    /**
+     * Abonne le client (subscribe reçoit le numéro du dernier message rejoué) puis lui envoie
+     * l'historique du salon, sans relâcher le verrou : aucun message ne peut être ajouté entre
+     * les deux, les suivants lui arriveront en direct, après le rejeu.
+     * Retourne false (rien n'est envoyé) si subscribe refuse l'abonnement.
+     */
+    public boolean replay(String channel, ClientConnection client, LongPredicate subscribe) {
+        Ring ring = ring(channel);
+        ring.lock.lock();
+        try {
+            if (!subscribe.test(ring.lastSeq)) {
+                return false;
+            }
+            for (int i = 0; i < ring.count; i++) {
+                client.sendFrame(ring.frames[(ring.start + i) % ring.frames.length]);
+            }
+            return true;
+        } finally {
+            ring.lock.unlock();
+        }
+    }
+
+    public int size(String channel) {
+        Ring ring = channels.get(channel);
+        return ring == null ? 0 : ring.count;
+    }
+
+    /**
+     * Remplit l'anneau du salon général avec les derniers messages publics enregistrés.
+     * Appelé par ChatServer.start() avant d'accepter des clients.
+     */
+    public void warmUp() {
+        if (capacity == 0) {
+            return;
+        }
+        List<String> recent = loadRecent(DEFAULT_CHANNEL, capacity);
+        Ring ring = ring(DEFAULT_CHANNEL);
+        ring.lock.lock();
+        try {
+            for (String text : recent) {
+                ring.add(Frame.shared(text), sequence.incrementAndGet());
+            }
+        } finally {
+            ring.lock.unlock();
+        }
+        loadFromDatabase = true;
+    }
+
+    // Du plus ancien au plus récent (index idx_messages_room_timestamp) ; les messages
+    // enregistrés avant l'apparition des salons (room nulle) appartiennent au salon général
+    private List<String> loadRecent(String room, int limit) {
+        List<String> texts = new ArrayList<>(limit);
+        try {
+            List<Message> messages = HibernateUtil.read(session -> session.createNamedSelectionQuery(
+                            DEFAULT_CHANNEL.equals(room) ? Message.DEFAULT_ROOM_PAGE : Message.ROOM_PAGE, Message.class)
+                    .setParameter("room", room)
+                    .setMaxResults(limit)
+                    .list());
+            for (Message message : messages) {
+                // Comme en direct (Frame) : un retour à la ligne reçu en binaire ne coupe pas la ligne rejouée
+                texts.add(Frame.singleLine(message.getMessage()));
+            }
+        } catch (Exception e) {
+            ChatLogger.getInstance().logError("Impossible de charger l'historique des messages : " + e.getMessage());
+        }
+        Collections.reverse(texts);
+        return texts;
+    }
+}
@@ -0,0 +1,184 @@
+package org.example.socketproject.server;
+
+import org.hibernate.StatelessSession;
+import org.hibernate.query.SelectionQuery;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Consultation de l'historique (/history), page par page, du plus récent au plus ancien :
+ * salon courant par défaut, #salon (auquel le client est abonné) ou @utilisateur (conversation
+ * privée avec lui).
+ *
+ * Pagination par clé (keyset) sur (timestamp, id) : une page commence juste avant le message
+ * avantId, sans OFFSET, et coûte une recherche d'index quelle que soit sa profondeur
+ * (idx_messages_room_timestamp pour un salon, idx_messages_private_conversation pour une
+ * conversation privée). Les requêtes (nommées, voir Message) passent par une StatelessSession en
+ * lecture seule, sur un petit pool dédié : les threads des clients ne bloquent jamais sur la base.
+ *
+ * Réponse, une ligne par message au fil de la lecture :
+ *   HISTORY_BEGIN:salon | HISTORY_BEGIN:@bob
+ *   HISTORY:id:epochMillis:expéditeur:destinataire:texte   (destinataire vide pour un message public)
+ *   HISTORY_END:avantId de la page suivante (vide s'il n'y en a plus)
+ */
+public class HistoryService {
+    public static final String USAGE = "❌ Usage : /history [@utilisateur|#salon] [avantId] [nombre]";
+
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final ThreadPoolExecutor executor;
+
+    public HistoryService() {
+        this.defaultPageSize = Math.max(1, ServerConfig.getInt(ServerConfig.HISTORY_PAGE_SIZE, 50));
+        this.maxPageSize = Math.max(defaultPageSize, ServerConfig.getInt(ServerConfig.HISTORY_MAX_PAGE_SIZE, 200));
+        int threads = Math.max(1, ServerConfig.getInt(ServerConfig.HISTORY_QUERY_THREADS, 2));
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, ServerConfig.getInt(ServerConfig.HISTORY_MAX_PENDING, 64))),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "history-query");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Traite les arguments de /history pour le client (authentifié) ; la réponse est envoyée
+     * plus tard, depuis le pool de requêtes.
+     */
+    public void handle(ClientConnection client, String arguments) {
+        String peer = null;
+        String room = client.getCurrentRoom();
+        Long beforeId = null;
+        int limit = defaultPageSize;
+        String[] parts = arguments.isEmpty() ? new String[0] : arguments.split("\\s+");
+        int i = 0;
+        if (i < parts.length && parts[i].startsWith("@")) {
+            peer = parts[i++].substring(1);
+            if (peer.isEmpty()) {
+                client.sendMessage(USAGE);
+                return;
+            }
+        } else if (i < parts.length && parts[i].startsWith("#")) {
+            room = RoomRegistry.normalize(parts[i++]);
+            if (room == null) {
+                client.sendMessage(USAGE);
+                return;
+            }
+        }
+        if (peer == null && !client.isInRoom(room)) {
+            client.sendMessage("HISTORY_ERROR:Vous n'êtes pas dans le salon " + room);
+            return;
+        }
+        try {
+            if (i < parts.length) {
+                // "-" : depuis le message le plus récent
+                beforeId = parts[i].equals("-") ? null : Long.parseLong(parts[i]);
+                i++;
+            }
+            if (i < parts.length) {
+                limit = Integer.parseInt(parts[i++]);
+            }
+        } catch (NumberFormatException e) {
+            client.sendMessage(USAGE);
+            return;
+        }
+        if (i < parts.length || limit <= 0) {
+            client.sendMessage(USAGE);
+            return;
+        }
+
+        String me = client.getUsername();
+        String scopePeer = peer;
+        String scopeRoom = room;
+        Long before = beforeId;
+        int pageSize = Math.min(limit, maxPageSize);
+        try {
+            executor.execute(() -> sendPage(client, me, scopePeer, scopeRoom, before, pageSize));
+        } catch (RejectedExecutionException e) {
+            client.sendMessage("HISTORY_ERROR:Serveur occupé, réessayez plus tard");
+        }
+    }
+
+    private void sendPage(ClientConnection client, String me, String peer, String room, Long beforeId, int limit) {
+        if (client.isDisconnected()) {
+            return;
+        }
+        try (StatelessSession session = HibernateUtil.getSessionFactory().openStatelessSession()) {
+            LocalDateTime beforeTimestamp = null;
+            if (beforeId != null) {
+                // Position du curseur : recherche par clé primaire
+                beforeTimestamp = session.createNamedSelectionQuery(Message.TIMESTAMP_BY_ID, LocalDateTime.class)
+                        .setParameter("id", beforeId)
+                        .uniqueResult();
+                if (beforeTimestamp == null) {
+                    client.sendMessage("HISTORY_ERROR:Message " + beforeId + " introuvable");
+                    return;
+                }
+            }
+
+            String name;
+            if (peer != null) {
+                name = beforeId != null ? Message.PRIVATE_PAGE_BEFORE : Message.PRIVATE_PAGE;
+            } else if (RoomRegistry.DEFAULT_ROOM.equals(room)) {
+                name = beforeId != null ? Message.DEFAULT_ROOM_PAGE_BEFORE : Message.DEFAULT_ROOM_PAGE;
+            } else {
+                name = beforeId != null ? Message.ROOM_PAGE_BEFORE : Message.ROOM_PAGE;
+            }
+            SelectionQuery<Message> query = session.createNamedSelectionQuery(name, Message.class)
+                    .setReadOnly(true)
+                    .setFetchSize(limit)
+                    .setMaxResults(limit);
+            if (peer != null) {
+                query.setParameter("me", me).setParameter("peer", peer);
+            } else {
+                query.setParameter("room", room);
+            }
+            if (beforeId != null) {
+                query.setParameter("ts", beforeTimestamp).setParameter("id", beforeId);
+            }
+
+            client.sendMessage("HISTORY_BEGIN:" + (peer == null ? room : "@" + peer));
+            int sent = 0;
+            long lastId = 0;
+            // Lecture en flux : chaque ligne part dès qu'elle est lue
+            try (Stream<Message> rows = query.stream()) {
+                for (Message message : (Iterable<Message>) rows::iterator) {
+                    client.sendMessage(format(message));
+                    lastId = message.getId();
+                    sent++;
+                }
+            }
+            client.sendMessage("HISTORY_END:" + (sent == limit ? String.valueOf(lastId) : ""));
+        } catch (Exception e) {
+            ChatLogger.getInstance().logError("Erreur lors de la lecture de l'historique pour " + me + " : " + e.getMessage());
+            client.sendMessage("HISTORY_ERROR:Historique indisponible");
+        }
+    }
+
+    // HISTORY:id:epochMillis:expéditeur:destinataire:texte
+    private static String format(Message message) {
+        String text = message.getMessage();
+        // Les messages publics sont enregistrés tels que diffusés ("alice: bonjour")
+        String prefix = message.getUsername() + ": ";
+        if ("PUBLIC".equals(message.getMessageType()) && text.startsWith(prefix)) {
+            text = text.substring(prefix.length());
+        }
+        // Texte d'une trame binaire enregistré tel quel : pas de ligne de protocole injectée
+        text = Frame.singleLine(text);
+        long epochMillis = message.getTimestamp() == null ? 0
+                : message.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return "HISTORY:" + message.getId() + ":" + epochMillis + ":" + message.getUsername() + ":"
+                + (message.getRecipientUsername() == null ? "" : message.getRecipientUsername()) + ":" + text;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,485 @@
+package org.example.socketproject.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Journal local des logs (chat.storage.logs=journal) : chaque lot d'AsyncLogWriter est ajouté à
+ * la fin d'un segment mappé en mémoire (chat.journal.dir, segments de chat.journal.segmentBytes),
+ * sans aller-retour vers la base. Un fsync (force()) regroupe tout ce qui a été écrit depuis le
+ * précédent, au plus une fois par chat.journal.fsyncIntervalMs : une entrée acceptée survit à un
+ * arrêt brutal du processus (elle est dans le cache de pages), et à une panne de la machine une
+ * fois synchronisée.
+ *
+ * Un thread d'export relit les enregistrements synchronisés et les remet par lots au stockage en
+ * base (HibernateLogStore), puis note sa position dans export.checkpoint ; un segment entièrement
+ * exporté est supprimé. L'export est « au moins une fois » : après un arrêt entre la validation
+ * d'un lot en base et l'écriture du point de reprise, ce lot est exporté de nouveau.
+ * /history et le rejeu lisent la base : ils voient les messages avec le retard de l'export.
+ *
+ * Enregistrement : longueur (int) | CRC32 du contenu (int) | contenu ; une longueur nulle marque
+ * la fin du segment. Contenu : type (1 octet : 1 Message, 2 ServerLog) | horodatage (secondes
+ * long, nanosecondes int) | chaînes (longueur int, -1 pour null, puis UTF-8). Au démarrage, la
+ * lecture du dernier segment s'arrête au premier enregistrement incomplet ou dont le CRC ne
+ * correspond pas (écriture interrompue), et la suite est effacée.
+ */
+public class JournalLogStore implements LogStore {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String CHECKPOINT = "export.checkpoint";
+    private static final int HEADER_BYTES = 8;
+    private static final byte MESSAGE = 1;
+    private static final byte SERVER_LOG = 2;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long fsyncIntervalNanos;
+    private final int exportBatch;
+    private final long exportIntervalMs;
+    private final LogStore exportTarget;
+
+    // Segments présents, par numéro ; le dernier est le segment actif
+    private final Map<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    // Écriture : thread d'AsyncLogWriter, et sync() à l'arrêt ou depuis le thread d'export
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final CRC32 crc = new CRC32();
+    private Segment active;
+    private long lastSyncAt = System.nanoTime();
+    private boolean dirty = false;
+
+    // Export : écrits par le thread d'export uniquement (lus par les métriques) ; thread créé par start()
+    private ScheduledExecutorService exporter;
+    private volatile long exportSegment;
+    private volatile int exportOffset;
+    private final List<Path> pendingDeletes = new ArrayList<>();
+    // Signaler une panne de la base une seule fois, pas à chaque passage
+    private boolean exportFailing = false;
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong exported = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+
+    /**
+     * Segment : fichier mappé en entier. position n'est lue et écrite que sous writeLock ;
+     * durable (fin des enregistrements synchronisés) est publié pour le thread d'export.
+     */
+    private static final class Segment {
+        final long number;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int position;
+        volatile int durable;
+        // Plus aucune écriture : exportable jusqu'à durable puis supprimable
+        volatile boolean sealed;
+
+        Segment(long number, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    public JournalLogStore(LogStore exportTarget) {
+        this.exportTarget = exportTarget;
+        this.directory = Paths.get(ServerConfig.getString(ServerConfig.JOURNAL_DIR, "journal"));
+        this.segmentBytes = (int) Math.min(Integer.MAX_VALUE,
+                Math.max(1 << 20, ServerConfig.getLong(ServerConfig.JOURNAL_SEGMENT_BYTES, 64L << 20)));
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(
+                Math.max(0, ServerConfig.getLong(ServerConfig.JOURNAL_FSYNC_INTERVAL_MS, 200)));
+        this.exportBatch = Math.max(1, ServerConfig.getInt(ServerConfig.JOURNAL_EXPORT_BATCH, 500));
+        this.exportIntervalMs = Math.max(10, ServerConfig.getLong(ServerConfig.JOURNAL_EXPORT_INTERVAL_MS, 1000));
+        try {
+            open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Journal des logs inutilisable (" + directory.toAbsolutePath() + ") : " + e.getMessage(), e);
+        }
+    }
+
+    // Métriques et thread d'export, une fois le journal ouvert
+    @Override
+    public synchronized void start() {
+        if (exporter != null) {
+            return;
+        }
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("chat_journal_segments", "Segments du journal des logs sur disque", segments::size);
+        metrics.gauge("chat_journal_export_backlog_bytes", "Octets du journal pas encore exportés en base",
+                this::getExportBacklogBytes);
+
+        exporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-journal-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        exporter.scheduleWithFixedDelay(this::exportPending, exportIntervalMs, exportIntervalMs, TimeUnit.MILLISECONDS);
+        System.out.println(" Logs : journal " + directory.toAbsolutePath() + " (" + segments.size()
+                + " segment(s), export vers la base toutes les " + exportIntervalMs + " ms)");
+    }
+
+    // Relit les segments existants, le point de reprise de l'export, et ouvre le segment actif
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    numbers.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Fichier étranger au journal
+                }
+            }
+        }
+        numbers.sort(null);
+        long[] checkpoint = readCheckpoint();
+        // Segments sous le point de reprise : entièrement exportés (arrêt entre saveCheckpoint et
+        // delete), supprimés sans être mappés
+        long firstKept = checkpoint == null ? 0 : checkpoint[0];
+        numbers.removeIf(number -> {
+            if (number >= firstKept) {
+                return false;
+            }
+            pendingDeletes.add(segmentPath(number));
+            return true;
+        });
+        retryDeletes();
+        for (long number : numbers) {
+            Segment segment = map(number, false);
+            segment.position = recover(segment);
+            segment.durable = segment.position;
+            segment.sealed = true;
+            segments.put(number, segment);
+        }
+        if (numbers.isEmpty()) {
+            active = map(Math.max(1, firstKept), true);
+            segments.put(active.number, active);
+        } else {
+            // On continue d'écrire dans le dernier segment
+            active = segments.get(numbers.get(numbers.size() - 1));
+            active.sealed = false;
+        }
+
+        exportSegment = numbers.isEmpty() ? active.number : numbers.get(0);
+        exportOffset = 0;
+        if (checkpoint != null && checkpoint[0] >= exportSegment) {
+            exportSegment = checkpoint[0];
+            exportOffset = (int) checkpoint[1];
+        }
+    }
+
+    // {segment, position} du point de reprise, null s'il est absent ou illisible : l'export
+    // reprend alors au premier segment (enregistrements déjà en base exportés une deuxième fois)
+    private long[] readCheckpoint() throws IOException {
+        Path checkpoint = directory.resolve(CHECKPOINT);
+        if (!Files.exists(checkpoint)) {
+            return null;
+        }
+        String content = Files.readString(checkpoint, StandardCharsets.UTF_8).trim();
+        String[] parts = content.split(" ");
+        try {
+            if (parts.length == 2) {
+                long number = Long.parseLong(parts[0]);
+                int offset = Integer.parseInt(parts[1]);
+                if (number > 0 && offset >= 0) {
+                    return new long[] {number, offset};
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Message ci-dessous
+        }
+        System.err.println("Journal : point de reprise illisible (" + content + "), export depuis le premier segment");
+        return null;
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private Segment map(long number, boolean create) throws IOException {
+        Path path = segmentPath(number);
+        FileChannel channel = create
+                ? FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Un segment plus court (écrit avec une autre taille) garde sa taille
+        long size = create ? segmentBytes : Math.max(channel.size(), HEADER_BYTES);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new Segment(number, path, channel, buffer);
+    }
+
+    // Fin du dernier enregistrement valide ; ce qui suit (écriture interrompue) est effacé
+    private int recover(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > buffer.capacity()) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(position + HEADER_BYTES, length));
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            position += HEADER_BYTES + length;
+        }
+        // Un enregistrement interrompu a pu laisser son contenu sans sa longueur : tout effacer
+        boolean garbage = false;
+        for (int i = position; i < buffer.capacity() && !garbage; i++) {
+            garbage = buffer.get(i) != 0;
+        }
+        if (garbage) {
+            System.err.println("Journal : fin de " + segment.path.getFileName() + " illisible à partir de l'octet "
+                    + position + ", effacée");
+            for (int i = position; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+        }
+        return position;
+    }
+
+    @Override
+    public void append(List<Object> entries) throws IOException {
+        writeLock.lock();
+        try {
+            for (Object entry : entries) {
+                write(entry);
+            }
+            dirty = true;
+            if (System.nanoTime() - lastSyncAt >= fsyncIntervalNanos) {
+                syncLocked();
+            }
+            appended.addAndGet(entries.size());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void write(Object entry) throws IOException {
+        byte kind;
+        LocalDateTime timestamp;
+        byte[][] fields;
+        if (entry instanceof Message) {
+            Message message = (Message) entry;
+            kind = MESSAGE;
+            timestamp = message.getTimestamp();
+            fields = new byte[][]{utf8(message.getUsername()), utf8(message.getMessage()), utf8(message.getMessageType()),
+                    utf8(message.getRecipientUsername()), utf8(message.getRoom())};
+        } else if (entry instanceof ServerLog) {
+            ServerLog log = (ServerLog) entry;
+            kind = SERVER_LOG;
+            timestamp = log.getTimestamp();
+            fields = new byte[][]{utf8(log.getLogType()), utf8(log.getMessage())};
+        } else {
+            throw new IllegalArgumentException("Entrée de log inconnue : " + entry);
+        }
+        int length = 1 + Long.BYTES + Integer.BYTES;
+        for (byte[] field : fields) {
+            length += Integer.BYTES + (field == null ? 0 : field.length);
+        }
+        // Garder la place d'une longueur nulle (fin du segment) après l'enregistrement
+        if (HEADER_BYTES + length + Integer.BYTES > segmentBytes) {
+            throw new IllegalArgumentException("Entrée de log trop grande pour un segment du journal (" + length + " octets)");
+        }
+        if (active.position + HEADER_BYTES + length + Integer.BYTES > active.buffer.capacity()) {
+            roll();
+        }
+
+        int position = active.position;
+        ByteBuffer record = active.buffer.slice(position + HEADER_BYTES, length);
+        record.put(kind);
+        LocalDateTime at = timestamp != null ? timestamp : LocalDateTime.now();
+        record.putLong(at.toEpochSecond(ZoneOffset.UTC));
+        record.putInt(at.getNano());
+        for (byte[] field : fields) {
+            if (field == null) {
+                record.putInt(-1);
+            } else {
+                record.putInt(field.length);
+                record.put(field);
+            }
+        }
+        crc.reset();
+        crc.update(record.flip());
+        active.buffer.putInt(position + 4, (int) crc.getValue());
+        // La longueur en dernier : tant qu'elle est nulle, l'enregistrement n'existe pas
+        active.buffer.putInt(position, length);
+        active.position = position + HEADER_BYTES + length;
+    }
+
+    // Segment plein : le synchroniser et le fermer à l'écriture, puis en ouvrir un nouveau
+    private void roll() throws IOException {
+        Segment full = active;
+        full.buffer.force();
+        full.durable = full.position;
+        full.sealed = true;
+        active = map(full.number + 1, true);
+        segments.put(active.number, active);
+    }
+
+    @Override
+    public void sync() {
+        writeLock.lock();
+        try {
+            if (dirty) {
+                syncLocked();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void syncLocked() {
+        active.buffer.force();
+        active.durable = active.position;
+        dirty = false;
+        lastSyncAt = System.nanoTime();
+        syncs.incrementAndGet();
+    }
+
+    // Thread d'export : remet les enregistrements synchronisés à la base, puis supprime les segments vidés
+    private void exportPending() {
+        try {
+            // Les dernières entrées d'un serveur peu actif attendraient sinon le prochain lot
+            sync();
+            retryDeletes();
+            while (true) {
+                Segment segment = segments.get(exportSegment);
+                if (segment == null) {
+                    break;
+                }
+                boolean sealed = segment.sealed;
+                int limit = segment.durable;
+                if (exportOffset >= limit) {
+                    if (!sealed) {
+                        break;
+                    }
+                    // Segment entièrement exporté : passer au suivant et le supprimer
+                    exportSegment = segment.number + 1;
+                    exportOffset = 0;
+                    saveCheckpoint();
+                    segments.remove(segment.number);
+                    delete(segment);
+                    continue;
+                }
+                List<Object> batch = new ArrayList<>(exportBatch);
+                int offset = exportOffset;
+                while (offset < limit && batch.size() < exportBatch) {
+                    int length = segment.buffer.getInt(offset);
+                    batch.add(read(segment.buffer.slice(offset + HEADER_BYTES, length)));
+                    offset += HEADER_BYTES + length;
+                }
+                exportTarget.append(batch);
+                exportOffset = offset;
+                saveCheckpoint();
+                exported.addAndGet(batch.size());
+                if (exportFailing) {
+                    exportFailing = false;
+                    System.err.println("Journal : export vers la base rétabli");
+                }
+            }
+        } catch (Exception e) {
+            // Base indisponible : nouvel essai au prochain passage, depuis le point de reprise
+            if (!exportFailing) {
+                exportFailing = true;
+                System.err.println("Journal : export vers la base interrompu, nouvel essai toutes les "
+                        + exportIntervalMs + " ms : " + e.getMessage());
+            }
+        }
+    }
+
+    private static Object read(ByteBuffer record) {
+        byte kind = record.get();
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(record.getLong(), record.getInt(), ZoneOffset.UTC);
+        if (kind == MESSAGE) {
+            Message message = new Message(string(record), string(record), string(record), string(record), string(record));
+            message.setTimestamp(timestamp);
+            return message;
+        }
+        ServerLog log = new ServerLog(string(record), string(record));
+        log.setTimestamp(timestamp);
+        return log;
+    }
+
+    private void saveCheckpoint() throws IOException {
+        Path temporary = directory.resolve(CHECKPOINT + ".tmp");
+        Files.writeString(temporary, exportSegment + " " + exportOffset + "\n", StandardCharsets.UTF_8);
+        Files.move(temporary, directory.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void delete(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            // Ignorer les erreurs de fermeture
+        }
+        pendingDeletes.add(segment.path);
+        retryDeletes();
+    }
+
+    // Sous Windows, un fichier encore mappé ne peut pas être supprimé : réessayer plus tard
+    private void retryDeletes() {
+        pendingDeletes.removeIf(path -> {
+            try {
+                Files.deleteIfExists(path);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+
+    // Octets synchronisés pas encore exportés (approximatif pendant un export)
+    public long getExportBacklogBytes() {
+        long segment = exportSegment;
+        long backlog = -exportOffset;
+        for (Segment current : segments.values()) {
+            if (current.number >= segment) {
+                backlog += current.durable;
+            }
+        }
+        return Math.max(0, backlog);
+    }
+
+    public long getAppendedCount() { return appended.get(); }
+    public long getExportedCount() { return exported.get(); }
+    public long getSyncCount() { return syncs.get(); }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
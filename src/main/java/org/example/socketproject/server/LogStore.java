@@ -0,0 +1,44 @@
+package org.example.socketproject.server;
+
+import java.util.List;
+
+/**
+ * Stockage des logs (Message, ServerLog) écrits par lots par AsyncLogWriter. L'implémentation
+ * est choisie par chat.storage.logs :
+ * - "hibernate" (HibernateLogStore, défaut) : insertion en base, un lot par transaction ;
+ * - "journal" (JournalLogStore) : ajout à un journal local en fichiers mappés, exporté en base
+ *   en arrière-plan ;
+ * - le nom complet d'une classe qui implémente cette interface (constructeur sans argument).
+ *
+ * append() n'est appelé que par le thread d'écriture d'AsyncLogWriter ; sync() peut l'être
+ * depuis un autre thread (arrêt du serveur).
+ */
+public interface LogStore {
+
+    // Écrit le lot dans l'ordre ; une exception signifie que le lot entier a échoué
+    void append(List<Object> entries) throws Exception;
+
+    // Rend durable tout ce qui a été écrit (arrêt du serveur) ; rien à faire par défaut
+    default void sync() {
+    }
+
+    // Démarre les tâches de fond du stockage (export du journal...), une fois l'objet construit ;
+    // appelé par ChatLogger avant le premier append()
+    default void start() {
+    }
+
+    static LogStore fromConfig() {
+        String type = ServerConfig.getString(ServerConfig.STORAGE_LOGS, "hibernate");
+        if (type.equalsIgnoreCase("hibernate")) {
+            return new HibernateLogStore();
+        }
+        if (type.equalsIgnoreCase("journal")) {
+            return new JournalLogStore(new HibernateLogStore());
+        }
+        try {
+            return (LogStore) Class.forName(type).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Stockage des logs invalide (" + ServerConfig.STORAGE_LOGS + ") : " + type, e);
+        }
+    }
+}
@@ -4,8 +4,48 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        @Index(name = "idx_messages_timestamp", columnList = "timestamp"),
+        @Index(name = "idx_messages_username", columnList = "username"),
+        // Historique d'une conversation privée (/history @utilisateur)
+        @Index(name = "idx_messages_private_conversation", columnList = "username, recipient_username, timestamp"),
+        // Historique d'un salon (rejeu, /history #salon)
+        @Index(name = "idx_messages_room_timestamp", columnList = "room, timestamp")
+})
+// Rejeu et /history d'un salon ; les messages d'avant les salons (room nulle) sont ceux du salon général
+@NamedQuery(name = Message.ROOM_PAGE, query = Message.ROOM + ")" + Message.NEWEST_FIRST)
+@NamedQuery(name = Message.ROOM_PAGE_BEFORE, query = Message.ROOM + ")" + Message.BEFORE + Message.NEWEST_FIRST)
+@NamedQuery(name = Message.DEFAULT_ROOM_PAGE, query = Message.ROOM + " or m.room is null)" + Message.NEWEST_FIRST)
+@NamedQuery(name = Message.DEFAULT_ROOM_PAGE_BEFORE,
+        query = Message.ROOM + " or m.room is null)" + Message.BEFORE + Message.NEWEST_FIRST)
+// /history @utilisateur : conversation privée dans les deux sens
+@NamedQuery(name = Message.PRIVATE_PAGE, query = Message.PRIVATE + Message.NEWEST_FIRST)
+@NamedQuery(name = Message.PRIVATE_PAGE_BEFORE, query = Message.PRIVATE + Message.BEFORE + Message.NEWEST_FIRST)
+// Position du curseur de /history : recherche par clé primaire
+@NamedQuery(name = Message.TIMESTAMP_BY_ID, query = "select m.timestamp from Message m where m.id = :id")
+// Rétention (RetentionService)
+@NamedQuery(name = Message.EXPIRED,
+        query = "from Message m where m.messageType = :type and m.timestamp < :cutoff order by m.timestamp, m.id")
+@NamedQuery(name = Message.DELETE_BY_IDS, query = "delete from Message m where m.id in (:ids)")
 public class Message {
+    public static final String ROOM_PAGE = "Message.roomPage";
+    public static final String ROOM_PAGE_BEFORE = "Message.roomPageBefore";
+    public static final String DEFAULT_ROOM_PAGE = "Message.defaultRoomPage";
+    public static final String DEFAULT_ROOM_PAGE_BEFORE = "Message.defaultRoomPageBefore";
+    public static final String PRIVATE_PAGE = "Message.privatePage";
+    public static final String PRIVATE_PAGE_BEFORE = "Message.privatePageBefore";
+    public static final String TIMESTAMP_BY_ID = "Message.timestampById";
+    public static final String EXPIRED = "Message.expired";
+    public static final String DELETE_BY_IDS = "Message.deleteByIds";
+
+    static final String ROOM = "from Message m where m.messageType = 'PUBLIC' and (m.room = :room";
+    static final String PRIVATE = "from Message m where m.messageType = 'PRIVATE'"
+            + " and ((m.username = :me and m.recipientUsername = :peer)"
+            + " or (m.username = :peer and m.recipientUsername = :me))";
+    // Pagination par clé (timestamp, id)
+    static final String BEFORE = " and (m.timestamp < :ts or (m.timestamp = :ts and m.id < :id))";
+    static final String NEWEST_FIRST = " order by m.timestamp desc, m.id desc";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -22,6 +62,10 @@ public class Message {
     @Column(name = "recipient_username", length = 50)
     private String recipientUsername;
 
+    // Salon des messages publics (null pour les messages privés et ceux d'avant les salons)
+    @Column(name = "room", length = 50)
+    private String room;
+
     @Column(name = "timestamp")
     private LocalDateTime timestamp;
 
@@ -37,6 +81,11 @@ public class Message {
         this.recipientUsername = recipientUsername;
     }
 
+    public Message(String username, String message, String messageType, String recipientUsername, String room) {
+        this(username, message, messageType, recipientUsername);
+        this.room = room;
+    }
+
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -53,6 +102,9 @@ public class Message {
     public String getRecipientUsername() { return recipientUsername; }
     public void setRecipientUsername(String recipientUsername) { this.recipientUsername = recipientUsername; }
 
+    public String getRoom() { return room; }
+    public void setRoom(String room) { this.room = room; }
+
     public LocalDateTime getTimestamp() { return timestamp; }
     public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
 }
@@ -0,0 +1,180 @@
+package org.example.socketproject.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Exposition du MetricsRegistry pendant que le serveur tourne :
+ * - HTTP local, format texte Prometheus : http://127.0.0.1:9464/metrics
+ *   (chat.metrics.host, chat.metrics.port ; port 0 ou négatif : désactivé) ;
+ * - JMX : MBean org.example.socketproject.server:type=ServerMetrics (jconsole, VisualVM).
+ */
+public class MetricsExporter {
+    private static final String MBEAN_NAME = "org.example.socketproject.server:type=ServerMetrics";
+
+    private final MetricsRegistry registry;
+    private HttpServer httpServer;
+    // Thread des requêtes HTTP : HttpServer.stop() ne l'arrête pas
+    private ExecutorService httpExecutor;
+    private ObjectName mbeanName;
+
+    public MetricsExporter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void start() {
+        startHttp();
+        registerMBean();
+    }
+
+    private void startHttp() {
+        int port = ServerConfig.getInt(ServerConfig.METRICS_PORT, 9464);
+        if (port <= 0) {
+            return;
+        }
+        String host = ServerConfig.getString(ServerConfig.METRICS_HOST, "127.0.0.1");
+        try {
+            httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+            httpServer.createContext("/metrics", this::handleMetrics);
+            httpExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+            httpServer.setExecutor(httpExecutor);
+            httpServer.start();
+            System.out.println(" Métriques : http://" + host + ":" + port + "/metrics");
+        } catch (IOException e) {
+            httpServer = null;
+            ChatLogger.getInstance().logError("Impossible d'exposer les métriques sur le port " + port + " : " + e.getMessage());
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = registry.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new MetricsMBean(registry), name);
+            mbeanName = name;
+        } catch (Exception e) {
+            ChatLogger.getInstance().logError("Impossible d'enregistrer le MBean des métriques : " + e.getMessage());
+        }
+    }
+
+    public void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+        if (httpExecutor != null) {
+            httpExecutor.shutdownNow();
+            httpExecutor = null;
+        }
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (Exception e) {
+                // Déjà retiré
+            }
+            mbeanName = null;
+        }
+    }
+
+    /**
+     * MBean dynamique : un attribut en lecture seule par valeur du registre
+     * (compteurs, débits, moyennes et p99 des chronomètres, jauges).
+     */
+    private static final class MetricsMBean implements DynamicMBean {
+        private final MetricsRegistry registry;
+
+        MetricsMBean(MetricsRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object value = registry.snapshot().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Object> values = registry.snapshot();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                Object value = values.get(attribute);
+                if (value != null) {
+                    list.add(new Attribute(attribute, value));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("Métriques en lecture seule");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        // Reconstruit à chaque appel : des métriques peuvent apparaître pendant l'exécution
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            Map<String, Object> values = registry.snapshot();
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+            int i = 0;
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                attributes[i++] = new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+                        entry.getKey(), true, false, false);
+            }
+            return new MBeanInfo(MetricsMBean.class.getName(), "Métriques du serveur de chat",
+                    attributes, null, null, null);
+        }
+    }
+}
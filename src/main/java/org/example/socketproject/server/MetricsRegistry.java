@@ -0,0 +1,304 @@
+package org.example.socketproject.server;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registre des métriques du serveur : compteurs avec débit sur une minute, chronomètres
+ * (histogramme à seaux fixes) et jauges lues à la demande.
+ * Les mesures sur les chemins chauds ne prennent aucun verrou (LongAdder). Le registre est lu
+ * par MetricsExporter (HTTP au format texte Prometheus, et JMX).
+ */
+public class MetricsRegistry {
+    // Bornes des seaux des chronomètres, en secondes (100 µs à 10 s)
+    private static final double[] BUCKETS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+    private static final long TICK_SECONDS = 5;
+
+    // Ordre d'enregistrement conservé pour l'affichage
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+    private final Map<String, Integer> order = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor ticker;
+
+    private MetricsRegistry() {
+        ticker = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "metrics-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, TICK_SECONDS, TICK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static final class Holder {
+        private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+    }
+
+    public static MetricsRegistry getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    public abstract static class Metric {
+        final String name;
+        final String help;
+
+        Metric(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        public String getName() { return name; }
+        public String getHelp() { return help; }
+
+        abstract void writePrometheus(StringBuilder out);
+
+        // Valeurs exposées par JMX (nom d'attribut -> valeur)
+        abstract void sample(Map<String, Object> out);
+    }
+
+    /**
+     * Compteur monotone, avec un débit par seconde lissé sur une minute (moyenne exponentielle).
+     */
+    public static final class Meter extends Metric {
+        private static final double ALPHA = 1 - Math.exp(-TICK_SECONDS / 60.0);
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder uncounted = new LongAdder();
+        private volatile double rate = -1;
+
+        Meter(String name, String help) {
+            super(name, help);
+        }
+
+        public void mark() {
+            count.increment();
+            uncounted.increment();
+        }
+
+        public void mark(long n) {
+            count.add(n);
+            uncounted.add(n);
+        }
+
+        public long getCount() { return count.sum(); }
+
+        public double getOneMinuteRate() { return Math.max(0, rate); }
+
+        void tick() {
+            double instantRate = uncounted.sumThenReset() / (double) TICK_SECONDS;
+            rate = rate < 0 ? instantRate : rate + ALPHA * (instantRate - rate);
+        }
+
+        @Override
+        void writePrometheus(StringBuilder out) {
+            header(out, name + "_total", help, "counter");
+            out.append(name).append("_total ").append(getCount()).append('\n');
+            header(out, name + "_rate1m", help + " (par seconde, moyenne sur une minute)", "gauge");
+            out.append(name).append("_rate1m ").append(format(getOneMinuteRate())).append('\n');
+        }
+
+        @Override
+        void sample(Map<String, Object> out) {
+            out.put(name + "_total", getCount());
+            out.put(name + "_rate1m", getOneMinuteRate());
+        }
+    }
+
+    /**
+     * Chronomètre : nombre, somme, maximum et histogramme cumulatif des durées.
+     */
+    public static final class Timer extends Metric {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        Timer(String name, String help) {
+            super(name, help);
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void record(long nanos) {
+            if (nanos < 0) {
+                return;
+            }
+            count.increment();
+            sumNanos.add(nanos);
+            if (nanos > maxNanos.get()) {
+                maxNanos.accumulateAndGet(nanos, Math::max);
+            }
+            double seconds = nanos / 1e9;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                if (seconds <= BUCKETS[i]) {
+                    buckets[i].increment();
+                    return;
+                }
+            }
+        }
+
+        // Chronométrer depuis startNanos (System.nanoTime())
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long getCount() { return count.sum(); }
+
+        public double getMeanMillis() {
+            long n = getCount();
+            return n == 0 ? 0 : sumNanos.sum() / 1e6 / n;
+        }
+
+        public double getMaxMillis() { return maxNanos.get() / 1e6; }
+
+        // Percentile approché : borne supérieure du seau qui le contient
+        public double getPercentileMillis(double percentile) {
+            long total = getCount();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += buckets[i].sum();
+                if (cumulative >= rank) {
+                    return BUCKETS[i] * 1000;
+                }
+            }
+            return getMaxMillis();
+        }
+
+        @Override
+        void writePrometheus(StringBuilder out) {
+            String base = name + "_seconds";
+            header(out, base, help, "histogram");
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += buckets[i].sum();
+                out.append(base).append("_bucket{le=\"").append(format(BUCKETS[i])).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            out.append(base).append("_bucket{le=\"+Inf\"} ").append(getCount()).append('\n');
+            out.append(base).append("_sum ").append(format(sumNanos.sum() / 1e9)).append('\n');
+            out.append(base).append("_count ").append(getCount()).append('\n');
+            header(out, base + "_max", help + " (maximum)", "gauge");
+            out.append(base).append("_max ").append(format(maxNanos.get() / 1e9)).append('\n');
+        }
+
+        @Override
+        void sample(Map<String, Object> out) {
+            out.put(name + "_count", getCount());
+            out.put(name + "_mean_ms", getMeanMillis());
+            out.put(name + "_p99_ms", getPercentileMillis(99));
+            out.put(name + "_max_ms", getMaxMillis());
+        }
+    }
+
+    /**
+     * Jauge : valeur lue au moment de l'export (taille d'une file, nombre de connexions...).
+     */
+    public static final class Gauge extends Metric {
+        private final DoubleSupplier value;
+
+        Gauge(String name, String help, DoubleSupplier value) {
+            super(name, help);
+            this.value = value;
+        }
+
+        public double getValue() {
+            try {
+                return value.getAsDouble();
+            } catch (RuntimeException e) {
+                return Double.NaN;
+            }
+        }
+
+        @Override
+        void writePrometheus(StringBuilder out) {
+            header(out, name, help, "gauge");
+            out.append(name).append(' ').append(format(getValue())).append('\n');
+        }
+
+        @Override
+        void sample(Map<String, Object> out) {
+            out.put(name, getValue());
+        }
+    }
+
+    public Meter meter(String name, String help) {
+        return (Meter) metrics.computeIfAbsent(name, n -> track(new Meter(n, help)));
+    }
+
+    public Timer timer(String name, String help) {
+        return (Timer) metrics.computeIfAbsent(name, n -> track(new Timer(n, help)));
+    }
+
+    // Une jauge du même nom est remplacée (ex. serveur redémarré depuis l'interface)
+    public void gauge(String name, String help, DoubleSupplier value) {
+        metrics.put(name, track(new Gauge(name, help, value)));
+    }
+
+    public void remove(String name) {
+        metrics.remove(name);
+    }
+
+    private <M extends Metric> M track(M metric) {
+        order.putIfAbsent(metric.name, order.size());
+        return metric;
+    }
+
+    private Iterable<Metric> sorted() {
+        return metrics.values().stream()
+                .sorted((a, b) -> Integer.compare(order.getOrDefault(a.name, 0), order.getOrDefault(b.name, 0)))
+                .toList();
+    }
+
+    // Format d'exposition texte de Prometheus (version 0.0.4)
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Metric metric : sorted()) {
+            metric.writePrometheus(out);
+        }
+        return out.toString();
+    }
+
+    // Toutes les valeurs à plat, pour JMX
+    public Map<String, Object> snapshot() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Metric metric : sorted()) {
+            metric.sample(values);
+        }
+        return values;
+    }
+
+    private void tick() {
+        for (Metric metric : metrics.values()) {
+            if (metric instanceof Meter) {
+                ((Meter) metric).tick();
+            }
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,342 @@
+package org.example.socketproject.server;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Connexion d'un client en mode NIO.
+ * La lecture, le découpage en lignes (ou en trames binaires, si le client a demandé "binary"
+ * dans sa ligne CAPS:) et l'écriture se font dans la boucle d'E/S propriétaire ;
+ * les lignes et trames complètes sont traitées dans l'ordre sur le pool de workers.
+ */
+public class NioClientConnection extends ClientConnection {
+    private static final int INITIAL_READ_BUFFER = 4096;
+    // Trames prises dans la file pour une écriture groupée (et compressées ensemble si elles sont petites)
+    private static final int WRITE_BATCH = 64;
+
+    private final SocketChannel channel;
+    private final NioServerTransport transport;
+    private final NioServerTransport.IoLoop loop;
+    private final int maxLineBytes;
+    private final String remoteAddress;
+    private volatile SelectionKey key;
+
+    // Accédés uniquement par la boucle d'E/S
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+    private boolean firstLineRead = false;
+    // Entrée en trames binaires : décidé dès la ligne CAPS:, sans attendre le worker qui y répond
+    private boolean binaryInput = false;
+
+    // Tâches de traitement des lignes, exécutées une à la fois et dans l'ordre de réception
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private volatile boolean handshakeDone = false;
+
+    // Lot en cours d'écriture (partiellement envoyé), accédés uniquement par la boucle d'E/S
+    private ByteBuffer[] pendingWrite;
+    private final List<Frame> writeBatch = new ArrayList<>(WRITE_BATCH);
+    private final AtomicBoolean writeRequested = new AtomicBoolean(false);
+    private volatile boolean closeRequested = false;
+
+    NioClientConnection(SocketChannel channel, ChatServer server, NioServerTransport transport,
+                        NioServerTransport.IoLoop loop, int maxLineBytes) {
+        super(server);
+        this.channel = channel;
+        this.transport = transport;
+        this.loop = loop;
+        this.maxLineBytes = maxLineBytes;
+        this.remoteAddress = channel.socket().getInetAddress().getHostAddress();
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    // Appelé par la boucle d'E/S une fois le canal enregistré
+    void attach(SelectionKey key) {
+        this.key = key;
+        if (!outbound.isEmpty() || closeRequested) {
+            onWritable();
+        }
+    }
+
+    // Appelé par la boucle d'E/S quand des données sont disponibles
+    void onReadable() {
+        int read;
+        try {
+            read = channel.read(readBuffer);
+        } catch (IOException e) {
+            closeNow();
+            submit(() -> {
+                ChatLogger.getInstance().logError("Erreur avec le client " + username + " : " + e.getMessage());
+                disconnect();
+            });
+            return;
+        }
+        if (read < 0) {
+            closeNow();
+            submit(this::disconnect);
+            return;
+        }
+
+        readBuffer.flip();
+        try {
+            if (!binaryInput) {
+                readLines();
+            }
+            if (binaryInput) {
+                readFrames();
+            }
+        } catch (ProtocolException e) {
+            closeNow();
+            submit(() -> {
+                ChatLogger.getInstance().logError("Trame invalide reçue de " + remoteAddress + " : " + e.getMessage());
+                disconnect();
+            });
+            return;
+        }
+        readBuffer.compact();
+
+        // Ligne ou trame incomplète qui remplit le tampon : l'agrandir ou refuser le client
+        if (!readBuffer.hasRemaining()) {
+            if (readBuffer.capacity() >= maxLineBytes) {
+                closeNow();
+                submit(() -> {
+                    ChatLogger.getInstance().logError("Ligne trop longue reçue de " + remoteAddress);
+                    disconnect();
+                });
+                return;
+            }
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(maxLineBytes, readBuffer.capacity() * 2));
+            readBuffer.flip();
+            larger.put(readBuffer);
+            readBuffer = larger;
+        }
+    }
+
+    // Découper les lignes complètes (séparateur \n, \r final ignoré)
+    private void readLines() {
+        byte[] data = readBuffer.array();
+        int start = readBuffer.position();
+        int limit = readBuffer.limit();
+        for (int i = start; i < limit; i++) {
+            if (data[i] == '\n') {
+                int end = i;
+                if (end > start && data[end - 1] == '\r') {
+                    end--;
+                }
+                String line = new String(data, start, end - start, StandardCharsets.UTF_8);
+                submit(() -> onLine(line));
+                start = i + 1;
+                boolean first = !firstLineRead;
+                firstLineRead = true;
+                if (first && BinaryProtocol.isRequested(line)) {
+                    // La suite (identifiants compris) arrive en trames binaires
+                    binaryInput = true;
+                    break;
+                }
+            }
+        }
+        readBuffer.position(start);
+    }
+
+    // Découper les trames complètes : longueur (varint), type, contenu
+    private void readFrames() throws ProtocolException {
+        while (true) {
+            int frameStart = readBuffer.position();
+            int length = BinaryProtocol.getVarint(readBuffer);
+            if (length < 0) {
+                return;
+            }
+            if (length == 0 || length + BinaryProtocol.varintSize(length) > maxLineBytes) {
+                throw new ProtocolException("longueur " + length);
+            }
+            if (readBuffer.remaining() < length) {
+                readBuffer.position(frameStart);
+                return;
+            }
+            byte type = readBuffer.get();
+            byte[] body = new byte[length - 1];
+            readBuffer.get(body);
+            submit(() -> onFrame(type, ByteBuffer.wrap(body)));
+        }
+    }
+
+    // Traitement d'une trame binaire sur un worker ; les identifiants arrivent dans une trame TEXT
+    private void onFrame(byte type, ByteBuffer body) {
+        if (type == BinaryProtocol.TEXT || !handshakeDone) {
+            onLine(type == BinaryProtocol.TEXT ? utf8(body) : null);
+            return;
+        }
+        if (isDisconnected()) {
+            return;
+        }
+        if (!handleFrame(type, body)) {
+            disconnect();
+        }
+    }
+
+    // Traitement d'une ligne sur un worker
+    private void onLine(String line) {
+        if (isDisconnected()) {
+            return;
+        }
+        if (!handshakeDone) {
+            if (handleCapabilities(line)) {
+                return;
+            }
+            handshakeDone = true;
+            if (!handleHandshake(line)) {
+                disconnect();
+            }
+            return;
+        }
+        if (!handleLine(line)) {
+            disconnect();
+        }
+    }
+
+    private void submit(Runnable task) {
+        tasks.add(task);
+        if (draining.compareAndSet(false, true)) {
+            dispatch();
+        }
+    }
+
+    // Avant l'authentification : pool borné d'AdmissionController ; ensuite : workers NIO
+    private void dispatch() {
+        if (handshakeDone) {
+            transport.execute(this::drainTasks);
+        } else if (!server.getAdmissionController().submitHandshake(this::drainTasks)) {
+            handshakeDone = true;
+            tasks.clear();
+            draining.set(false);
+            rejectOverloaded();
+        }
+    }
+
+    private void drainTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            boolean handshakeTask = !handshakeDone;
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                ChatLogger.getInstance().logError("Erreur avec le client " + username + " : " + e.getMessage());
+                disconnect();
+            }
+            if (handshakeTask && handshakeDone) {
+                // Libérer le worker d'authentification : la suite passe sur les workers NIO
+                break;
+            }
+        }
+        draining.set(false);
+        // Une tâche a pu arriver entre le dernier poll() et la libération du drapeau
+        if (!tasks.isEmpty() && draining.compareAndSet(false, true)) {
+            dispatch();
+        }
+    }
+
+    @Override
+    protected void onOutboundReady() {
+        if (!closeRequested) {
+            requestWrite();
+        }
+    }
+
+    @Override
+    protected void abort() {
+        closeNow();
+        submit(this::disconnect);
+    }
+
+    private void requestWrite() {
+        if (writeRequested.compareAndSet(false, true)) {
+            loop.requestWrite(this);
+        }
+    }
+
+    // Appelé par la boucle d'E/S : écrit autant que le socket l'accepte
+    void onWritable() {
+        writeRequested.set(false);
+        SelectionKey currentKey = key;
+        if (currentKey == null || !currentKey.isValid()) {
+            return;
+        }
+        try {
+            while (true) {
+                if (pendingWrite == null) {
+                    Frame frame;
+                    while (writeBatch.size() < WRITE_BATCH && (frame = outbound.poll()) != null) {
+                        writeBatch.add(frame);
+                    }
+                    if (writeBatch.isEmpty()) {
+                        break;
+                    }
+                    pendingWrite = encode(writeBatch);
+                    writeBatch.clear();
+                }
+                channel.write(pendingWrite);
+                if (pendingWrite[pendingWrite.length - 1].hasRemaining()) {
+                    // Socket plein : attendre OP_WRITE
+                    currentKey.interestOps(currentKey.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                pendingWrite = null;
+            }
+            currentKey.interestOps(currentKey.interestOps() & ~SelectionKey.OP_WRITE);
+            if (closeRequested) {
+                closeNow();
+            }
+        } catch (IOException e) {
+            closeNow();
+            submit(this::disconnect);
+        }
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    protected boolean awaitDrained(long deadlineNanos) {
+        // La boucle d'E/S écrit le reste puis ferme (closeTransport) : rien à attendre ici
+        return true;
+    }
+
+    @Override
+    protected void closeTransport() {
+        // Fermer après l'envoi des messages en attente (ex. AUTH_FAILED)
+        outbound.close();
+        closeRequested = true;
+        if (key == null) {
+            closeNow();
+        } else {
+            requestWrite();
+        }
+    }
+
+    private void closeNow() {
+        closeRequested = true;
+        SelectionKey currentKey = key;
+        if (currentKey != null) {
+            currentKey.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignorer les erreurs de fermeture
+        }
+        outbound.clear();
+    }
+}
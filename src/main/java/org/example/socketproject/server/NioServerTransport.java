@@ -0,0 +1,214 @@
+package org.example.socketproject.server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transport non bloquant : un petit nombre fixe de boucles Selector (une par cœur par défaut)
+ * gère la lecture et l'écriture de toutes les connexions.
+ * Les lignes reçues sont traitées sur un pool de workers (l'authentification et la
+ * persistance font des appels JDBC bloquants qui ne doivent pas tourner dans une boucle d'E/S) ;
+ * la poignée de main passe par le pool borné de l'AdmissionController.
+ */
+public class NioServerTransport {
+    private final ChatServer server;
+    private final IoLoop[] loops;
+    private final ExecutorService workers;
+    private final int maxLineBytes;
+    private int nextLoop = 0;
+
+    public NioServerTransport(ChatServer server) {
+        this.server = server;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int ioThreads = Math.max(1, ServerConfig.getInt(ServerConfig.NIO_IO_THREADS, cores));
+        int workerThreads = Math.max(1, ServerConfig.getInt(ServerConfig.NIO_WORKER_THREADS, cores * 4));
+        this.maxLineBytes = Math.max(256, ServerConfig.getInt(ServerConfig.NIO_MAX_LINE_BYTES, 64 * 1024));
+        this.loops = new IoLoop[ioThreads];
+        this.workers = Executors.newFixedThreadPool(workerThreads, namedThreads("nio-worker"));
+    }
+
+    /**
+     * Démarre les boucles d'E/S puis accepte les connexions jusqu'à la fermeture du canal serveur.
+     */
+    public void run(ServerSocketChannel serverChannel) throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new IoLoop(Selector.open());
+            Thread thread = new Thread(loops[i], "nio-io-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        // Le canal serveur reste bloquant : ce thread ne fait qu'accepter et répartir les connexions
+        while (server.isRunning()) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                if (server.isRunning()) {
+                    ChatLogger.getInstance().logError("Erreur lors de l'acceptation d'un client : " + e.getMessage());
+                    continue;
+                }
+                break;
+            }
+            if (!server.getAdmissionController().tryAdmit(channel.socket().getInetAddress().getHostAddress())) {
+                // Canal encore bloquant : la réponse (quelques octets) part immédiatement
+                server.rejectConnection(channel);
+                continue;
+            }
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+            } catch (IOException e) {
+                channel.close();
+                continue;
+            }
+            IoLoop loop = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            NioClientConnection connection = new NioClientConnection(channel, server, this, loop, maxLineBytes);
+            server.clientAccepted(connection);
+            loop.register(connection);
+        }
+    }
+
+    public void stop() {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+        }
+        for (IoLoop loop : loops) {
+            if (loop != null) {
+                loop.close();
+            }
+        }
+    }
+
+    // Exécute une tâche de traitement de ligne sur le pool de workers
+    void execute(Runnable task) {
+        try {
+            workers.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Arrêt en cours : les clients ont déjà été déconnectés par ChatServer.stop()
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Boucle d'E/S : un Selector, un thread.
+     * Les autres threads ne touchent jamais aux SelectionKey directement, ils déposent
+     * leurs demandes dans des files puis réveillent le Selector.
+     */
+    static final class IoLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<NioClientConnection> pendingRegistrations = new ConcurrentLinkedQueue<>();
+        private final Queue<NioClientConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+        private volatile boolean open = true;
+
+        IoLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void register(NioClientConnection connection) {
+            pendingRegistrations.add(connection);
+            selector.wakeup();
+        }
+
+        void requestWrite(NioClientConnection connection) {
+            pendingWrites.add(connection);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (open) {
+                    selector.select();
+                    processRegistrations();
+                    processWriteRequests();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        NioClientConnection connection = (NioClientConnection) key.attachment();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isReadable()) {
+                            connection.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.onWritable();
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (open) {
+                    ChatLogger.getInstance().logError("Erreur dans la boucle NIO : " + e.getMessage());
+                }
+            } finally {
+                closeAll();
+            }
+        }
+
+        private void processRegistrations() {
+            NioClientConnection connection;
+            while ((connection = pendingRegistrations.poll()) != null) {
+                try {
+                    SelectionKey key = connection.channel().register(selector, SelectionKey.OP_READ, connection);
+                    connection.attach(key);
+                } catch (IOException e) {
+                    connection.disconnect();
+                }
+            }
+        }
+
+        private void processWriteRequests() {
+            NioClientConnection connection;
+            while ((connection = pendingWrites.poll()) != null) {
+                connection.onWritable();
+            }
+        }
+
+        void close() {
+            open = false;
+            selector.wakeup();
+        }
+
+        // Appelé par le thread de la boucle lorsqu'elle se termine
+        private void closeAll() {
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            } catch (IOException | ClosedSelectorException e) {
+                // Ignorer les erreurs de fermeture
+            }
+        }
+    }
+}
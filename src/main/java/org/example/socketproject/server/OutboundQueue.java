@@ -0,0 +1,198 @@
+package org.example.socketproject.server;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * File bornée des trames sortantes d'un client, vidée par le writer du transport.
+ * Un client lent ne ralentit plus l'expéditeur ni les autres destinataires : quand la file
+ * est pleine, la politique "client lent" décide quoi abandonner.
+ */
+public class OutboundQueue {
+
+    public enum SlowConsumerPolicy {
+        DROP_OLDEST,  // abandonner le plus ancien message en attente
+        COALESCE,     // une nouvelle liste USERS: remplace celle en attente, puis DROP_OLDEST
+        DISCONNECT    // déconnecter le client quand maxPending messages sont en attente
+    }
+
+    public enum OfferResult {
+        ACCEPTED,
+        OVERFLOW,   // politique DISCONNECT : la file est pleine, le client doit être déconnecté
+        CLOSED
+    }
+
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    private final SlowConsumerPolicy policy;
+    private final int maxPending;
+    // Verrou explicite plutôt que synchronized : le writer peut être un thread virtuel
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private boolean closed = false;
+    private int pendingUserLists = 0;
+
+    // Statistiques (lues sans verrou)
+    private volatile int depth = 0;
+    private volatile int peakDepth = 0;
+    private volatile long dropped = 0;
+    private volatile long coalesced = 0;
+
+    public OutboundQueue(SlowConsumerPolicy policy, int maxPending) {
+        this.policy = policy;
+        this.maxPending = Math.max(1, maxPending);
+    }
+
+    public static OutboundQueue fromConfig() {
+        String value = ServerConfig.getString(ServerConfig.OUTBOUND_POLICY, "coalesce");
+        SlowConsumerPolicy policy;
+        switch (value.toLowerCase()) {
+            case "drop-oldest":
+                policy = SlowConsumerPolicy.DROP_OLDEST;
+                break;
+            case "disconnect":
+                policy = SlowConsumerPolicy.DISCONNECT;
+                break;
+            default:
+                policy = SlowConsumerPolicy.COALESCE;
+        }
+        return new OutboundQueue(policy, ServerConfig.getInt(ServerConfig.OUTBOUND_MAX_PENDING, 1000));
+    }
+
+    public OfferResult offer(Frame frame) {
+        lock.lock();
+        try {
+            if (closed) {
+                return OfferResult.CLOSED;
+            }
+            boolean userList = frame.isUserList();
+            if (userList && pendingUserLists > 0 && policy == SlowConsumerPolicy.COALESCE) {
+                // Seule la liste la plus récente compte
+                removeUserLists();
+            }
+            if (frames.size() >= maxPending) {
+                if (policy == SlowConsumerPolicy.DISCONNECT) {
+                    return OfferResult.OVERFLOW;
+                }
+                Frame removed = frames.pollFirst();
+                if (removed != null && removed.isUserList()) {
+                    pendingUserLists--;
+                }
+                dropped++;
+            }
+            frames.addLast(frame);
+            if (userList) {
+                pendingUserLists++;
+            }
+            updateDepth();
+            notEmpty.signal();
+            return OfferResult.ACCEPTED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeUserLists() {
+        Iterator<Frame> it = frames.iterator();
+        while (it.hasNext() && pendingUserLists > 0) {
+            if (it.next().isUserList()) {
+                it.remove();
+                pendingUserLists--;
+                coalesced++;
+            }
+        }
+    }
+
+    // Retirer le prochain message sans attendre (null si la file est vide)
+    public Frame poll() {
+        lock.lock();
+        try {
+            Frame frame = frames.pollFirst();
+            if (frame != null) {
+                if (frame.isUserList()) {
+                    pendingUserLists--;
+                }
+                updateDepth();
+            }
+            return frame;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Attend au moins un message puis en transfère au plus max dans batch.
+     * Retourne false quand la file est fermée et vide (le writer doit s'arrêter).
+     */
+    public boolean awaitAndDrain(List<Frame> batch, int max, long timeoutMs) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            while (frames.isEmpty() && !closed) {
+                if (remaining <= 0) {
+                    return true;
+                }
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            if (frames.isEmpty()) {
+                return false;
+            }
+            while (batch.size() < max && !frames.isEmpty()) {
+                Frame frame = frames.pollFirst();
+                if (frame.isUserList()) {
+                    pendingUserLists--;
+                }
+                batch.add(frame);
+            }
+            updateDepth();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Refuser les nouveaux messages ; ceux déjà en file restent à envoyer
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Abandonner tous les messages en attente (connexion coupée)
+    public void clear() {
+        lock.lock();
+        try {
+            closed = true;
+            frames.clear();
+            pendingUserLists = 0;
+            updateDepth();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return depth == 0;
+    }
+
+    private void updateDepth() {
+        depth = frames.size();
+        if (depth > peakDepth) {
+            peakDepth = depth;
+        }
+    }
+
+    public int getDepth() { return depth; }
+    public int getPeakDepth() { return peakDepth; }
+    public long getDroppedCount() { return dropped; }
+    public long getCoalescedCount() { return coalesced; }
+    public SlowConsumerPolicy getPolicy() { return policy; }
+}
@@ -0,0 +1,163 @@
+package org.example.socketproject.server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Diffusion de la présence (utilisateurs connectés).
+ * - à la connexion, le client reçoit une fois la liste complète (USERS:a,b,c) ;
+ * - les arrivées et départs d'une fenêtre (chat.presence.windowMs) sont regroupés puis diffusés
+ *   en une seule fois : USER_JOIN:a,b / USER_LEAVE:c aux clients qui ont négocié la capacité
+ *   "presence-delta", la liste USERS: complète aux autres (comportement historique) ;
+ * - un client dont la file sortante a perdu des messages reçoit de nouveau la liste complète.
+ * En grappe (ClusterNode), la liste et les deltas couvrent les utilisateurs de tous les nœuds ;
+ * les arrivées et départs annoncés par les autres nœuds passent par la même fenêtre.
+ * Les deltas décrivent l'état du registre au moment de l'envoi : les appliquer plusieurs fois
+ * ou après une liste complète plus récente ne change rien.
+ */
+public class PresenceBroadcaster {
+    public static final String CAPABILITY = "presence-delta";
+
+    private final ClientRegistry registry;
+    private final ClusterNode cluster;
+    private final Consumer<Set<String>> listener;
+    private final long windowMs;
+    private final ScheduledThreadPoolExecutor timer;
+    // Ordonne les listes complètes et les deltas envoyés à un même client
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Set<String> changed = new LinkedHashSet<>();
+    private boolean flushScheduled = false;
+
+    public PresenceBroadcaster(ClientRegistry registry, ClusterNode cluster, Consumer<Set<String>> listener) {
+        this.registry = registry;
+        this.cluster = cluster;
+        this.listener = listener;
+        this.windowMs = ServerConfig.getLong(ServerConfig.PRESENCE_WINDOW_MS, 50);
+        if (windowMs > 0) {
+            this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "presence-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.timer = null;
+        }
+    }
+
+    /**
+     * Un client vient de s'authentifier. S'il gère les deltas, il reçoit tout de suite la liste
+     * complète ; sinon il la recevra avec les autres à la fin de la fenêtre.
+     */
+    public void userJoined(ClientConnection client) {
+        lock.lock();
+        try {
+            if (client.supportsPresenceDeltas()) {
+                client.sendFrame(snapshotFrame());
+                client.markPresenceSynced();
+            }
+            userChanged(client.getUsername());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void userLeft(String username) {
+        lock.lock();
+        try {
+            userChanged(username);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Arrivée ou départ annoncé par un autre nœud de la grappe
+    public void remoteUserChanged(String username) {
+        lock.lock();
+        try {
+            userChanged(username);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Appelé avec le verrou : diffusé à la fin de la fenêtre (ou tout de suite si elle est nulle)
+    private void userChanged(String username) {
+        changed.add(username);
+        if (timer == null) {
+            flushLocked();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            timer.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        lock.lock();
+        try {
+            flushScheduled = false;
+            flushLocked();
+        } catch (RuntimeException e) {
+            ChatLogger.getInstance().logError("Erreur lors de la diffusion de la présence : " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLocked() {
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<String> joined = new ArrayList<>();
+        List<String> left = new ArrayList<>();
+        for (String username : changed) {
+            if (cluster.isOnline(username)) {
+                joined.add(username);
+            } else {
+                left.add(username);
+            }
+        }
+        changed.clear();
+
+        Frame snapshot = null;
+        Frame joinFrame = joined.isEmpty() ? null : Frame.shared("USER_JOIN:" + String.join(",", joined));
+        Frame leaveFrame = left.isEmpty() ? null : Frame.shared("USER_LEAVE:" + String.join(",", left));
+        for (ClientConnection client : registry.sessions()) {
+            if (!client.isRegistered()) {
+                continue;
+            }
+            // Client binaire : ids des nouveaux venus, pour leur écrire en privé
+            client.announceUsers(joined);
+            if (!client.supportsPresenceDeltas() || !client.isPresenceSynced()) {
+                if (snapshot == null) {
+                    snapshot = snapshotFrame();
+                }
+                client.sendFrame(snapshot);
+                client.markPresenceSynced();
+                continue;
+            }
+            if (joinFrame != null) {
+                client.sendFrame(joinFrame);
+            }
+            if (leaveFrame != null) {
+                client.sendFrame(leaveFrame);
+            }
+        }
+        listener.accept(cluster.onlineUsers());
+    }
+
+    private Frame snapshotFrame() {
+        return Frame.shared("USERS:" + String.join(",", cluster.onlineUsers()));
+    }
+
+    public void shutdown() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+}
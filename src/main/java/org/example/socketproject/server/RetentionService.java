@@ -0,0 +1,312 @@
+package org.example.socketproject.server;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Rétention des tables messages et server_logs : les lignes plus anciennes que la durée fixée pour
+ * leur type sont supprimées par petits lots, pendant la plage creuse, et éventuellement archivées
+ * avant suppression.
+ *
+ * chat.retention.rules : durées en jours par type, "EVENT=7,ERROR=90,PUBLIC=365" ; PUBLIC et
+ * PRIVATE désignent des messages, les autres types des logs serveur. Un type absent est conservé.
+ * chat.retention.window : plage creuse, heure locale ("02:00-05:00", peut passer minuit) ; vide :
+ * à toute heure. Un lot fait au plus chat.retention.batchSize lignes, une transaction courte suivie
+ * d'une pause (chat.retention.pauseMs) : les insertions des AsyncLogWriter ne restent jamais
+ * bloquées derrière une longue suppression, et SQL Server n'escalade pas ses verrous sur la table.
+ *
+ * Avec chat.retention.archiveDir, chaque lot est d'abord ajouté (et écrit sur disque) à
+ * archiveDir/<table>-<aaaammjj>.tsv.gz, une ligne par enregistrement, colonnes séparées par des
+ * tabulations (\, tabulation et retours à la ligne échappés) :
+ *   messages    : id, timestamp, message_type, username, recipient_username, room, message
+ *   server_logs : id, timestamp, log_type, message
+ * Chaque lot forme un membre gzip : le fichier se lit d'un bloc (zcat, GZIPInputStream). Si la
+ * suppression échoue après l'archivage, le lot sera archivé une deuxième fois.
+ *
+ * Les règles PUBLIC et PRIVATE s'appliquent aussi à l'index de recherche (SearchIndex.expire) :
+ * /search ne retourne plus un message expiré, même avant sa suppression en base, et les fichiers
+ * d'index entièrement expirés sont supprimés.
+ *
+ * En grappe, activer la rétention sur un seul nœud ; l'index de recherche des autres nœuds n'est
+ * alors pas expiré. Pour de gros volumes, voir partition-database.sql (purge par partition).
+ */
+public class RetentionService {
+    // SQL Server accepte au plus 2100 paramètres par requête (delete ... where id in (...))
+    private static final int MAX_BATCH = 2000;
+    private static final String DEFAULT_RULES =
+            "EVENT=7,CONNECTION=30,DISCONNECTION=30,SERVER_START=90,SERVER_STOP=90,ERROR=90,PUBLIC=365,PRIVATE=365";
+
+    // Durée de conservation d'un type de message (PUBLIC, PRIVATE) ou de log serveur
+    record Rule(String type, boolean message, int days) {
+    }
+
+    private final List<Rule> rules;
+    // Plage creuse, null : toute la journée
+    private final LocalTime windowStart;
+    private final LocalTime windowEnd;
+    private final int batchSize;
+    private final long pauseMs;
+    private final long checkIntervalMs;
+    // Répertoire d'archive, null : suppression sans archive
+    private final Path archiveDir;
+    private final MetricsRegistry.Meter deleted = MetricsRegistry.getInstance()
+            .meter("chat_retention_deleted", "Lignes supprimées par la rétention (messages et logs)");
+
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    public RetentionService() {
+        this.rules = parseRules(ServerConfig.getString(ServerConfig.RETENTION_RULES, DEFAULT_RULES));
+        LocalTime[] window = parseWindow(ServerConfig.getString(ServerConfig.RETENTION_WINDOW, "02:00-05:00"));
+        this.windowStart = window == null ? null : window[0];
+        this.windowEnd = window == null ? null : window[1];
+        this.batchSize = Math.min(MAX_BATCH, Math.max(1, ServerConfig.getInt(ServerConfig.RETENTION_BATCH_SIZE, 1000)));
+        this.pauseMs = Math.max(0, ServerConfig.getLong(ServerConfig.RETENTION_PAUSE_MS, 200));
+        this.checkIntervalMs = Math.max(1000, ServerConfig.getLong(ServerConfig.RETENTION_CHECK_INTERVAL_MS, 300_000));
+        String archive = ServerConfig.getString(ServerConfig.RETENTION_ARCHIVE_DIR, "");
+        this.archiveDir = archive.isEmpty() ? null : Paths.get(archive);
+    }
+
+    public static boolean isEnabled() {
+        return ServerConfig.getBoolean(ServerConfig.RETENTION_ENABLED, false);
+    }
+
+    /**
+     * Vérifie régulièrement si l'on est dans la plage creuse et y lance une purge.
+     */
+    public synchronized void start() {
+        if (running || rules.isEmpty()) {
+            return;
+        }
+        running = true;
+        expireSearchIndex();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (isOffPeak(LocalTime.now())) {
+                purge(true);
+            }
+        }, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+        System.out.println(" Rétention : " + rules.size() + " règle(s)"
+                + (windowStart == null ? "" : ", de " + windowStart + " à " + windowEnd)
+                + (archiveDir == null ? "" : ", archives dans " + archiveDir.toAbsolutePath()));
+    }
+
+    // Le lot en cours se termine (sa transaction est courte) avant l'arrêt du thread
+    public synchronized void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Applique toutes les règles, lot par lot, jusqu'à ce qu'il ne reste rien à supprimer ; avec
+     * offPeakOnly, s'interrompt en sortant de la plage creuse. Retourne le nombre de lignes supprimées.
+     */
+    public long purge(boolean offPeakOnly) {
+        long total = 0;
+        expireSearchIndex();
+        try {
+            for (Rule rule : rules) {
+                LocalDateTime cutoff = cutoff(rule);
+                int count;
+                do {
+                    if (offPeakOnly && (!running || !isOffPeak(LocalTime.now()))) {
+                        return total;
+                    }
+                    count = purgeBatch(rule, cutoff);
+                    total += count;
+                    if (count == batchSize && pauseMs > 0) {
+                        Thread.sleep(pauseMs);
+                    }
+                } while (count == batchSize);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            ChatLogger.getInstance().logError("Rétention interrompue : " + e.getMessage());
+        } finally {
+            if (total > 0) {
+                ChatLogger.getInstance().logServerEvent("Rétention : " + total + " ligne(s) supprimée(s)");
+            }
+        }
+        return total;
+    }
+
+    private static LocalDateTime cutoff(Rule rule) {
+        return LocalDate.now().minusDays(rule.days()).atStartOfDay();
+    }
+
+    // Mêmes dates limites pour l'index de recherche que pour la table messages
+    private void expireSearchIndex() {
+        SearchIndex index = ChatLogger.getInstance().getSearchIndex();
+        if (index != null) {
+            index.expire(messageCutoffMillis("PUBLIC"), messageCutoffMillis("PRIVATE"));
+        }
+    }
+
+    // Date limite (epochMillis) d'un type de message, Long.MIN_VALUE s'il est conservé sans limite
+    private long messageCutoffMillis(String type) {
+        long cutoff = Long.MIN_VALUE;
+        for (Rule rule : rules) {
+            if (rule.message() && rule.type().equals(type)) {
+                cutoff = Math.max(cutoff, cutoff(rule).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            }
+        }
+        return cutoff;
+    }
+
+    // Un lot : lecture des plus anciennes lignes, archive, suppression par id, dans une transaction
+    private int purgeBatch(Rule rule, LocalDateTime cutoff) throws IOException {
+        int count = HibernateUtil.inTransaction(session -> {
+            List<Long> ids = new ArrayList<>();
+            List<String> lines = new ArrayList<>();
+            if (rule.message()) {
+                List<Message> rows = session.createNamedSelectionQuery(Message.EXPIRED, Message.class)
+                        .setParameter("type", rule.type())
+                        .setParameter("cutoff", cutoff)
+                        .setMaxResults(batchSize)
+                        .list();
+                for (Message row : rows) {
+                    ids.add(row.getId());
+                    lines.add(tsv(row.getId(), row.getTimestamp(), row.getMessageType(), row.getUsername(),
+                            row.getRecipientUsername(), row.getRoom(), row.getMessage()));
+                }
+            } else {
+                List<ServerLog> rows = session.createNamedSelectionQuery(ServerLog.EXPIRED, ServerLog.class)
+                        .setParameter("type", rule.type())
+                        .setParameter("cutoff", cutoff)
+                        .setMaxResults(batchSize)
+                        .list();
+                for (ServerLog row : rows) {
+                    ids.add(row.getId());
+                    lines.add(tsv(row.getId(), row.getTimestamp(), row.getLogType(), row.getMessage()));
+                }
+            }
+            if (!ids.isEmpty()) {
+                if (archiveDir != null) {
+                    archive(rule.message() ? "messages" : "server_logs", lines);
+                }
+                session.createNamedMutationQuery(rule.message() ? Message.DELETE_BY_IDS : ServerLog.DELETE_BY_IDS)
+                        .setParameterList("ids", ids)
+                        .executeUpdate();
+            }
+            return ids.size();
+        });
+        deleted.mark(count);
+        return count;
+    }
+
+    // Un membre gzip de plus dans l'archive du jour, sur disque avant la suppression
+    private void archive(String table, List<String> lines) throws IOException {
+        Files.createDirectories(archiveDir);
+        Path file = archiveDir.resolve(table + "-" + LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE) + ".tsv.gz");
+        try (FileOutputStream out = new FileOutputStream(file.toFile(), true)) {
+            GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+            writer.flush();
+            gzip.finish();
+            out.getChannel().force(true);
+            writer.close();
+        }
+    }
+
+    private static String tsv(Object... columns) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                line.append('\t');
+            }
+            if (columns[i] != null) {
+                String value = columns[i].toString();
+                for (int c = 0; c < value.length(); c++) {
+                    char ch = value.charAt(c);
+                    switch (ch) {
+                        case '\\' -> line.append("\\\\");
+                        case '\t' -> line.append("\\t");
+                        case '\n' -> line.append("\\n");
+                        case '\r' -> line.append("\\r");
+                        default -> line.append(ch);
+                    }
+                }
+            }
+        }
+        return line.toString();
+    }
+
+    boolean isOffPeak(LocalTime now) {
+        if (windowStart == null) {
+            return true;
+        }
+        return windowStart.isBefore(windowEnd)
+                ? !now.isBefore(windowStart) && now.isBefore(windowEnd)
+                : !now.isBefore(windowStart) || now.isBefore(windowEnd);
+    }
+
+    static List<Rule> parseRules(String value) {
+        List<Rule> rules = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split("=", 2);
+            if (parts.length != 2 || parts[0].isBlank()) {
+                continue;
+            }
+            try {
+                int days = Integer.parseInt(parts[1].trim());
+                String type = parts[0].trim().toUpperCase();
+                if (days > 0) {
+                    rules.add(new Rule(type, type.equals("PUBLIC") || type.equals("PRIVATE"), days));
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Règle de rétention invalide : " + entry.trim());
+            }
+        }
+        return rules;
+    }
+
+    // "02:00-05:00" -> {02:00, 05:00}, null si vide ou invalide (toute la journée)
+    private static LocalTime[] parseWindow(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        String[] parts = value.split("-", 2);
+        try {
+            if (parts.length == 2) {
+                LocalTime start = LocalTime.parse(parts[0].trim());
+                LocalTime end = LocalTime.parse(parts[1].trim());
+                return start.equals(end) ? null : new LocalTime[] { start, end };
+            }
+        } catch (DateTimeParseException ignored) {
+            // Message ci-dessous
+        }
+        System.err.println("Plage de rétention invalide : " + value + ", purge à toute heure");
+        return null;
+    }
+}
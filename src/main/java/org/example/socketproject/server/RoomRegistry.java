@@ -0,0 +1,123 @@
+package org.example.socketproject.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Salons de discussion. Chaque salon a son propre ensemble concurrent d'abonnés : un message
+ * coûte O(taille du salon), pas O(nombre de connexions).
+ * Le salon par défaut ("general") existe toujours et chaque client authentifié y est abonné ;
+ * les autres sont créés au premier /join et supprimés quand le dernier abonné les quitte.
+ */
+public class RoomRegistry {
+    public static final String DEFAULT_ROOM = HistoryCache.DEFAULT_CHANNEL;
+    private static final Pattern VALID_NAME = Pattern.compile("[a-z0-9_-]{1,30}");
+
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final int maxRooms;
+
+    public RoomRegistry() {
+        this.maxRooms = Math.max(1, ServerConfig.getInt(ServerConfig.ROOMS_MAX, 1000));
+        rooms.put(DEFAULT_ROOM, new Room(DEFAULT_ROOM));
+    }
+
+    public static final class Room {
+        private final String name;
+        // Abonné -> dernier message de l'historique qui lui a été rejoué (les suivants lui sont diffusés)
+        private final Map<ClientConnection, Long> members = new ConcurrentHashMap<>();
+
+        Room(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int size() {
+            return members.size();
+        }
+
+        public Set<Map.Entry<ClientConnection, Long>> members() {
+            return members.entrySet();
+        }
+
+        public List<String> usernames() {
+            List<String> names = new ArrayList<>(members.size());
+            for (ClientConnection member : members.keySet()) {
+                names.add(member.getUsername());
+            }
+            return names;
+        }
+    }
+
+    /**
+     * Nom de salon normalisé (minuscules, "#" initial accepté), ou null s'il est invalide.
+     */
+    public static String normalize(String name) {
+        if (name == null) {
+            return null;
+        }
+        String normalized = name.trim().toLowerCase(Locale.ROOT);
+        if (normalized.startsWith("#")) {
+            normalized = normalized.substring(1);
+        }
+        return VALID_NAME.matcher(normalized).matches() ? normalized : null;
+    }
+
+    // Ligne telle que diffusée : les messages des autres salons sont préfixés par leur nom
+    public static String format(String room, String text) {
+        return room == null || DEFAULT_ROOM.equals(room) ? text : "[" + room + "] " + text;
+    }
+
+    public Room get(String name) {
+        return rooms.get(name);
+    }
+
+    public Collection<Room> list() {
+        return rooms.values();
+    }
+
+    public boolean canCreate(String name) {
+        return rooms.containsKey(name) || rooms.size() < maxRooms;
+    }
+
+    /**
+     * Abonne le client (création du salon si besoin). Retourne false si le nombre maximal de
+     * salons (chat.rooms.max) est atteint.
+     */
+    public boolean subscribe(String name, ClientConnection client, long replayedSeq) {
+        boolean[] subscribed = {false};
+        rooms.compute(name, (key, room) -> {
+            if (room == null) {
+                if (rooms.size() >= maxRooms) {
+                    return null;
+                }
+                room = new Room(key);
+            }
+            room.members.put(client, replayedSeq);
+            subscribed[0] = true;
+            return room;
+        });
+        return subscribed[0];
+    }
+
+    /**
+     * Désabonne le client ; un salon vide (autre que le salon par défaut) est supprimé.
+     * Retourne true si le client était abonné.
+     */
+    public boolean unsubscribe(String name, ClientConnection client) {
+        boolean[] removed = {false};
+        rooms.computeIfPresent(name, (key, room) -> {
+            removed[0] = room.members.remove(client) != null;
+            return room.members.isEmpty() && !DEFAULT_ROOM.equals(key) ? null : room;
+        });
+        return removed[0];
+    }
+}
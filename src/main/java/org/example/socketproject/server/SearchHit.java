@@ -0,0 +1,12 @@
+package org.example.socketproject.server;
+
+/**
+ * Message trouvé par SearchIndex. id : numéro du message dans l'index (croissant avec le temps,
+ * distinct de l'id en base) ; recipient null pour un message public, room null pour un message privé.
+ */
+public record SearchHit(int id, long epochMillis, String sender, String recipient, String room, String text) {
+
+    public boolean isPrivate() {
+        return recipient != null;
+    }
+}
@@ -0,0 +1,500 @@
+package org.example.socketproject.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Index plein texte des messages (public et privés), alimenté par ChatLogger.logMessage :
+ * la recherche (/search) ne touche jamais la base.
+ *
+ * Un thread d'indexation prend les messages dans une file bornée (un message est abandonné si
+ * elle est pleine) et les ajoute au segment vivant, en mémoire. Toutes les
+ * chat.search.flushDocs entrées, ou au plus tard après chat.search.flushIntervalMs, le segment
+ * vivant est écrit dans un fichier immuable (SearchSegment) mappé en mémoire. Quand il y a plus
+ * de chat.search.maxSegments fichiers, un thread de fusion réunit les MERGE_FACTOR segments
+ * consécutifs les plus petits ; les lecteurs continuent sur l'ancienne liste pendant ce temps.
+ *
+ * Les messages sont numérotés dans l'ordre d'arrivée : les résultats sont classés du plus récent
+ * au plus ancien en parcourant le segment vivant puis les fichiers, du dernier au premier.
+ * Les messages du segment vivant sont perdus si le processus s'arrête sans ChatLogger.close().
+ *
+ * Rétention : RetentionService transmet ses dates limites (expire) ; un message public ou privé
+ * plus ancien que celle de son type n'est plus retourné, et les premiers fichiers dont tous les
+ * messages ont dépassé la plus longue des deux durées sont supprimés par le thread de fusion.
+ * Un fichier en partie expiré est conservé tel quel jusqu'à ce que tous ses messages le soient.
+ */
+public class SearchIndex {
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".idx";
+    private static final int MERGE_FACTOR = 4;
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final int MAX_TERM_CHARS = 40;
+
+    private final Path directory;
+    private final int flushDocs;
+    private final long flushIntervalMs;
+    private final int maxSegments;
+    private final BlockingQueue<Object> queue;
+    private final Thread indexer;
+    private final ExecutorService merger;
+    private final AtomicBoolean mergeScheduled = new AtomicBoolean(false);
+    private final AtomicLong generation = new AtomicLong();
+
+    // Segments sur disque et segment vivant, remplacés ensemble (sous stateLock) : un lecteur
+    // ne voit jamais un message deux fois, ni pas du tout
+    private record State(List<SearchSegment> segments, LiveSegment live) {
+    }
+
+    private final Object stateLock = new Object();
+    private volatile State state;
+
+    // Fichiers remplacés par une fusion, encore mappés (Windows) : supprimés plus tard
+    private final List<Path> pendingDeletes = new ArrayList<>();
+
+    // Dates limites de la rétention (epochMillis) par type de message, Long.MIN_VALUE : sans limite
+    private volatile long publicCutoffMillis = Long.MIN_VALUE;
+    private volatile long privateCutoffMillis = Long.MIN_VALUE;
+
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Marqueur déposé dans la file par flush() : signalé une fois le segment vivant écrit
+    private static final class FlushMarker {
+        final CountDownLatch done = new CountDownLatch(1);
+    }
+
+    /**
+     * Segment en mémoire, rempli par le thread d'indexation ; les lecteurs prennent le verrou
+     * en lecture le temps de copier des postings ou de lire un message.
+     */
+    private static final class LiveSegment {
+        final int firstDoc;
+        final List<SearchHit> docs = new ArrayList<>();
+        final Map<String, SearchSegment.IntList> postings = new HashMap<>();
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        LiveSegment(int firstDoc) {
+            this.firstDoc = firstDoc;
+        }
+
+        int[] postings(String term) {
+            lock.readLock().lock();
+            try {
+                SearchSegment.IntList docs = postings.get(term);
+                return docs == null ? null : docs.toArray();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        SearchHit document(int doc) {
+            lock.readLock().lock();
+            try {
+                return docs.get(doc - firstDoc);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    public SearchIndex() throws IOException {
+        this.directory = Paths.get(ServerConfig.getString(ServerConfig.SEARCH_DIR, "search-index"));
+        this.flushDocs = Math.max(1, ServerConfig.getInt(ServerConfig.SEARCH_FLUSH_DOCS, 5000));
+        this.flushIntervalMs = Math.max(10, ServerConfig.getLong(ServerConfig.SEARCH_FLUSH_INTERVAL_MS, 10_000));
+        this.maxSegments = Math.max(MERGE_FACTOR, ServerConfig.getInt(ServerConfig.SEARCH_MAX_SEGMENTS, 8));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, ServerConfig.getInt(ServerConfig.LOG_QUEUE_CAPACITY, 10_000)));
+        List<SearchSegment> segments = loadSegments();
+        int nextDoc = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).lastDoc() + 1;
+        this.state = new State(segments, new LiveSegment(nextDoc));
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("chat_search_documents", "Messages dans l'index de recherche", () -> state.live.firstDoc + state.live.docs.size());
+        metrics.gauge("chat_search_segments", "Fichiers de l'index de recherche", () -> state.segments.size());
+
+        merger = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-search-merge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        indexer = new Thread(this::runIndexer, "chat-search-indexer");
+        indexer.setDaemon(true);
+        indexer.start();
+        scheduleMergeIfNeeded();
+    }
+
+    // Segments existants, triés ; un segment contenu dans un autre (fusion interrompue) est supprimé
+    private List<SearchSegment> loadSegments() throws IOException {
+        Files.createDirectories(directory);
+        List<SearchSegment> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        found.add(SearchSegment.open(file));
+                        String[] parts = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()).split("-");
+                        generation.accumulateAndGet(Long.parseLong(parts[1]), Math::max);
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("Index de recherche : " + name + " ignoré : " + e.getMessage());
+                    }
+                }
+            }
+        }
+        found.sort(Comparator.comparingInt((SearchSegment segment) -> segment.firstDoc)
+                .thenComparing(Comparator.comparingInt((SearchSegment segment) -> segment.docCount).reversed()));
+        List<SearchSegment> segments = new ArrayList<>();
+        for (SearchSegment segment : found) {
+            if (!segments.isEmpty() && segment.lastDoc() <= segments.get(segments.size() - 1).lastDoc()) {
+                Files.deleteIfExists(segment.path);
+                continue;
+            }
+            segments.add(segment);
+        }
+        return List.copyOf(segments);
+    }
+
+    /**
+     * Dépose un message à indexer ; ne bloque jamais (le message est abandonné si la file est pleine).
+     */
+    public void submit(Message message) {
+        if (!queue.offer(message)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Écrit le segment vivant sur disque (arrêt du serveur). Retourne false si le délai est dépassé.
+     */
+    public boolean flush(long timeoutMs) {
+        FlushMarker marker = new FlushMarker();
+        try {
+            return queue.offer(marker, timeoutMs, TimeUnit.MILLISECONDS)
+                    && marker.done.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Applique la rétention des messages (RetentionService) : les messages publics antérieurs à
+     * publicCutoff et les messages privés antérieurs à privateCutoff (epochMillis, Long.MIN_VALUE :
+     * sans limite) ne sont plus retournés ; les fichiers expirés sont supprimés en arrière-plan.
+     */
+    public void expire(long publicCutoff, long privateCutoff) {
+        publicCutoffMillis = publicCutoff;
+        privateCutoffMillis = privateCutoff;
+        long cutoff = Math.min(publicCutoff, privateCutoff);
+        if (cutoff != Long.MIN_VALUE) {
+            merger.execute(() -> dropExpired(cutoff));
+        }
+    }
+
+    /**
+     * Messages qui contiennent tous les termes de la requête, du plus récent au plus ancien :
+     * au plus limit messages non expirés acceptés par visible, de numéro inférieur à beforeId.
+     */
+    public List<SearchHit> search(String query, int beforeId, int limit, Predicate<SearchHit> visible) {
+        List<String> terms = terms(query);
+        List<SearchHit> hits = new ArrayList<>();
+        if (terms.isEmpty() || limit <= 0) {
+            return hits;
+        }
+        long publicCutoff = publicCutoffMillis;
+        long privateCutoff = privateCutoffMillis;
+        Predicate<SearchHit> accepted = hit -> hit.epochMillis() >= (hit.isPrivate() ? privateCutoff : publicCutoff)
+                && visible.test(hit);
+        State current = state;
+        LiveSegment live = current.live;
+        if (live.firstDoc < beforeId) {
+            int[][] postings = new int[terms.size()][];
+            for (int i = 0; i < postings.length; i++) {
+                postings[i] = live.postings(terms.get(i));
+            }
+            collect(intersect(postings), beforeId, limit, accepted, hits, live::document);
+        }
+        byte[][] keys = new byte[terms.size()][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = terms.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        for (int s = current.segments.size() - 1; s >= 0 && hits.size() < limit; s--) {
+            SearchSegment segment = current.segments.get(s);
+            if (segment.firstDoc >= beforeId) {
+                continue;
+            }
+            int[][] postings = new int[keys.length][];
+            for (int i = 0; i < keys.length; i++) {
+                postings[i] = segment.postings(keys[i]);
+            }
+            collect(intersect(postings), beforeId, limit, accepted, hits, segment::document);
+        }
+        return hits;
+    }
+
+    private static void collect(int[] docs, int beforeId, int limit, Predicate<SearchHit> visible,
+                                List<SearchHit> hits, IntFunction<SearchHit> documents) {
+        for (int i = docs.length - 1; i >= 0 && hits.size() < limit; i--) {
+            if (docs[i] >= beforeId) {
+                continue;
+            }
+            SearchHit hit = documents.apply(docs[i]);
+            if (visible.test(hit)) {
+                hits.add(hit);
+            }
+        }
+    }
+
+    // Intersection de listes croissantes, la plus courte d'abord ; vide si un terme est absent
+    private static int[] intersect(int[][] postings) {
+        for (int[] docs : postings) {
+            if (docs == null) {
+                return new int[0];
+            }
+        }
+        Arrays.sort(postings, Comparator.comparingInt(docs -> docs.length));
+        int[] result = postings[0];
+        for (int p = 1; p < postings.length && result.length > 0; p++) {
+            int[] other = postings[p];
+            int[] next = new int[result.length];
+            int size = 0;
+            int j = 0;
+            for (int doc : result) {
+                while (j < other.length && other[j] < doc) {
+                    j++;
+                }
+                if (j < other.length && other[j] == doc) {
+                    next[size++] = doc;
+                }
+            }
+            result = Arrays.copyOf(next, size);
+        }
+        return result;
+    }
+
+    /**
+     * Termes d'un texte : minuscules sans accents, découpés sur tout ce qui n'est ni lettre ni
+     * chiffre, sans doublon ; les termes d'un seul caractère sont ignorés.
+     */
+    public static List<String> terms(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        String normalized = MARKS.matcher(Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD)).replaceAll("");
+        Set<String> terms = new LinkedHashSet<>();
+        for (String term : NON_WORD.split(normalized)) {
+            if (term.length() > 1) {
+                terms.add(term.length() > MAX_TERM_CHARS ? term.substring(0, MAX_TERM_CHARS) : term);
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    private void runIndexer() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (true) {
+            try {
+                Object next = queue.poll(Math.max(1, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (next instanceof Message message) {
+                    add(message);
+                } else if (next instanceof FlushMarker marker) {
+                    flushLive();
+                    marker.done.countDown();
+                }
+                LiveSegment live = state.live;
+                boolean due = System.nanoTime() - deadline >= 0;
+                if (live.docs.size() >= flushDocs || (due && !live.docs.isEmpty())) {
+                    flushLive();
+                }
+                if (due || live != state.live) {
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Erreur du thread d'indexation : " + e.getMessage());
+            }
+        }
+    }
+
+    private void add(Message message) {
+        String text = message.getMessage();
+        String room = null;
+        String recipient = null;
+        if ("PRIVATE".equals(message.getMessageType())) {
+            recipient = message.getRecipientUsername();
+        } else {
+            // Les messages publics sont enregistrés tels que diffusés ("alice: bonjour")
+            String prefix = message.getUsername() + ": ";
+            if (text.startsWith(prefix)) {
+                text = text.substring(prefix.length());
+            }
+            room = message.getRoom() != null ? message.getRoom() : RoomRegistry.DEFAULT_ROOM;
+        }
+        long epochMillis = message.getTimestamp() == null ? System.currentTimeMillis()
+                : message.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        LiveSegment live = state.live;
+        int doc = live.firstDoc + live.docs.size();
+        SearchHit hit = new SearchHit(doc, epochMillis, message.getUsername(), recipient, room, text);
+        List<String> terms = terms(text);
+        live.lock.writeLock().lock();
+        try {
+            live.docs.add(hit);
+            for (String term : terms) {
+                live.postings.computeIfAbsent(term, key -> new SearchSegment.IntList()).add(doc);
+            }
+        } finally {
+            live.lock.writeLock().unlock();
+        }
+        indexed.incrementAndGet();
+    }
+
+    // Thread d'indexation : écrit le segment vivant et en commence un nouveau
+    private void flushLive() {
+        LiveSegment full = state.live;
+        if (full.docs.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<byte[], int[]>> terms = new ArrayList<>(full.postings.size());
+        for (Map.Entry<String, SearchSegment.IntList> entry : full.postings.entrySet()) {
+            terms.add(Map.entry(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue().toArray()));
+        }
+        terms.sort((a, b) -> Arrays.compareUnsigned(a.getKey(), b.getKey()));
+        SearchSegment segment;
+        try {
+            segment = SearchSegment.write(segmentPath(full.firstDoc), full.firstDoc, full.docs, terms);
+        } catch (IOException e) {
+            // Le segment vivant reste en mémoire : nouvel essai au prochain intervalle
+            ChatLogger.getInstance().logError("Index de recherche : écriture d'un segment impossible : " + e.getMessage());
+            return;
+        }
+        synchronized (stateLock) {
+            List<SearchSegment> segments = new ArrayList<>(state.segments);
+            segments.add(segment);
+            state = new State(List.copyOf(segments), new LiveSegment(segment.lastDoc() + 1));
+        }
+        scheduleMergeIfNeeded();
+    }
+
+    private void scheduleMergeIfNeeded() {
+        if (state.segments.size() > maxSegments && mergeScheduled.compareAndSet(false, true)) {
+            merger.execute(this::mergeSegments);
+        }
+    }
+
+    // Thread de fusion : réunit les MERGE_FACTOR segments consécutifs les plus petits
+    private void mergeSegments() {
+        try {
+            while (state.segments.size() > maxSegments) {
+                List<SearchSegment> segments = state.segments;
+                int best = 0;
+                long bestBytes = Long.MAX_VALUE;
+                for (int i = 0; i + MERGE_FACTOR <= segments.size(); i++) {
+                    long bytes = 0;
+                    for (int j = i; j < i + MERGE_FACTOR; j++) {
+                        bytes += segments.get(j).sizeBytes();
+                    }
+                    if (bytes < bestBytes) {
+                        best = i;
+                        bestBytes = bytes;
+                    }
+                }
+                List<SearchSegment> window = List.copyOf(segments.subList(best, best + MERGE_FACTOR));
+                SearchSegment merged = SearchSegment.merge(segmentPath(window.get(0).firstDoc), window);
+                synchronized (stateLock) {
+                    // Les écritures du segment vivant n'ont pu qu'ajouter des segments à la fin
+                    List<SearchSegment> updated = new ArrayList<>(state.segments);
+                    int start = updated.indexOf(window.get(0));
+                    updated.subList(start, start + MERGE_FACTOR).clear();
+                    updated.add(start, merged);
+                    state = new State(List.copyOf(updated), state.live);
+                }
+                for (SearchSegment old : window) {
+                    pendingDeletes.add(old.path);
+                }
+                retryDeletes();
+            }
+        } catch (IOException | RuntimeException e) {
+            ChatLogger.getInstance().logError("Index de recherche : fusion impossible : " + e.getMessage());
+        } finally {
+            mergeScheduled.set(false);
+        }
+    }
+
+    // Thread de fusion : retire les premiers fichiers dont le message le plus récent précède cutoff
+    // (seulement en tête de liste : les fichiers restants couvrent toujours des numéros consécutifs)
+    private void dropExpired(long cutoff) {
+        try {
+            List<SearchSegment> segments = state.segments;
+            int expired = 0;
+            while (expired < segments.size() && segments.get(expired).newestMillis() < cutoff) {
+                expired++;
+            }
+            if (expired == 0) {
+                return;
+            }
+            synchronized (stateLock) {
+                // Les écritures du segment vivant n'ont pu qu'ajouter des segments à la fin
+                List<SearchSegment> updated = new ArrayList<>(state.segments);
+                updated.subList(0, expired).clear();
+                state = new State(List.copyOf(updated), state.live);
+            }
+            for (SearchSegment old : segments.subList(0, expired)) {
+                pendingDeletes.add(old.path);
+            }
+            retryDeletes();
+        } catch (RuntimeException e) {
+            ChatLogger.getInstance().logError("Index de recherche : purge impossible : " + e.getMessage());
+        }
+    }
+
+    // Sous Windows, un fichier encore mappé ne peut pas être supprimé : réessayer à la fusion suivante
+    private void retryDeletes() {
+        pendingDeletes.removeIf(path -> {
+            try {
+                Files.deleteIfExists(path);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+
+    private Path segmentPath(int firstDoc) {
+        return directory.resolve(String.format("%s%010d-%06d%s", SEGMENT_PREFIX, firstDoc, generation.incrementAndGet(), SEGMENT_SUFFIX));
+    }
+
+    public long getIndexedCount() { return indexed.get(); }
+    public long getDroppedCount() { return dropped.get(); }
+    public int getSegmentCount() { return state.segments.size(); }
+}
@@ -0,0 +1,395 @@
+package org.example.socketproject.server;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Segment immuable de l'index de recherche (SearchIndex), mappé en mémoire en lecture seule.
+ * Il couvre les messages firstDoc .. firstDoc + docCount - 1, sans trou.
+ *
+ * Fichier :
+ *   en-tête        : MAGIC | firstDoc | docCount | termCount | début de la table des messages |
+ *                    début de la table des termes (6 int)
+ *   messages       : epochMillis (long) | expéditeur | destinataire | salon | texte
+ *                    (chaque chaîne : varint longueur + 1, 0 pour null, puis UTF-8)
+ *   table messages : position de chaque message (int)
+ *   termes         : varint longueur | terme UTF-8 | varint nombre de messages |
+ *                    varint taille des postings | postings
+ *   table termes   : position de chaque terme (int), termes triés par octets UTF-8
+ * Postings : numéros de messages croissants, codés en varint par écart (le premier par rapport
+ * à firstDoc).
+ *
+ * Un segment est écrit dans un fichier temporaire puis renommé : un fichier seg-*.idx est
+ * toujours complet.
+ */
+final class SearchSegment {
+    private static final int MAGIC = 0x43485358;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES;
+
+    final Path path;
+    final int firstDoc;
+    final int docCount;
+    private final int termCount;
+    private final int docTableOffset;
+    private final int termTableOffset;
+    private final MappedByteBuffer buffer;
+
+    private SearchSegment(Path path, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("segment d'index invalide : " + path.getFileName());
+        }
+        this.firstDoc = buffer.getInt(4);
+        this.docCount = buffer.getInt(8);
+        this.termCount = buffer.getInt(12);
+        this.docTableOffset = buffer.getInt(16);
+        this.termTableOffset = buffer.getInt(20);
+    }
+
+    static SearchSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Le mappage reste valable après la fermeture du canal
+            return new SearchSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    int lastDoc() {
+        return firstDoc + docCount - 1;
+    }
+
+    long sizeBytes() {
+        return buffer.capacity();
+    }
+
+    // Date du message le plus récent du segment (epochMillis)
+    long newestMillis() {
+        long newest = Long.MIN_VALUE;
+        for (int i = 0; i < docCount; i++) {
+            newest = Math.max(newest, buffer.getLong(buffer.getInt(docTableOffset + i * Integer.BYTES)));
+        }
+        return newest;
+    }
+
+    // Numéros des messages qui contiennent le terme (croissants), null s'il est absent
+    int[] postings(byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = buffer.getInt(termTableOffset + middle * Integer.BYTES);
+            int[] position = {offset};
+            int length = getVarint(position);
+            int comparison = Arrays.compareUnsigned(
+                    bytesAt(position[0], length), 0, length, term, 0, term.length);
+            if (comparison == 0) {
+                position[0] += length;
+                return readPostings(position);
+            }
+            if (comparison < 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return null;
+    }
+
+    SearchHit document(int doc) {
+        int[] position = {buffer.getInt(docTableOffset + (doc - firstDoc) * Integer.BYTES)};
+        long epochMillis = buffer.getLong(position[0]);
+        position[0] += Long.BYTES;
+        return new SearchHit(doc, epochMillis, getString(position), getString(position), getString(position), getString(position));
+    }
+
+    private int[] readPostings(int[] position) {
+        int count = getVarint(position);
+        getVarint(position);
+        int[] docs = new int[count];
+        int previous = firstDoc;
+        for (int i = 0; i < count; i++) {
+            previous += getVarint(position);
+            docs[i] = previous;
+        }
+        return docs;
+    }
+
+    private byte[] bytesAt(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return bytes;
+    }
+
+    private int getVarint(int[] position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get(position[0]++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private String getString(int[] position) {
+        int length = getVarint(position) - 1;
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(bytesAt(position[0], length), StandardCharsets.UTF_8);
+        position[0] += length;
+        return value;
+    }
+
+    /**
+     * Écrit un segment à partir des messages firstDoc.. (dans l'ordre) et de leurs termes,
+     * triés par octets UTF-8 (postings croissants).
+     */
+    static SearchSegment write(Path target, int firstDoc, List<SearchHit> docs, List<Map.Entry<byte[], int[]>> terms)
+            throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (SegmentWriter writer = new SegmentWriter(temporary)) {
+            int[] docOffsets = new int[docs.size()];
+            for (int i = 0; i < docOffsets.length; i++) {
+                docOffsets[i] = writer.position();
+                SearchHit doc = docs.get(i);
+                writer.writeLong(doc.epochMillis());
+                writer.writeString(doc.sender());
+                writer.writeString(doc.recipient());
+                writer.writeString(doc.room());
+                writer.writeString(doc.text());
+            }
+            int docTable = writer.writeTable(docOffsets);
+            int[] termOffsets = new int[terms.size()];
+            for (int i = 0; i < termOffsets.length; i++) {
+                termOffsets[i] = writer.position();
+                writer.writeTerm(terms.get(i).getKey(), terms.get(i).getValue(), firstDoc);
+            }
+            int termTable = writer.writeTable(termOffsets);
+            writer.finish(firstDoc, docs.size(), terms.size(), docTable, termTable);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return open(target);
+    }
+
+    /**
+     * Fusionne des segments consécutifs (dans l'ordre des numéros de messages) en un seul :
+     * les messages sont recopiés tels quels, les postings d'un même terme mis bout à bout.
+     */
+    static SearchSegment merge(Path target, List<SearchSegment> segments) throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        int firstDoc = segments.get(0).firstDoc;
+        int docCount = 0;
+        for (SearchSegment segment : segments) {
+            docCount += segment.docCount;
+        }
+        try (SegmentWriter writer = new SegmentWriter(temporary)) {
+            int[] docOffsets = new int[docCount];
+            int doc = 0;
+            for (SearchSegment segment : segments) {
+                int shift = writer.position() - HEADER_BYTES;
+                ByteBuffer records = segment.buffer.slice(HEADER_BYTES, segment.docTableOffset - HEADER_BYTES);
+                writer.write(records);
+                for (int i = 0; i < segment.docCount; i++) {
+                    docOffsets[doc++] = segment.buffer.getInt(segment.docTableOffset + i * Integer.BYTES) + shift;
+                }
+            }
+            int docTable = writer.writeTable(docOffsets);
+
+            // Fusion des dictionnaires triés : un curseur par segment
+            int[] cursors = new int[segments.size()];
+            byte[][] current = new byte[segments.size()][];
+            for (int s = 0; s < segments.size(); s++) {
+                current[s] = segments.get(s).termAt(0);
+            }
+            IntList termOffsets = new IntList();
+            while (true) {
+                byte[] smallest = null;
+                for (byte[] term : current) {
+                    if (term != null && (smallest == null || Arrays.compareUnsigned(term, smallest) < 0)) {
+                        smallest = term;
+                    }
+                }
+                if (smallest == null) {
+                    break;
+                }
+                IntList merged = new IntList();
+                for (int s = 0; s < segments.size(); s++) {
+                    if (current[s] != null && Arrays.equals(current[s], smallest)) {
+                        SearchSegment segment = segments.get(s);
+                        int[] position = {segment.buffer.getInt(segment.termTableOffset + cursors[s] * Integer.BYTES)};
+                        int length = segment.getVarint(position);
+                        position[0] += length;
+                        merged.addAll(segment.readPostings(position));
+                        cursors[s]++;
+                        current[s] = segment.termAt(cursors[s]);
+                    }
+                }
+                termOffsets.add(writer.position());
+                writer.writeTerm(smallest, merged.toArray(), firstDoc);
+            }
+            int termTable = writer.writeTable(termOffsets.toArray());
+            writer.finish(firstDoc, docCount, termOffsets.size(), docTable, termTable);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return open(target);
+    }
+
+    // Terme d'indice index dans le dictionnaire, null au-delà du dernier
+    private byte[] termAt(int index) {
+        if (index >= termCount) {
+            return null;
+        }
+        int[] position = {buffer.getInt(termTableOffset + index * Integer.BYTES)};
+        int length = getVarint(position);
+        return bytesAt(position[0], length);
+    }
+
+    // Tableau d'int extensible (postings en construction)
+    static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(int[] more) {
+            if (size + more.length > values.length) {
+                values = Arrays.copyOf(values, Math.max(size * 2, size + more.length));
+            }
+            System.arraycopy(more, 0, values, size, more.length);
+            size += more.length;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    // Écriture séquentielle d'un segment ; l'en-tête est écrit en dernier, à sa place
+    private static final class SegmentWriter implements Closeable {
+        private final FileChannel channel;
+        private final OutputStream out;
+        private final byte[] scratch = new byte[Long.BYTES];
+        private long position = HEADER_BYTES;
+
+        SegmentWriter(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            channel.position(HEADER_BYTES);
+            out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+        }
+
+        int position() throws IOException {
+            if (position > Integer.MAX_VALUE) {
+                throw new IOException("segment d'index de plus de 2 Go");
+            }
+            return (int) position;
+        }
+
+        void write(ByteBuffer bytes) throws IOException {
+            byte[] copy = new byte[bytes.remaining()];
+            bytes.get(copy);
+            write(copy);
+        }
+
+        void write(byte[] bytes) throws IOException {
+            out.write(bytes);
+            position += bytes.length;
+        }
+
+        void writeLong(long value) throws IOException {
+            ByteBuffer.wrap(scratch).putLong(value);
+            out.write(scratch, 0, Long.BYTES);
+            position += Long.BYTES;
+        }
+
+        void writeInt(int value) throws IOException {
+            ByteBuffer.wrap(scratch).putInt(value);
+            out.write(scratch, 0, Integer.BYTES);
+            position += Integer.BYTES;
+        }
+
+        void writeVarint(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+                position++;
+            }
+            out.write(value);
+            position++;
+        }
+
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1);
+            write(bytes);
+        }
+
+        void writeTerm(byte[] term, int[] docs, int firstDoc) throws IOException {
+            writeVarint(term.length);
+            write(term);
+            writeVarint(docs.length);
+            int size = 0;
+            int previous = firstDoc;
+            for (int doc : docs) {
+                size += BinaryProtocol.varintSize(doc - previous);
+                previous = doc;
+            }
+            writeVarint(size);
+            previous = firstDoc;
+            for (int doc : docs) {
+                writeVarint(doc - previous);
+                previous = doc;
+            }
+        }
+
+        // Table de positions ; retourne sa propre position
+        int writeTable(int[] offsets) throws IOException {
+            int start = position();
+            for (int offset : offsets) {
+                writeInt(offset);
+            }
+            return start;
+        }
+
+        void finish(int firstDoc, int docCount, int termCount, int docTable, int termTable) throws IOException {
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(firstDoc).putInt(docCount).putInt(termCount).putInt(docTable).putInt(termTable).flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.example.socketproject.server;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recherche plein texte (/search termes) dans l'index du nœud (SearchIndex), sans requête SQL :
+ * messages contenant tous les termes, du plus récent au plus ancien, limités à ce que le client
+ * peut lire (salons auxquels il est abonné, conversations privées dont il fait partie).
+ *
+ * Réponse :
+ *   SEARCH_BEGIN:termes
+ *   SEARCH:id:epochMillis:expéditeur:destinataire:salon:texte   (destinataire vide pour un message public,
+ *                                                               salon vide pour un message privé)
+ *   SEARCH_END:nombre de résultats
+ * Les id sont ceux de l'index, pas ceux de la base.
+ */
+public class SearchService {
+    public static final String USAGE = "❌ Usage : /search <termes>";
+
+    private final int maxResults;
+    private final ThreadPoolExecutor executor;
+
+    public SearchService() {
+        this.maxResults = Math.max(1, ServerConfig.getInt(ServerConfig.SEARCH_MAX_RESULTS, 20));
+        int threads = Math.max(1, ServerConfig.getInt(ServerConfig.SEARCH_QUERY_THREADS, 2));
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, ServerConfig.getInt(ServerConfig.SEARCH_MAX_PENDING, 64))),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "search-query");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Traite les arguments de /search pour le client (authentifié) ; la réponse est envoyée
+     * plus tard, depuis le pool de requêtes.
+     */
+    public void handle(ClientConnection client, String arguments) {
+        if (SearchIndex.terms(arguments).isEmpty()) {
+            client.sendMessage(USAGE);
+            return;
+        }
+        if (ChatLogger.getInstance().getSearchIndex() == null) {
+            client.sendMessage("SEARCH_ERROR:Recherche désactivée");
+            return;
+        }
+        try {
+            executor.execute(() -> sendResults(client, arguments));
+        } catch (RejectedExecutionException e) {
+            client.sendMessage("SEARCH_ERROR:Serveur occupé, réessayez plus tard");
+        }
+    }
+
+    /**
+     * API côté serveur : messages visibles par le client qui contiennent tous les termes,
+     * du plus récent au plus ancien (vide si la recherche est désactivée).
+     */
+    public List<SearchHit> search(ClientConnection client, String query, int limit) {
+        SearchIndex index = ChatLogger.getInstance().getSearchIndex();
+        if (index == null) {
+            return List.of();
+        }
+        String me = client.getUsername();
+        return index.search(query, Integer.MAX_VALUE, limit, hit -> hit.isPrivate()
+                ? me.equals(hit.sender()) || me.equals(hit.recipient())
+                : client.isInRoom(hit.room()));
+    }
+
+    private void sendResults(ClientConnection client, String query) {
+        if (client.isDisconnected()) {
+            return;
+        }
+        try {
+            List<SearchHit> hits = search(client, query, maxResults);
+            client.sendMessage("SEARCH_BEGIN:" + query);
+            for (SearchHit hit : hits) {
+                client.sendMessage(format(hit));
+            }
+            client.sendMessage("SEARCH_END:" + hits.size());
+        } catch (RuntimeException e) {
+            ChatLogger.getInstance().logError("Erreur lors de la recherche pour " + client.getUsername() + " : " + e.getMessage());
+            client.sendMessage("SEARCH_ERROR:Recherche indisponible");
+        }
+    }
+
+    // SEARCH:id:epochMillis:expéditeur:destinataire:salon:texte
+    private static String format(SearchHit hit) {
+        return "SEARCH:" + hit.id() + ":" + hit.epochMillis() + ":" + hit.sender() + ":"
+                + (hit.recipient() == null ? "" : hit.recipient()) + ":"
+                + (hit.room() == null ? "" : hit.room()) + ":" + Frame.singleLine(hit.text());
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,221 @@
+package org.example.socketproject.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Options de démarrage du serveur.
+ * Chaque option est lue depuis une propriété système (-Dchat.xxx=valeur) ;
+ * ServerMain accepte aussi la forme --xxx=valeur sur la ligne de commande.
+ */
+public final class ServerConfig {
+    public static final String PREFIX = "chat.";
+
+    // Mode de transport : "blocking" (un thread par client) ou "nio" (boucles Selector)
+    public static final String TRANSPORT = PREFIX + "transport";
+    // Fichier de configuration Hibernate (ressource du classpath), ex. une base H2 pour les benchmarks
+    public static final String HIBERNATE_CONFIG = PREFIX + "hibernate.config";
+    // Threads du mode bloquant : "platform" (pool de threads système) ou "virtual" (un thread virtuel par client)
+    public static final String THREADS = PREFIX + "threads";
+    // Nombre de boucles d'E/S en mode NIO (par défaut : une par cœur)
+    public static final String NIO_IO_THREADS = PREFIX + "nio.ioThreads";
+    // Nombre de threads qui traitent les lignes reçues en mode NIO (authentification, commandes)
+    public static final String NIO_WORKER_THREADS = PREFIX + "nio.workerThreads";
+    // Taille maximale d'une ligne reçue en mode NIO, en octets
+    public static final String NIO_MAX_LINE_BYTES = PREFIX + "nio.maxLineBytes";
+
+    // Stockage (LogStore, UserStore) : "hibernate" (défaut) ou nom complet d'une classe ;
+    // "journal" pour les logs : journal local en fichiers mappés, exporté en base en arrière-plan
+    public static final String STORAGE_LOGS = PREFIX + "storage.logs";
+    public static final String STORAGE_USERS = PREFIX + "storage.users";
+    // Journal des logs (JournalLogStore) : répertoire, taille d'un segment, intervalle entre deux
+    // fsync, intervalle et taille des lots d'export vers la base
+    public static final String JOURNAL_DIR = PREFIX + "journal.dir";
+    public static final String JOURNAL_SEGMENT_BYTES = PREFIX + "journal.segmentBytes";
+    public static final String JOURNAL_FSYNC_INTERVAL_MS = PREFIX + "journal.fsyncIntervalMs";
+    public static final String JOURNAL_EXPORT_INTERVAL_MS = PREFIX + "journal.exportIntervalMs";
+    public static final String JOURNAL_EXPORT_BATCH = PREFIX + "journal.exportBatch";
+
+    // Écriture différée des logs (AsyncLogWriter)
+    public static final String LOG_QUEUE_CAPACITY = PREFIX + "log.queueCapacity";
+    public static final String LOG_BATCH_SIZE = PREFIX + "log.batchSize";
+    public static final String LOG_FLUSH_INTERVAL_MS = PREFIX + "log.flushIntervalMs";
+    // "drop" : abandonner quand la file est pleine ; "block" : attendre au plus log.offerTimeoutMs
+    public static final String LOG_OVERFLOW = PREFIX + "log.overflow";
+    public static final String LOG_OFFER_TIMEOUT_MS = PREFIX + "log.offerTimeoutMs";
+    public static final String LOG_SHUTDOWN_FLUSH_MS = PREFIX + "log.shutdownFlushMs";
+
+    // File des messages sortants de chaque client (OutboundQueue)
+    // "coalesce" (défaut), "drop-oldest" ou "disconnect"
+    public static final String OUTBOUND_POLICY = PREFIX + "outbound.policy";
+    public static final String OUTBOUND_MAX_PENDING = PREFIX + "outbound.maxPending";
+
+    // Cache des identifiants de UserManager (CredentialCache)
+    public static final String AUTH_CACHE_MAX_ENTRIES = PREFIX + "auth.cache.maxEntries";
+    public static final String AUTH_CACHE_TTL_MS = PREFIX + "auth.cache.ttlMs";
+    public static final String AUTH_CACHE_NEGATIVE_TTL_MS = PREFIX + "auth.cache.negativeTtlMs";
+
+    // Contrôle d'admission des poignées de main (AdmissionController)
+    public static final String AUTH_WORKERS = PREFIX + "auth.workers";
+    public static final String AUTH_MAX_PENDING = PREFIX + "auth.maxPending";
+    public static final String AUTH_HANDSHAKE_TIMEOUT_MS = PREFIX + "auth.handshakeTimeoutMs";
+    // Tentatives de connexion par seconde et par IP (0 : pas de limite), et rafale autorisée
+    public static final String AUTH_RATE_PER_SECOND = PREFIX + "auth.ratePerSecond";
+    public static final String AUTH_RATE_BURST = PREFIX + "auth.rateBurst";
+
+    // Fenêtre de regroupement des arrivées/départs (PresenceBroadcaster), 0 : diffusion immédiate
+    public static final String PRESENCE_WINDOW_MS = PREFIX + "presence.windowMs";
+
+    // Nombre de messages rejoués à la connexion (HistoryCache), 0 : pas de rejeu
+    public static final String HISTORY_SIZE = PREFIX + "history.size";
+    // Commande /history (HistoryService) : taille de page par défaut et maximale, pool de requêtes
+    public static final String HISTORY_PAGE_SIZE = PREFIX + "history.pageSize";
+    public static final String HISTORY_MAX_PAGE_SIZE = PREFIX + "history.maxPageSize";
+    public static final String HISTORY_QUERY_THREADS = PREFIX + "history.queryThreads";
+    public static final String HISTORY_MAX_PENDING = PREFIX + "history.maxPending";
+
+    // Rétention des tables messages et server_logs (RetentionService) : activation (false par défaut),
+    // durées en jours par type ("EVENT=7,PUBLIC=365"), plage creuse ("02:00-05:00"), taille des lots
+    // de suppression et pause entre deux lots, fréquence de vérification, répertoire d'archive
+    // (vide : pas d'archive)
+    public static final String RETENTION_ENABLED = PREFIX + "retention.enabled";
+    public static final String RETENTION_RULES = PREFIX + "retention.rules";
+    public static final String RETENTION_WINDOW = PREFIX + "retention.window";
+    public static final String RETENTION_BATCH_SIZE = PREFIX + "retention.batchSize";
+    public static final String RETENTION_PAUSE_MS = PREFIX + "retention.pauseMs";
+    public static final String RETENTION_CHECK_INTERVAL_MS = PREFIX + "retention.checkIntervalMs";
+    public static final String RETENTION_ARCHIVE_DIR = PREFIX + "retention.archiveDir";
+
+    // Recherche plein texte (SearchIndex, /search) : activation, répertoire des segments, écriture du
+    // segment en mémoire (nombre de messages, intervalle), nombre de fichiers au-delà duquel ils sont
+    // fusionnés, résultats par recherche, pool de requêtes et recherches en attente
+    public static final String SEARCH_ENABLED = PREFIX + "search.enabled";
+    public static final String SEARCH_DIR = PREFIX + "search.dir";
+    public static final String SEARCH_FLUSH_DOCS = PREFIX + "search.flushDocs";
+    public static final String SEARCH_FLUSH_INTERVAL_MS = PREFIX + "search.flushIntervalMs";
+    public static final String SEARCH_MAX_SEGMENTS = PREFIX + "search.maxSegments";
+    public static final String SEARCH_MAX_RESULTS = PREFIX + "search.maxResults";
+    public static final String SEARCH_QUERY_THREADS = PREFIX + "search.queryThreads";
+    public static final String SEARCH_MAX_PENDING = PREFIX + "search.maxPending";
+
+    // Compression des trames sortantes (FrameCompressor, capacité "deflate") : taille en dessous de
+    // laquelle une trame part telle quelle, niveau de Deflater (1 : le plus rapide, 9 : le plus compact)
+    public static final String COMPRESSION_MIN_BYTES = PREFIX + "compression.minBytes";
+    public static final String COMPRESSION_LEVEL = PREFIX + "compression.level";
+
+    // Nombre maximal de salons ouverts en même temps (RoomRegistry)
+    public static final String ROOMS_MAX = PREFIX + "rooms.max";
+
+    // Grappe de serveurs (ClusterNode) : activée par chat.cluster.port (bus TCP) ou chat.cluster.bus
+    // Identifiant du nœud (défaut : node-<port du chat>), unique dans la grappe
+    public static final String CLUSTER_NODE_ID = PREFIX + "cluster.nodeId";
+    // "tcp" ou nom de classe d'une implémentation de ClusterBus
+    public static final String CLUSTER_BUS = PREFIX + "cluster.bus";
+    // Bus TCP : adresse d'écoute, autres nœuds (hôte:port,hôte:port), délai entre deux reconnexions,
+    // lignes en attente par nœud avant de couper le lien
+    public static final String CLUSTER_HOST = PREFIX + "cluster.host";
+    public static final String CLUSTER_PORT = PREFIX + "cluster.port";
+    public static final String CLUSTER_PEERS = PREFIX + "cluster.peers";
+    public static final String CLUSTER_RECONNECT_MS = PREFIX + "cluster.reconnectMs";
+    public static final String CLUSTER_MAX_PENDING = PREFIX + "cluster.maxPending";
+    // Attente maximale des réponses des autres nœuds lors de la réservation d'un pseudo
+    public static final String CLUSTER_CLAIM_TIMEOUT_MS = PREFIX + "cluster.claimTimeoutMs";
+
+    // Exposition des métriques (MetricsExporter) : HTTP local au format Prometheus, 0 : désactivé
+    public static final String METRICS_HOST = PREFIX + "metrics.host";
+    public static final String METRICS_PORT = PREFIX + "metrics.port";
+
+    // Mode headless (production) : pas d'écho du contenu du chat, logs console structurés et asynchrones
+    public static final String HEADLESS = PREFIX + "headless";
+    // Profil "prod" : headless par défaut et aucune requête SQL recopiée sur la console (show_sql) ;
+    // "dev" (défaut) : configuration Hibernate telle quelle
+    public static final String PROFILE = PREFIX + "profile";
+
+    // Interface graphique du serveur : intervalle entre deux mises à jour, lignes de log conservées
+    public static final String UI_REFRESH_MS = PREFIX + "ui.refreshMs";
+    public static final String UI_LOG_LINES = PREFIX + "ui.logLines";
+
+    public enum Transport {
+        BLOCKING, NIO
+    }
+
+    private ServerConfig() {
+    }
+
+    public static Transport getTransport() {
+        String value = getString(TRANSPORT, "blocking");
+        return value.equalsIgnoreCase("nio") ? Transport.NIO : Transport.BLOCKING;
+    }
+
+    public static boolean isHeadless() {
+        return getBoolean(HEADLESS, isProduction());
+    }
+
+    public static boolean isProduction() {
+        return getString(PROFILE, "dev").equalsIgnoreCase("prod");
+    }
+
+    public static boolean isClustered() {
+        return getInt(CLUSTER_PORT, 0) > 0 || System.getProperty(CLUSTER_BUS) != null;
+    }
+
+    public static boolean useVirtualThreads() {
+        return getString(THREADS, "platform").equalsIgnoreCase("virtual");
+    }
+
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Valeur invalide pour " + key + " : " + value + ", utilisation de " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Valeur invalide pour " + key + " : " + value + ", utilisation de " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Applique les options --xxx=valeur de la ligne de commande en propriétés système chat.xxx
+     * et retourne les arguments restants (non-options).
+     */
+    public static String[] applyCommandLine(String[] args) {
+        List<String> remaining = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.indexOf('=') > 2) {
+                int eq = arg.indexOf('=');
+                System.setProperty(PREFIX + arg.substring(2, eq), arg.substring(eq + 1));
+            } else {
+                remaining.add(arg);
+            }
+        }
+        return remaining.toArray(new String[0]);
+    }
+}
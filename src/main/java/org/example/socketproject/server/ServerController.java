@@ -5,20 +5,30 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 import javafx.scene.control.PasswordField;
-import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Contrôleur pour la partie serveur du chat
  * Gère l'interface utilisateur et les interactions avec le serveur
+ * (abonné aux événements du serveur via ServerEventListener)
  */
-public class ServerController {
+public class ServerController implements ServerEventListener {
 
-    @FXML private TextArea serverLogArea;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    // Comptes affichés par page (seuls les pseudos de la page sont lus en base)
+    private static final int ACCOUNTS_PAGE_SIZE = 50;
+
+    @FXML private ListView<String> serverLogList;
     @FXML private Label statusLabel;
     @FXML private TextField portField;
     @FXML private ListView<String> connectedUsersListView;
@@ -27,12 +37,27 @@ public class ServerController {
     @FXML private TextField newUsernameField;
     @FXML private PasswordField newPasswordField;
     @FXML private ListView<String> allUsersListView;
+    @FXML private Label accountsPageLabel;
+    @FXML private Label cacheStatsLabel;
 
     private ChatServer chatServer;
     private volatile boolean isRunning = false;
     private ObservableList<String> connectedUsersList = FXCollections.observableArrayList();
     private ObservableList<String> allUsersList = FXCollections.observableArrayList();
+    private int accountsPage = 0;
     private UserManager userManager;
+    // Journal affiché : anneau des chat.ui.logLines dernières lignes (ListView virtualisée)
+    private final ObservableList<String> logLines = FXCollections.observableArrayList();
+    private final int maxLogLines = Math.max(100, ServerConfig.getInt(ServerConfig.UI_LOG_LINES, 5000));
+    // Logs, compteur et liste des connectés appliqués par lots (chat.ui.refreshMs)
+    private final UiUpdatePipeline uiUpdates = new UiUpdatePipeline(maxLogLines,
+            ServerConfig.getLong(ServerConfig.UI_REFRESH_MS, 100), Platform::runLater, this::applyUpdates);
+    // Lectures de la liste des comptes, hors du thread JavaFX, une à la fois dans l'ordre des demandes
+    private final ExecutorService accountsQueries = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ui-accounts");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @FXML
     public void initialize() {
@@ -43,6 +68,19 @@ public class ServerController {
             portField.setText("55555");
         }
         
+        if (serverLogList != null) {
+            serverLogList.setItems(logLines);
+            // Style console (les cellules n'héritent pas de la couleur du texte de la liste)
+            serverLogList.setCellFactory(list -> new ListCell<>() {
+                @Override
+                protected void updateItem(String item, boolean empty) {
+                    super.updateItem(item, empty);
+                    setText(empty ? null : item);
+                    setStyle("-fx-text-fill: #00ff00; -fx-background-color: #1e272e;");
+                }
+            });
+        }
+
         if (connectedUsersListView != null) {
             connectedUsersListView.setItems(connectedUsersList);
         }
@@ -99,14 +137,14 @@ public class ServerController {
         new Thread(() -> {
             try {
                 chatServer = new ChatServer(port);
-                chatServer.setServerController(this);
+                chatServer.addEventListener(this);
                 isRunning = true;
                 
                 Platform.runLater(() -> {
                     statusLabel.setText("● Serveur actif sur le port " + port);
                     statusLabel.setStyle("-fx-text-fill: #27ae60;");
-                    updateClientCount(0);
                 });
+                updateClientCount(0);
 
                 chatServer.start();
             } catch (Exception e) {
@@ -136,31 +174,18 @@ public class ServerController {
             Platform.runLater(() -> {
                 statusLabel.setText("● Serveur arrêté");
                 statusLabel.setStyle("-fx-text-fill: #e74c3c;");
-                appendLog("🛑 Serveur arrêté");
-                connectedUsersList.clear();
-                updateClientCount(0);
-                if (userCountLabel != null) {
-                    userCountLabel.setText("Total: 0 utilisateur(s)");
-                }
             });
+            appendLog("🛑 Serveur arrêté");
+            updateConnectedUsers(null);
+            updateClientCount(0);
         }, "server-stop-thread").start();
     }
 
     /**
-     * Ajoute un message dans la zone de logs
+     * Ajoute un message dans la zone de logs (horodaté maintenant, affiché au prochain lot)
      */
     public void appendLog(String message) {
-        Platform.runLater(() -> {
-            if (serverLogArea != null) {
-                String timestamp = java.time.LocalTime.now().format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss"));
-                serverLogArea.appendText("[" + timestamp + "] " + message + "\n");
-                // Auto-scroll vers le bas
-                serverLogArea.setScrollTop(Double.MAX_VALUE);
-                // Alternative pour assurer le scroll
-                serverLogArea.selectEnd();
-                serverLogArea.deselect();
-            }
-        });
+        uiUpdates.appendLine("[" + LocalTime.now().format(TIME_FORMAT) + "] " + message);
     }
     
     /**
@@ -168,38 +193,85 @@ public class ServerController {
      */
     @FXML
     public void clearLogs() {
-        if (serverLogArea != null) {
-            serverLogArea.clear();
-            appendLog("Logs effacés.");
-        }
+        logLines.clear();
+        appendLog("Logs effacés.");
     }
 
     /**
-     * Met à jour la liste des utilisateurs connectés
+     * Met à jour la liste des utilisateurs connectés (seule la dernière liste est affichée)
      */
     public void updateConnectedUsers(Set<String> usernames) {
-        Platform.runLater(() -> {
-            connectedUsersList.clear();
-            if (usernames != null) {
-                connectedUsersList.addAll(usernames);
-            }
-            // Mettre à jour le compteur d'utilisateurs
-            if (userCountLabel != null) {
-                int count = usernames != null ? usernames.size() : 0;
-                userCountLabel.setText("Total: " + count + (count <= 1 ? " utilisateur" : " utilisateurs"));
-            }
-        });
+        uiUpdates.setConnectedUsers(usernames);
     }
     
     /**
-     * Met à jour le compteur de clients connectés
+     * Met à jour le compteur de clients connectés (seule la dernière valeur est affichée)
      */
     public void updateClientCount(int count) {
-        Platform.runLater(() -> {
-            if (clientCountLabel != null) {
-                clientCountLabel.setText("Clients: " + count);
+        uiUpdates.setClientCount(count);
+    }
+
+    @Override
+    public void serverStarted(int port, String addresses) {
+        appendLog("✅ Serveur démarré sur le port " + port);
+        appendLog(addresses);
+        appendLog(" En attente de connexions...");
+    }
+
+    @Override
+    public void connectionsChanged(String event, int clientCount) {
+        appendLog("🔌 " + event);
+        updateClientCount(clientCount);
+    }
+
+    @Override
+    public void connectedUsersChanged(Set<String> usernames) {
+        updateConnectedUsers(usernames);
+    }
+
+    @Override
+    public void userJoined(String username) {
+        appendLog("👤 " + username + " a rejoint le chat");
+    }
+
+    @Override
+    public void userMessage(String username, String room, String message) {
+        appendLog("💬 " + RoomRegistry.format(room, "[" + username + "] " + message));
+    }
+
+    @Override
+    public void userLeft(String username) {
+        appendLog("👋 " + username + " s'est déconnecté");
+    }
+
+    // Sur le thread graphique, au plus une fois par chat.ui.refreshMs
+    private void applyUpdates(UiUpdatePipeline.Batch batch) {
+        if (batch.skippedLines() > 0) {
+            logLines.add("… " + batch.skippedLines() + " ligne(s) non affichée(s)");
+        }
+        if (!batch.lines().isEmpty() || batch.skippedLines() > 0) {
+            logLines.addAll(batch.lines());
+            if (logLines.size() > maxLogLines) {
+                logLines.remove(0, logLines.size() - maxLogLines);
             }
-        });
+            // Auto-scroll vers le bas
+            if (serverLogList != null) {
+                serverLogList.scrollTo(logLines.size() - 1);
+            }
+        }
+
+        if (batch.connectedUsers() != null) {
+            // Copie du registre à l'instant de l'affichage
+            connectedUsersList.setAll(batch.connectedUsers());
+            if (userCountLabel != null) {
+                int count = connectedUsersList.size();
+                userCountLabel.setText("Total: " + count + (count <= 1 ? " utilisateur" : " utilisateurs"));
+            }
+        }
+
+        if (batch.clientCount() != null && clientCountLabel != null) {
+            clientCountLabel.setText("Clients: " + batch.clientCount());
+        }
     }
 
     /**
@@ -209,6 +281,8 @@ public class ServerController {
         if (isRunning && chatServer != null) {
             stopServer();
         }
+        uiUpdates.shutdown();
+        accountsQueries.shutdownNow();
     }
 
     public boolean isRunning() {
@@ -274,13 +348,44 @@ public class ServerController {
         }
     }
     
+    @FXML
+    public void previousAccountsPage() {
+        if (accountsPage > 0) {
+            accountsPage--;
+            refreshAllUsersList();
+        }
+    }
+
+    @FXML
+    public void nextAccountsPage() {
+        accountsPage++;
+        refreshAllUsersList();
+    }
+
     /**
-     * Rafraîchit la liste de tous les utilisateurs
+     * Rafraîchit la page courante de la liste des comptes (et les statistiques du cache) :
+     * lecture en base sur accountsQueries, affichage sur le thread JavaFX
      */
     private void refreshAllUsersList() {
-        Platform.runLater(() -> {
-            allUsersList.clear();
-            allUsersList.addAll(userManager.getAllUsers().keySet());
+        int requested = accountsPage;
+        accountsQueries.execute(() -> {
+            long total = userManager.countUsers();
+            int pages = total <= 0 ? 1 : (int) ((total + ACCOUNTS_PAGE_SIZE - 1) / ACCOUNTS_PAGE_SIZE);
+            // Après une suppression, la dernière page peut avoir disparu
+            int page = Math.min(requested, pages - 1);
+            List<String> usernames = userManager.listUsernames(page * ACCOUNTS_PAGE_SIZE, ACCOUNTS_PAGE_SIZE);
+            String summary = HibernateUtil.getCacheSummary();
+            Platform.runLater(() -> {
+                accountsPage = page;
+                allUsersList.setAll(usernames);
+                if (accountsPageLabel != null) {
+                    accountsPageLabel.setText("Page " + (page + 1) + "/" + pages
+                            + (total >= 0 ? " (" + total + " comptes)" : ""));
+                }
+                if (cacheStatsLabel != null) {
+                    cacheStatsLabel.setText(summary == null ? "" : summary);
+                }
+            });
         });
     }
 }
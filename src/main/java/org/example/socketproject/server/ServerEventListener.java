@@ -0,0 +1,33 @@
+package org.example.socketproject.server;
+
+import java.util.Set;
+
+/**
+ * Événements du serveur destinés à l'affichage (interface graphique, écho console).
+ * Les méthodes sont appelées depuis les threads des clients, sur le chemin des messages :
+ * elles doivent rendre la main tout de suite (mise en file, pas d'E/S synchrone).
+ * Toutes les méthodes ont une implémentation vide : on ne redéfinit que ce qui intéresse.
+ */
+public interface ServerEventListener {
+
+    // Serveur à l'écoute ; addresses : adresses de connexion, une par ligne
+    default void serverStarted(int port, String addresses) {
+    }
+
+    // Connexion acceptée ou fermée ; clientCount inclut les clients non authentifiés
+    default void connectionsChanged(String event, int clientCount) {
+    }
+
+    default void connectedUsersChanged(Set<String> usernames) {
+    }
+
+    default void userJoined(String username) {
+    }
+
+    // Message public ; room : salon où il a été envoyé
+    default void userMessage(String username, String room, String message) {
+    }
+
+    default void userLeft(String username) {
+    }
+}
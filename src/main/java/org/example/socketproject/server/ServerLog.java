@@ -5,7 +5,14 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "server_logs")
+@NamedQuery(name = ServerLog.EXPIRED,
+        query = "from ServerLog l where l.logType = :type and l.timestamp < :cutoff order by l.timestamp, l.id")
+@NamedQuery(name = ServerLog.DELETE_BY_IDS, query = "delete from ServerLog l where l.id in (:ids)")
 public class ServerLog {
+    // Requêtes nommées (RetentionService)
+    public static final String EXPIRED = "ServerLog.expired";
+    public static final String DELETE_BY_IDS = "ServerLog.deleteByIds";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -4,6 +4,9 @@ public class ServerMain {
     public static void main(String[] args) {
         int port = 55555;
 
+        // Options --xxx=valeur (ex. --transport=nio), voir ServerConfig
+        args = ServerConfig.applyCommandLine(args);
+
         if (args.length > 0) {
             try {
                 port = Integer.parseInt(args[0]);
@@ -12,7 +15,9 @@ public class ServerMain {
             }
         }
 
-        System.out.println("Démarrage du serveur de chat sur le port " + port);
+        // --headless=true : mode production, sans écho du chat et avec des logs console asynchrones
+        System.out.println("Démarrage du serveur de chat sur le port " + port
+                + (ServerConfig.isHeadless() ? " (headless)" : ""));
         ChatServer server = new ChatServer(port);
         server.start();
     }
@@ -0,0 +1,300 @@
+package org.example.socketproject.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bus de grappe sur TCP, une ligne UTF-8 par message. Suffit pour plusieurs nœuds sur une même
+ * machine (boucle locale) ou un petit réseau de nœuds déclarés statiquement :
+ *   -Dchat.cluster.port=7001 -Dchat.cluster.peers=127.0.0.1:7002,127.0.0.1:7003
+ *
+ * Chaque nœud écoute sur chat.cluster.port et ouvre une connexion vers chaque nœud de
+ * chat.cluster.peers. Une connexion ne sert que dans un sens : on écrit sur celles qu'on a
+ * ouvertes, on lit celles qu'on a acceptées. Après l'échange "HELLO <nodeId>", chaque lien
+ * sortant a sa file bornée (chat.cluster.maxPending) et son thread d'écriture : send() ne
+ * bloque jamais ; un nœud qui ne suit pas voit son lien coupé puis rétabli (il recevra de
+ * nouveau l'état complet). Un PING part toutes les secondes sur un lien inactif, un lien entrant
+ * muet pendant trois intervalles est considéré comme perdu.
+ */
+public class TcpClusterBus implements ClusterBus {
+    private static final String HELLO = "HELLO ";
+    private static final String PING = "PING";
+    private static final long HEARTBEAT_MS = 1000;
+
+    private final String host;
+    private final int port;
+    private final List<InetSocketAddress> peerAddresses = new ArrayList<>();
+    private final long reconnectMs;
+    private final int maxPending;
+
+    // Liens sortants établis, par nœud
+    private final Map<String, Link> links = new ConcurrentHashMap<>();
+    // Connexion entrante courante de chaque nœud
+    private final Map<String, Socket> inbound = new ConcurrentHashMap<>();
+    // Connexions acceptées et pas encore fermées (avant ou après HELLO), fermées par stop()
+    private final Set<Socket> accepted = ConcurrentHashMap.newKeySet();
+    // Threads d'acceptation et des liens sortants, pour toute la durée du bus
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+    private volatile boolean running;
+    private ServerSocket serverSocket;
+    private String nodeId;
+    private Listener listener;
+
+    public TcpClusterBus() {
+        this.host = ServerConfig.getString(ServerConfig.CLUSTER_HOST, "127.0.0.1");
+        this.port = ServerConfig.getInt(ServerConfig.CLUSTER_PORT, 0);
+        this.reconnectMs = Math.max(100, ServerConfig.getLong(ServerConfig.CLUSTER_RECONNECT_MS, 1000));
+        this.maxPending = Math.max(16, ServerConfig.getInt(ServerConfig.CLUSTER_MAX_PENDING, 10000));
+        for (String peer : ServerConfig.getString(ServerConfig.CLUSTER_PEERS, "").split(",")) {
+            int colon = peer.lastIndexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            try {
+                peerAddresses.add(new InetSocketAddress(peer.substring(0, colon).trim(),
+                        Integer.parseInt(peer.substring(colon + 1).trim())));
+            } catch (NumberFormatException e) {
+                System.err.println("Nœud invalide dans " + ServerConfig.CLUSTER_PEERS + " : " + peer);
+            }
+        }
+    }
+
+    /**
+     * Lien sortant vers un nœud : file bornée vidée par le thread qui a ouvert la connexion.
+     */
+    private final class Link {
+        private final String peer;
+        private final Socket socket;
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(maxPending);
+        private final Thread writer = Thread.currentThread();
+        private volatile boolean closed = false;
+
+        Link(String peer, Socket socket) {
+            this.peer = peer;
+            this.socket = socket;
+        }
+
+        boolean offer(String message) {
+            if (closed) {
+                return false;
+            }
+            if (!queue.offer(message)) {
+                ChatLogger.getInstance().logError("Nœud " + peer + " trop lent (" + maxPending
+                        + " messages en attente), lien coupé");
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        void drain(Writer out) throws IOException {
+            try {
+                while (!closed) {
+                    String message = queue.poll(HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+                    out.write(message == null ? PING : message);
+                    out.write('\n');
+                    if (queue.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // close() ou arrêt du bus
+            }
+        }
+
+        void close() {
+            closed = true;
+            closeQuietly(socket);
+            writer.interrupt();
+        }
+    }
+
+    @Override
+    public void start(String nodeId, Listener listener) throws IOException {
+        this.nodeId = nodeId;
+        this.listener = listener;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(host, port));
+        running = true;
+        startThread("cluster-accept", this::acceptLoop);
+        for (InetSocketAddress address : peerAddresses) {
+            startThread("cluster-link-" + address.getHostString() + ":" + address.getPort(), () -> connectLoop(address));
+        }
+        System.out.println(" Grappe : nœud " + nodeId + " à l'écoute sur " + host + ":" + port
+                + (peerAddresses.isEmpty() ? "" : ", nœuds déclarés : " + peerAddresses.size()));
+    }
+
+    private void startThread(String name, Runnable task) {
+        threads.add(daemon(name, task));
+    }
+
+    private static Thread daemon(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                accepted.add(socket);
+                if (!running) {
+                    // stop() a déjà fermé les connexions acceptées
+                    accepted.remove(socket);
+                    closeQuietly(socket);
+                    break;
+                }
+                // Thread de lecture non suivi : il se termine avec sa connexion
+                daemon("cluster-in", () -> readLoop(socket));
+            } catch (IOException e) {
+                if (running) {
+                    ChatLogger.getInstance().logError("Grappe : erreur d'acceptation : " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Lecture d'un nœud : HELLO, réponse HELLO, puis une ligne par message
+    private void readLoop(Socket socket) {
+        String peer = null;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout((int) (3 * HEARTBEAT_MS));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String hello = reader.readLine();
+            if (hello == null || !hello.startsWith(HELLO)) {
+                return;
+            }
+            socket.getOutputStream().write((HELLO + nodeId + "\n").getBytes(StandardCharsets.UTF_8));
+            socket.getOutputStream().flush();
+
+            peer = hello.substring(HELLO.length());
+            Socket previous = inbound.put(peer, socket);
+            if (previous != null) {
+                // Le nœud s'est reconnecté avant qu'on ait vu tomber l'ancienne connexion
+                closeQuietly(previous);
+                listener.peerDisconnected(peer);
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.equals(PING)) {
+                    continue;
+                }
+                try {
+                    listener.received(peer, line);
+                } catch (RuntimeException e) {
+                    ChatLogger.getInstance().logError("Grappe : message de " + peer + " ignoré : " + e.getMessage());
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            ChatLogger.getInstance().logError("Grappe : nœud " + peer + " muet, lien perdu");
+        } catch (IOException e) {
+            // Nœud arrêté ou connexion coupée
+        } finally {
+            accepted.remove(socket);
+            // À l'arrêt du bus, le serveur n'a plus à oublier les utilisateurs des autres nœuds
+            if (peer != null && inbound.remove(peer, socket) && running) {
+                listener.peerDisconnected(peer);
+            }
+        }
+    }
+
+    // Lien sortant vers un nœud déclaré, rétabli tant que le bus tourne
+    private void connectLoop(InetSocketAddress address) {
+        while (running) {
+            try (Socket socket = new Socket()) {
+                socket.connect(address, (int) reconnectMs);
+                socket.setTcpNoDelay(true);
+                Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                out.write(HELLO + nodeId + "\n");
+                out.flush();
+                socket.setSoTimeout((int) (3 * HEARTBEAT_MS));
+                String reply = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+                if (reply == null || !reply.startsWith(HELLO)) {
+                    throw new IOException("réponse inattendue : " + reply);
+                }
+                String peer = reply.substring(HELLO.length());
+                Link link = new Link(peer, socket);
+                Link previous = links.put(peer, link);
+                if (previous != null) {
+                    previous.close();
+                }
+                ChatLogger.getInstance().logServerEvent("Grappe : lien établi vers le nœud " + peer + " (" + address + ")");
+                try {
+                    listener.peerConnected(peer);
+                    link.drain(out);
+                } finally {
+                    links.remove(peer, link);
+                    link.close();
+                    if (running) {
+                        ChatLogger.getInstance().logServerEvent("Grappe : lien vers le nœud " + peer + " coupé");
+                    }
+                }
+            } catch (IOException e) {
+                // Nœud pas encore démarré ou arrêté : nouvel essai plus tard
+            }
+            try {
+                Thread.sleep(reconnectMs);
+            } catch (InterruptedException e) {
+                // Lien coupé par close() pendant une écriture, ou arrêt du bus : running décide
+            }
+        }
+    }
+
+    @Override
+    public boolean send(String nodeId, String message) {
+        Link link = links.get(nodeId);
+        return link != null && link.offer(message);
+    }
+
+    @Override
+    public Set<String> peers() {
+        return Collections.unmodifiableSet(links.keySet());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (serverSocket != null) {
+            closeQuietly(serverSocket);
+        }
+        for (Link link : links.values()) {
+            link.close();
+        }
+        for (Socket socket : accepted) {
+            closeQuietly(socket);
+        }
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // Ignorer les erreurs de fermeture
+        }
+    }
+}
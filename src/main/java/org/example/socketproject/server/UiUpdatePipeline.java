@@ -0,0 +1,114 @@
+package org.example.socketproject.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Regroupe les mises à jour de l'interface du serveur avant de les confier au thread graphique.
+ * - les lignes de log sont accumulées sans verrou, au plus maxPendingLines (les plus anciennes
+ *   sont abandonnées si l'interface ne suit pas) ;
+ * - pour le nombre de clients et la liste des connectés, seule la dernière valeur compte ;
+ * - au plus une application toutes les intervalMs, et jamais plus d'une tâche en attente sur
+ *   le thread graphique, quel que soit le débit des événements.
+ */
+public class UiUpdatePipeline {
+
+    /**
+     * Ce qui a changé depuis la dernière application. clientCount et connectedUsers valent null
+     * s'ils n'ont pas changé ; skippedLines compte les lignes abandonnées faute de place.
+     */
+    public record Batch(List<String> lines, long skippedLines, Integer clientCount, Collection<String> connectedUsers) {
+    }
+
+    private final int maxPendingLines;
+    private final long intervalNanos;
+    private final Executor uiExecutor;
+    private final Consumer<Batch> applier;
+    private final ScheduledThreadPoolExecutor timer;
+
+    private final ConcurrentLinkedQueue<String> pendingLines = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final LongAdder skipped = new LongAdder();
+    private final AtomicReference<Integer> latestClientCount = new AtomicReference<>();
+    private final AtomicReference<Collection<String>> latestUsers = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile long lastApplyNanos = System.nanoTime();
+
+    public UiUpdatePipeline(int maxPendingLines, long intervalMs, Executor uiExecutor, Consumer<Batch> applier) {
+        this.maxPendingLines = Math.max(1, maxPendingLines);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, intervalMs));
+        this.uiExecutor = uiExecutor;
+        this.applier = applier;
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "ui-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void appendLine(String line) {
+        pendingLines.offer(line);
+        // Borner le tampon : l'interface n'affiche de toute façon que les dernières lignes
+        if (pendingCount.incrementAndGet() > maxPendingLines && pendingLines.poll() != null) {
+            pendingCount.decrementAndGet();
+            skipped.increment();
+        }
+        requestApply();
+    }
+
+    public void setClientCount(int count) {
+        latestClientCount.set(count);
+        requestApply();
+    }
+
+    public void setConnectedUsers(Collection<String> usernames) {
+        latestUsers.set(usernames != null ? usernames : List.of());
+        requestApply();
+    }
+
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    // Le premier événement après une application programme la suivante, les autres s'y ajoutent
+    private void requestApply() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        long delay = Math.max(0, lastApplyNanos + intervalNanos - System.nanoTime());
+        try {
+            timer.schedule(() -> uiExecutor.execute(this::apply), delay, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            // Pipeline arrêté (fermeture de l'application)
+            scheduled.set(false);
+        }
+    }
+
+    // Sur le thread graphique
+    private void apply() {
+        lastApplyNanos = System.nanoTime();
+        // Libéré avant de vider : un événement arrivé pendant l'application programme la suivante
+        scheduled.set(false);
+
+        List<String> lines = new ArrayList<>(Math.min(pendingCount.get(), maxPendingLines));
+        String line;
+        while ((line = pendingLines.poll()) != null) {
+            pendingCount.decrementAndGet();
+            lines.add(line);
+        }
+        Batch batch = new Batch(lines, skipped.sumThenReset(), latestClientCount.getAndSet(null), latestUsers.getAndSet(null));
+        if (!lines.isEmpty() || batch.skippedLines() > 0 || batch.clientCount() != null || batch.connectedUsers() != null) {
+            applier.accept(batch);
+        }
+    }
+}
@@ -1,15 +1,34 @@
 package org.example.socketproject.server;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+
 import java.time.LocalDateTime;
 
+// Cache de second niveau (ehcache.xml) : l'entité par id et l'id par pseudo (clé naturelle)
 @Entity
 @Table(name = "users")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@NaturalIdCache(region = "users-natural-id")
+@NamedQuery(name = User.CREDENTIALS, query = "select u.username, u.passwordHash from User u")
+@NamedQuery(name = User.USERNAMES, query = "select u.username from User u order by u.username")
+@NamedQuery(name = User.COUNT, query = "select count(u) from User u")
 public class User {
+    // Requêtes nommées (HibernateUserStore)
+    public static final String CREDENTIALS = "User.credentials";
+    public static final String USERNAMES = "User.usernames";
+    public static final String COUNT = "User.count";
+    // Région du cache de requêtes des pages de pseudos
+    public static final String LIST_CACHE_REGION = "users-list";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
+    @NaturalId
     @Column(nullable = false, unique = true, length = 50)
     private String username;
 
@@ -0,0 +1,34 @@
+package org.example.socketproject.server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ids numériques des pseudos pour le protocole binaire (varint dans les trames MESSAGE et
+ * PRIVATE). Attribués par ce serveur à la première utilisation et jamais réutilisés tant qu'il
+ * tourne : un client qui a reçu l'association (trame USER) peut la garder. En grappe, chaque nœud
+ * a ses propres ids ; ils ne sortent pas du nœud (le bus transporte des pseudos).
+ */
+public class UserIds {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<Integer, String> usernames = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    public int idOf(String username) {
+        Integer id = ids.get(username);
+        if (id != null) {
+            return id;
+        }
+        return ids.computeIfAbsent(username, name -> {
+            int assigned = next.incrementAndGet();
+            usernames.put(assigned, name);
+            return assigned;
+        });
+    }
+
+    // Pseudo associé à l'id, ou null s'il n'a jamais été attribué
+    public String usernameOf(int id) {
+        return usernames.get(id);
+    }
+}
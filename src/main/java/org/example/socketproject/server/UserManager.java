@@ -1,30 +1,37 @@
 package org.example.socketproject.server;
 
-import org.hibernate.Session;
-import org.hibernate.Transaction;
-import org.hibernate.query.Query;
-
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Gestionnaire des comptes utilisateurs
- * Stocke les usernames et mots de passe via Hibernate
+ * Stocke les usernames et mots de passe dans le stockage choisi par chat.storage.users (UserStore).
+ * Les empreintes sont mises en cache (CredentialCache) : une vague de reconnexions
+ * ne sature plus le pool de connexions.
  */
 public class UserManager {
-    private static UserManager instance;
     private final String adminPassword = "admin123"; // Mot de passe admin par défaut
+    private final UserStore store = UserStore.fromConfig();
+    private final CredentialCache credentialCache = new CredentialCache(
+            ServerConfig.getInt(ServerConfig.AUTH_CACHE_MAX_ENTRIES, 10_000),
+            ServerConfig.getLong(ServerConfig.AUTH_CACHE_TTL_MS, 5 * 60_000L),
+            ServerConfig.getLong(ServerConfig.AUTH_CACHE_NEGATIVE_TTL_MS, 30_000L));
+
+    private static final MetricsRegistry.Timer AUTHENTICATE_TIME = MetricsRegistry.getInstance()
+            .timer("chat_auth", "Vérification des identifiants (UserManager.authenticate)");
 
     private UserManager() {
         initializeAdminUser();
     }
 
-    public static synchronized UserManager getInstance() {
-        if (instance == null) {
-            instance = new UserManager();
-        }
-        return instance;
+    private static final class Holder {
+        private static final UserManager INSTANCE = new UserManager();
+    }
+
+    public static UserManager getInstance() {
+        return Holder.INSTANCE;
     }
     
     /**
@@ -48,16 +55,12 @@ public class UserManager {
         }
         
         String passwordHash = hashPassword(password);
-        User user = new User(username, passwordHash);
         
-        Transaction transaction = null;
-        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
-            transaction = session.beginTransaction();
-            session.persist(user);
-            transaction.commit();
+        try {
+            store.insert(username, passwordHash);
+            credentialCache.invalidate(username);
             return true;
         } catch (Exception e) {
-            if (transaction != null) transaction.rollback();
             System.err.println("Erreur lors de la création de l'utilisateur : " + e.getMessage());
             return false;
         }
@@ -71,16 +74,11 @@ public class UserManager {
             return false; // On ne peut pas supprimer l'admin
         }
         
-        Transaction transaction = null;
-        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
-            transaction = session.beginTransaction();
-            Query<?> query = session.createQuery("delete from User where username = :username", null);
-            query.setParameter("username", username);
-            int result = query.executeUpdate();
-            transaction.commit();
-            return result > 0;
+        try {
+            boolean deleted = store.delete(username);
+            credentialCache.invalidate(username);
+            return deleted;
         } catch (Exception e) {
-            if (transaction != null) transaction.rollback();
             System.err.println("Erreur lors de la suppression de l'utilisateur : " + e.getMessage());
             return false;
         }
@@ -94,49 +92,88 @@ public class UserManager {
             return false;
         }
         
-        String passwordHash = hashPassword(password);
-        
-        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
-            Query<String> query = session.createQuery("select passwordHash from User where username = :username", String.class);
-            query.setParameter("username", username);
-            String storedHash = query.uniqueResult();
-            
+        long start = System.nanoTime();
+        try {
+            String passwordHash = hashPassword(password);
+            String storedHash = findPasswordHash(username);
             return storedHash != null && storedHash.equals(passwordHash);
-        } catch (Exception e) {
-            System.err.println("Erreur lors de l'authentification : " + e.getMessage());
+        } finally {
+            AUTHENTICATE_TIME.recordSince(start);
         }
-        return false;
     }
 
     /**
      * Vérifie si un utilisateur existe
      */
     public boolean userExists(String username) {
-        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
-            Query<Long> query = session.createQuery("select count(u) from User u where u.username = :username", Long.class);
-            query.setParameter("username", username);
-            return query.uniqueResult() > 0;
+        return findPasswordHash(username) != null;
+    }
+
+    /**
+     * Empreinte du mot de passe d'un utilisateur (null s'il n'existe pas),
+     * lue depuis le cache ou, en cas d'absence, depuis la base
+     */
+    private String findPasswordHash(String username) {
+        if (username == null) {
+            return null;
+        }
+        CredentialCache.Lookup cached = credentialCache.get(username);
+        if (cached.isHit()) {
+            return cached.getPasswordHash();
+        }
+
+        try {
+            // Relevée avant la lecture : un createUser/deleteUser concurrent annule la mise en cache
+            long generation = credentialCache.generation();
+            String storedHash = store.findPasswordHash(username);
+            credentialCache.put(username, storedHash, generation);
+            return storedHash;
         } catch (Exception e) {
-            System.err.println("Erreur lors de la vérification de l'utilisateur : " + e.getMessage());
+            // Ne pas mettre en cache : la base est peut-être temporairement indisponible
+            System.err.println("Erreur lors de la lecture de l'utilisateur : " + e.getMessage());
         }
-        return false;
+        return null;
+    }
+
+    // Statistiques du cache des identifiants (hits, misses, évictions)
+    public CredentialCache getCredentialCache() {
+        return credentialCache;
     }
 
     /**
      * Obtient tous les utilisateurs (pour l'affichage)
      */
     public Map<String, String> getAllUsers() {
-        Map<String, String> users = new HashMap<>();
-        
-        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
-            List<User> userList = session.createQuery("from User", User.class).list();
-            for (User u : userList) {
-                users.put(u.getUsername(), u.getPasswordHash());
-            }
+        try {
+            return store.findAll();
         } catch (Exception e) {
             System.err.println("Erreur lors de la récupération des utilisateurs : " + e.getMessage());
         }
-        return users;
+        return new HashMap<>();
+    }
+
+    /**
+     * Une page de pseudos (pour l'affichage), sans charger les empreintes
+     */
+    public List<String> listUsernames(int offset, int limit) {
+        try {
+            return store.listUsernames(offset, limit);
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la récupération des utilisateurs : " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Nombre de comptes, ou -1 si la base est indisponible
+     */
+    public long countUsers() {
+        try {
+            return store.countUsers();
+        } catch (Exception e) {
+            System.err.println("Erreur lors du comptage des utilisateurs : " + e.getMessage());
+        }
+        return -1;
     }
 
     /**
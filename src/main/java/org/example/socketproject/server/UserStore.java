@@ -0,0 +1,51 @@
+package org.example.socketproject.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stockage des comptes utilisateurs, derrière UserManager (qui garde le cache des identifiants).
+ * L'implémentation est choisie par chat.storage.users : "hibernate" (HibernateUserStore, défaut)
+ * ou le nom complet d'une classe qui implémente cette interface (constructeur sans argument).
+ *
+ * Les méthodes lèvent une exception si le stockage est indisponible : UserManager ne met alors
+ * rien en cache.
+ */
+public interface UserStore {
+
+    // Empreinte du mot de passe, ou null si l'utilisateur n'existe pas
+    String findPasswordHash(String username);
+
+    void insert(String username, String passwordHash);
+
+    // false si l'utilisateur n'existait pas
+    boolean delete(String username);
+
+    // Pseudo -> empreinte, pour l'affichage
+    Map<String, String> findAll();
+
+    // Une page de pseudos, dans l'ordre alphabétique, sans les empreintes
+    default List<String> listUsernames(int offset, int limit) {
+        List<String> usernames = new ArrayList<>(findAll().keySet());
+        usernames.sort(null);
+        int from = Math.min(offset, usernames.size());
+        return new ArrayList<>(usernames.subList(from, Math.min(from + limit, usernames.size())));
+    }
+
+    default long countUsers() {
+        return findAll().size();
+    }
+
+    static UserStore fromConfig() {
+        String type = ServerConfig.getString(ServerConfig.STORAGE_USERS, "hibernate");
+        if (type.equalsIgnoreCase("hibernate")) {
+            return new HibernateUserStore();
+        }
+        try {
+            return (UserStore) Class.forName(type).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Stockage des utilisateurs invalide (" + ServerConfig.STORAGE_USERS + ") : " + type, e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.socketproject.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryProtocolTest {
+    private static final int[] VALUES = {0, 1, 127, 128, 300, 16_383, 16_384, 2_097_151, 2_097_152, Integer.MAX_VALUE};
+
+    @Test
+    void varintRoundTripsThroughBufferAndStream() throws IOException {
+        for (int value : VALUES) {
+            ByteBuffer buffer = ByteBuffer.allocate(5);
+            BinaryProtocol.putVarint(buffer, value);
+            assertEquals(BinaryProtocol.varintSize(value), buffer.position(), "taille de " + value);
+            buffer.flip();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+
+            assertEquals(value, BinaryProtocol.getVarint(buffer));
+            assertFalse(buffer.hasRemaining());
+            assertEquals(value, BinaryProtocol.readVarint(new ByteArrayInputStream(bytes)));
+        }
+    }
+
+    @Test
+    void varintSizeBoundaries() {
+        assertEquals(1, BinaryProtocol.varintSize(127));
+        assertEquals(2, BinaryProtocol.varintSize(128));
+        assertEquals(3, BinaryProtocol.varintSize(16_384));
+        assertEquals(5, BinaryProtocol.varintSize(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void incompleteVarintLeavesPositionUnchanged() throws ProtocolException {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] {(byte) 0xAC});
+        assertEquals(-1, BinaryProtocol.getVarint(buffer));
+        assertEquals(0, buffer.position());
+        assertEquals(-1, BinaryProtocol.getVarint(ByteBuffer.allocate(0)));
+    }
+
+    @Test
+    void oversizedOrNegativeVarintIsRejected() {
+        // Cinq octets de continuation : plus long que 35 bits
+        byte[] tooLong = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01};
+        assertThrows(ProtocolException.class, () -> BinaryProtocol.getVarint(ByteBuffer.wrap(tooLong)));
+        assertThrows(ProtocolException.class, () -> BinaryProtocol.readVarint(new ByteArrayInputStream(tooLong)));
+        // 0xFFFFFFFF : bit de signe positionné
+        byte[] negative = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        assertThrows(ProtocolException.class, () -> BinaryProtocol.getVarint(ByteBuffer.wrap(negative)));
+        assertThrows(ProtocolException.class, () -> BinaryProtocol.readVarint(new ByteArrayInputStream(negative)));
+    }
+
+    @Test
+    void streamEndsBeforeOrInsideVarint() throws IOException {
+        assertEquals(-1, BinaryProtocol.readVarint(new ByteArrayInputStream(new byte[0])));
+        assertThrows(EOFException.class, () -> BinaryProtocol.readVarint(new ByteArrayInputStream(new byte[] {(byte) 0x80})));
+    }
+
+    @Test
+    void encodedFrameHoldsLengthTypeIdAndParts() throws ProtocolException {
+        byte[] room = "dev".getBytes(StandardCharsets.UTF_8);
+        byte[] text = "bonjour".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = BinaryProtocol.encode(BinaryProtocol.MESSAGE, 300, false,
+                BinaryProtocol.lengthPrefix(room), room, text);
+
+        int length = BinaryProtocol.getVarint(frame);
+        assertEquals(frame.remaining(), length);
+        assertEquals(BinaryProtocol.MESSAGE, frame.get());
+        assertEquals(300, BinaryProtocol.getVarint(frame));
+        int roomLength = BinaryProtocol.getVarint(frame);
+        byte[] decodedRoom = new byte[roomLength];
+        frame.get(decodedRoom);
+        assertArrayEquals(room, decodedRoom);
+        byte[] decodedText = new byte[frame.remaining()];
+        frame.get(decodedText);
+        assertArrayEquals(text, decodedText);
+    }
+
+    @Test
+    void frameWithoutIdStartsContentRightAfterType() throws ProtocolException {
+        ByteBuffer frame = BinaryProtocol.encode(BinaryProtocol.TEXT, 0, true, "AUTH_SUCCESS".getBytes(StandardCharsets.UTF_8));
+        assertTrue(frame.isDirect());
+        assertTrue(frame.isReadOnly());
+        assertEquals(13, BinaryProtocol.getVarint(frame));
+        assertEquals(BinaryProtocol.TEXT, frame.get());
+        assertEquals("AUTH_SUCCESS", StandardCharsets.UTF_8.decode(frame).toString());
+    }
+
+    @Test
+    void everyTruncationOfAFrameIsDetected() throws ProtocolException {
+        // Contenu de 200 octets : longueur sur deux octets
+        ByteBuffer frame = BinaryProtocol.encode(BinaryProtocol.TEXT, 0, false, new byte[200]);
+        byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        for (int cut = 0; cut < bytes.length; cut++) {
+            ByteBuffer partial = ByteBuffer.wrap(bytes, 0, cut);
+            int length = BinaryProtocol.getVarint(partial);
+            // Comme les transports : longueur incomplète, ou contenu incomplet
+            assertTrue(length < 0 ? partial.position() == 0 : partial.remaining() < length, "coupure à " + cut);
+        }
+    }
+
+    @Test
+    void capabilityNegotiation() {
+        assertTrue(BinaryProtocol.isRequested("CAPS:binary"));
+        assertTrue(BinaryProtocol.isRequested("CAPS:presence, BINARY ,deflate"));
+        assertFalse(BinaryProtocol.isRequested("CAPS:presence"));
+        assertFalse(BinaryProtocol.isRequested("binary"));
+        assertFalse(BinaryProtocol.isRequested(null));
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.socketproject.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CredentialCacheTest {
+
+    @Test
+    void hitAfterPutAndMissForUnknownKey() {
+        CredentialCache cache = new CredentialCache(10, 60_000, 60_000);
+        assertTrue(cache.put("alice", "h1", cache.generation()));
+
+        CredentialCache.Lookup hit = cache.get("alice");
+        assertTrue(hit.isHit());
+        assertEquals("h1", hit.getPasswordHash());
+        assertFalse(cache.get("bob").isHit());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void negativeEntryIsAHitWithoutHash() {
+        CredentialCache cache = new CredentialCache(10, 60_000, 60_000);
+        cache.put("ghost", null, cache.generation());
+
+        CredentialCache.Lookup lookup = cache.get("ghost");
+        assertTrue(lookup.isHit());
+        assertNull(lookup.getPasswordHash());
+        assertEquals(1, cache.getNegativeHitCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    void zeroNegativeTtlDisablesNegativeCaching() {
+        CredentialCache cache = new CredentialCache(10, 60_000, 0);
+        assertFalse(cache.put("ghost", null, cache.generation()));
+        assertFalse(cache.get("ghost").isHit());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void expiredEntryIsRemovedOnLookup() throws InterruptedException {
+        CredentialCache cache = new CredentialCache(10, 1, 1);
+        cache.put("alice", "h1", cache.generation());
+        cache.put("ghost", null, cache.generation());
+        Thread.sleep(20);
+
+        assertFalse(cache.get("alice").isHit());
+        assertFalse(cache.get("ghost").isHit());
+        assertEquals(2, cache.getExpirationCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        CredentialCache cache = new CredentialCache(2, 60_000, 60_000);
+        cache.put("a", "ha", cache.generation());
+        cache.put("b", "hb", cache.generation());
+        // "a" devient la plus récemment utilisée : "b" part au prochain ajout
+        cache.get("a");
+        cache.put("c", "hc", cache.generation());
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.get("a").isHit());
+        assertFalse(cache.get("b").isHit());
+        assertTrue(cache.get("c").isHit());
+    }
+
+    @Test
+    void invalidateRemovesEntry() {
+        CredentialCache cache = new CredentialCache(10, 60_000, 60_000);
+        cache.put("alice", "h1", cache.generation());
+        cache.invalidate("alice");
+        assertFalse(cache.get("alice").isHit());
+    }
+
+    @Test
+    void readStartedBeforeInvalidateIsNotCached() {
+        CredentialCache cache = new CredentialCache(10, 60_000, 60_000);
+        // Lecture "absent" commencée, puis création concurrente du compte
+        long generation = cache.generation();
+        cache.invalidate("alice");
+
+        assertFalse(cache.put("alice", null, generation));
+        assertFalse(cache.get("alice").isHit());
+        assertTrue(cache.put("alice", "h1", cache.generation()));
+        assertEquals("h1", cache.get("alice").getPasswordHash());
+    }
+
+    @Test
+    void readStartedBeforeClearIsNotCached() {
+        CredentialCache cache = new CredentialCache(10, 60_000, 60_000);
+        long generation = cache.generation();
+        cache.clear();
+        assertFalse(cache.put("alice", "h1", generation));
+        assertEquals(0, cache.size());
+    }
+}
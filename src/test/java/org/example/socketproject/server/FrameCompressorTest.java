@@ -0,0 +1,88 @@
+package org.example.socketproject.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameCompressorTest {
+
+    @Test
+    void deflateFrameInflatesBackToTheOriginalFrames() throws Exception {
+        ByteBuffer[] frames = new ByteBuffer[3];
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < frames.length; i++) {
+            byte[] text = ("HISTORY:" + i + ":bonjour tout le monde, ".repeat(20)).getBytes(StandardCharsets.UTF_8);
+            frames[i] = BinaryProtocol.encode(BinaryProtocol.TEXT, 0, false, text);
+            expected.write(bytes(frames[i]));
+        }
+
+        ByteBuffer deflated = FrameCompressor.deflate(false, frames);
+        assertNotNull(deflated);
+        assertTrue(deflated.remaining() < expected.size());
+        // Les trames d'origine ne sont pas consommées
+        for (ByteBuffer frame : frames) {
+            assertEquals(0, frame.position());
+        }
+        assertArrayEquals(expected.toByteArray(), inflate(deflated));
+    }
+
+    @Test
+    void eachDeflateFrameIsIndependent() throws Exception {
+        ByteBuffer frame = BinaryProtocol.encode(BinaryProtocol.TEXT, 0, false, "a".repeat(1000).getBytes(StandardCharsets.UTF_8));
+        // Deux compressions successives (même Deflater réutilisé) : chacune se décompresse seule
+        ByteBuffer first = FrameCompressor.deflate(true, frame);
+        ByteBuffer second = FrameCompressor.deflate(true, frame);
+        assertArrayEquals(bytes(frame), inflate(first));
+        assertArrayEquals(bytes(frame), inflate(second));
+    }
+
+    @Test
+    void incompressibleFramesAreLeftAlone() {
+        byte[] noise = new byte[2048];
+        new Random(42).nextBytes(noise);
+        assertNull(FrameCompressor.deflate(false, BinaryProtocol.encode(BinaryProtocol.MESSAGE, 7, false, noise)));
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    // Décode une trame DEFLATE comme un client : longueur, type, puis deflate brut
+    private static byte[] inflate(ByteBuffer deflateFrame) throws ProtocolException, DataFormatException {
+        ByteBuffer frame = deflateFrame.duplicate();
+        int length = BinaryProtocol.getVarint(frame);
+        assertEquals(frame.remaining(), length);
+        assertEquals(BinaryProtocol.DEFLATE, frame.get());
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(bytes(frame));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && inflater.needsInput()) {
+                    break;
+                }
+                out.write(chunk, 0, n);
+            }
+            assertTrue(inflater.finished());
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
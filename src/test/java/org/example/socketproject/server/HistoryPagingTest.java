@@ -0,0 +1,131 @@
+package org.example.socketproject.server;
+
+import org.hibernate.query.SelectionQuery;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pagination par clé (timestamp, id) des requêtes nommées de Message, sur H2 : parcourir un salon
+ * ou une conversation page par page doit rendre chaque message une seule fois, dans l'ordre, même
+ * quand une page s'arrête au milieu de messages de même timestamp.
+ */
+class HistoryPagingTest {
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    // Ordre attendu (du plus récent au plus ancien) des messages du salon "dev"
+    private static final List<Long> devNewestFirst = new ArrayList<>();
+    private static final List<Long> generalNewestFirst = new ArrayList<>();
+    private static final List<Long> aliceBobNewestFirst = new ArrayList<>();
+
+    @BeforeAll
+    static void createMessages() {
+        System.setProperty(ServerConfig.HIBERNATE_CONFIG, "hibernate-test.cfg.xml");
+        // Salon dev : trois messages à T0+2, deux à T0+1, un à T0+3, et un message à T0 inséré en
+        // dernier (id le plus grand, mais le plus ancien)
+        long d1 = insert("alice", "PUBLIC", null, "dev", 2);
+        long d2 = insert("bob", "PUBLIC", null, "dev", 2);
+        long d3 = insert("alice", "PUBLIC", null, "dev", 1);
+        long d4 = insert("carol", "PUBLIC", null, "dev", 2);
+        long d5 = insert("bob", "PUBLIC", null, "dev", 1);
+        long d6 = insert("alice", "PUBLIC", null, "dev", 3);
+        // Salon général : room renseigné ou null (messages d'avant les salons)
+        long g1 = insert("alice", "PUBLIC", null, RoomRegistry.DEFAULT_ROOM, 1);
+        long g2 = insert("bob", "PUBLIC", null, null, 1);
+        long g3 = insert("carol", "PUBLIC", null, RoomRegistry.DEFAULT_ROOM, 0);
+        // Conversations privées, dans les deux sens
+        long p1 = insert("alice", "PRIVATE", "bob", null, 1);
+        long p2 = insert("bob", "PRIVATE", "alice", null, 1);
+        insert("alice", "PRIVATE", "carol", null, 1);
+        long p3 = insert("bob", "PRIVATE", "alice", null, 2);
+        long d7 = insert("bob", "PUBLIC", null, "dev", 0);
+
+        devNewestFirst.addAll(List.of(d6, d4, d2, d1, d5, d3, d7));
+        generalNewestFirst.addAll(List.of(g2, g1, g3));
+        aliceBobNewestFirst.addAll(List.of(p3, p2, p1));
+    }
+
+    private static long insert(String username, String type, String recipient, String room, int minutes) {
+        Message message = new Message(username, username + ": texte", type, recipient, room);
+        message.setTimestamp(T0.plusMinutes(minutes));
+        HibernateUtil.inTransaction(session -> session.insert(message));
+        return message.getId();
+    }
+
+    @Test
+    void roomPagesCoverEveryMessageOnceWhateverThePageSize() {
+        for (int limit = 1; limit <= devNewestFirst.size() + 1; limit++) {
+            assertEquals(devNewestFirst, readAll(Message.ROOM_PAGE, Message.ROOM_PAGE_BEFORE, "dev", null, limit),
+                    "pages de " + limit);
+        }
+    }
+
+    @Test
+    void defaultRoomIncludesMessagesWithoutRoom() {
+        for (int limit = 1; limit <= 3; limit++) {
+            assertEquals(generalNewestFirst, readAll(Message.DEFAULT_ROOM_PAGE, Message.DEFAULT_ROOM_PAGE_BEFORE,
+                    RoomRegistry.DEFAULT_ROOM, null, limit), "pages de " + limit);
+        }
+    }
+
+    @Test
+    void privatePagesHoldBothDirectionsOfOneConversation() {
+        for (int limit = 1; limit <= 3; limit++) {
+            assertEquals(aliceBobNewestFirst, readAll(Message.PRIVATE_PAGE, Message.PRIVATE_PAGE_BEFORE,
+                    null, "bob", limit), "pages de " + limit);
+        }
+    }
+
+    @Test
+    void pageBeforeOldestMessageIsEmpty() {
+        long oldest = devNewestFirst.get(devNewestFirst.size() - 1);
+        assertTrue(page(Message.ROOM_PAGE_BEFORE, "dev", null, oldest, 10).isEmpty());
+    }
+
+    @Test
+    void pageBeforeTiedMessageStartsWithLowerIdOfSameTimestamp() {
+        // d2 et d1 partagent le timestamp de d4 : la page avant d4 les rend, id décroissant
+        long d4 = devNewestFirst.get(1);
+        List<Message> next = page(Message.ROOM_PAGE_BEFORE, "dev", null, d4, 2);
+        assertEquals(List.of(devNewestFirst.get(2), devNewestFirst.get(3)), next.stream().map(Message::getId).toList());
+    }
+
+    // Lit toutes les pages, comme un client qui renvoie l'id du dernier message reçu (HISTORY_END)
+    private static List<Long> readAll(String firstPage, String nextPage, String room, String peer, int limit) {
+        List<Long> ids = new ArrayList<>();
+        Long before = null;
+        while (true) {
+            List<Message> rows = page(before == null ? firstPage : nextPage, room, peer, before, limit);
+            rows.forEach(row -> ids.add(row.getId()));
+            if (rows.size() < limit) {
+                return ids;
+            }
+            before = rows.get(rows.size() - 1).getId();
+        }
+    }
+
+    // Même enchaînement que HistoryService.sendPage : timestamp du curseur, puis page
+    private static List<Message> page(String name, String room, String peer, Long beforeId, int limit) {
+        return HibernateUtil.read(session -> {
+            SelectionQuery<Message> query = session.createNamedSelectionQuery(name, Message.class).setMaxResults(limit);
+            if (peer != null) {
+                query.setParameter("me", "alice").setParameter("peer", peer);
+            } else {
+                query.setParameter("room", room);
+            }
+            if (beforeId != null) {
+                LocalDateTime ts = session.createNamedSelectionQuery(Message.TIMESTAMP_BY_ID, LocalDateTime.class)
+                        .setParameter("id", beforeId)
+                        .uniqueResult();
+                query.setParameter("ts", ts).setParameter("id", beforeId);
+            }
+            return query.list();
+        });
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.socketproject.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void expireHidesOldMessagesAndDropsExpiredSegments() throws Exception {
+        System.setProperty(ServerConfig.SEARCH_DIR, directory.toString());
+        System.setProperty(ServerConfig.SEARCH_FLUSH_DOCS, "2");
+        System.setProperty(ServerConfig.SEARCH_FLUSH_INTERVAL_MS, "60000");
+        SearchIndex index;
+        try {
+            index = new SearchIndex();
+        } finally {
+            System.clearProperty(ServerConfig.SEARCH_DIR);
+            System.clearProperty(ServerConfig.SEARCH_FLUSH_DOCS);
+            System.clearProperty(ServerConfig.SEARCH_FLUSH_INTERVAL_MS);
+        }
+        LocalDateTime old = LocalDateTime.now().minusDays(400);
+        // Premier fichier : entièrement expiré ; second : un message privé expiré, un public récent
+        index.submit(message("alice", "bonjour ancien", null, old));
+        index.submit(message("bob", "bonjour ancien", null, old));
+        index.submit(message("alice", "bonjour secret", "bob", old));
+        index.submit(message("bob", "bonjour récent", null, LocalDateTime.now()));
+        assertTrue(index.flush(5000));
+        assertEquals(2, index.getSegmentCount());
+        assertEquals(4, index.search("bonjour", Integer.MAX_VALUE, 10, hit -> true).size());
+
+        long cutoff = LocalDateTime.now().minusDays(30).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        index.expire(cutoff, cutoff);
+
+        List<SearchHit> hits = index.search("bonjour", Integer.MAX_VALUE, 10, hit -> true);
+        assertEquals(1, hits.size());
+        assertEquals("bonjour récent", hits.get(0).text());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (segmentFiles() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, index.getSegmentCount());
+        assertEquals(1, segmentFiles());
+    }
+
+    @Test
+    void expireAppliesEachTypeItsOwnCutoff() throws Exception {
+        System.setProperty(ServerConfig.SEARCH_DIR, directory.toString());
+        SearchIndex index;
+        try {
+            index = new SearchIndex();
+        } finally {
+            System.clearProperty(ServerConfig.SEARCH_DIR);
+        }
+        LocalDateTime old = LocalDateTime.now().minusDays(60);
+        index.submit(message("alice", "salut public", null, old));
+        index.submit(message("alice", "salut privé", "bob", old));
+        assertTrue(index.flush(5000));
+
+        long now = System.currentTimeMillis();
+        index.expire(Long.MIN_VALUE, now);
+        List<SearchHit> hits = index.search("salut", Integer.MAX_VALUE, 10, hit -> true);
+        assertEquals(1, hits.size());
+        assertEquals("salut public", hits.get(0).text());
+
+        index.expire(now, Long.MIN_VALUE);
+        hits = index.search("salut", Integer.MAX_VALUE, 10, hit -> true);
+        assertEquals(1, hits.size());
+        assertEquals("salut privé", hits.get(0).text());
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".idx")).count();
+        }
+    }
+
+    private static Message message(String sender, String text, String recipient, LocalDateTime timestamp) {
+        Message message = recipient == null
+                ? new Message(sender, sender + ": " + text, "PUBLIC", null, RoomRegistry.DEFAULT_ROOM)
+                : new Message(sender, text, "PRIVATE", recipient);
+        message.setTimestamp(timestamp);
+        return message;
+    }
+}